@@ -194,15 +194,23 @@ public final class Args {
      * @throws IOException if an I/O error occurs
      */
     static Args load(FTInputStream in) throws IOException {
+        int dim = in.readInt();
+        int ws = in.readInt();
+        int epoch = in.readInt();
+        int minCount = in.readInt();
+        int neg = in.readInt();
+        int wordNgrams = in.readInt();
+        LossName loss = LossName.fromValue(in.readInt());
+        // the model goes first, since it sets the defaults:
         return new Builder()
-                .setDim(in.readInt())
-                .setWS(in.readInt())
-                .setEpoch(in.readInt())
-                .setMinCount(in.readInt())
-                .setNeg(in.readInt())
-                .setWordNgrams(in.readInt())
-                .setLossName(LossName.fromValue(in.readInt()))
                 .setModel(ModelName.fromValue(in.readInt()))
+                .setDim(dim)
+                .setWS(ws)
+                .setEpoch(epoch)
+                .setMinCount(minCount)
+                .setNeg(neg)
+                .setWordNgrams(wordNgrams)
+                .setLossName(loss)
                 .setBucket(in.readInt())
                 .setMinN(in.readInt())
                 .setMaxN(in.readInt())
@@ -245,8 +253,23 @@ public final class Args {
                     .setQNorm(other.qnorm).setQOut(other.qout).setCutOff(other.cutoff).setDSub(other.dsub);
         }
 
+        /**
+         * Sets the model name.
+         * The {@link ModelName#SUP supervised} model also changes the defaults (as the {@code supervised} command of the original):
+         * {@code loss=softmax, minCount=1, minn=0, maxn=0, lr=0.1}, so the other settings must be specified after the model.
+         *
+         * @param name {@link ModelName}, not null
+         * @return this builder
+         */
         public Builder setModel(ModelName name) {
             _args.model = Objects.requireNonNull(name, "Null model name");
+            if (ModelName.SUP.equals(name)) {
+                _args.loss = LossName.SOFTMAX;
+                _args.minCount = 1;
+                _args.minn = 0;
+                _args.maxn = 0;
+                _args.lr = 0.1;
+            }
             return this;
         }
 
@@ -351,13 +374,6 @@ public final class Args {
         }
 
         public Args build() {
-            if (ModelName.SUP.equals(_args.model)) {
-                _args.loss = LossName.SOFTMAX;
-                _args.minCount = 1;
-                _args.minn = 0;
-                _args.maxn = 0;
-                _args.lr = 0.1;
-            }
             if (_args.wordNgrams <= 1 && _args.maxn == 0) {
                 _args.bucket = 0;
             }
@@ -407,7 +423,13 @@ public final class Args {
     }
 
     public enum LossName {
-        HS(1), NS(2), SOFTMAX(3);
+        HS(1), NS(2), SOFTMAX(3),
+        /**
+         * One-vs-all: an independent binary classifier (sigmoid) per label, for multi-label data.
+         * Each example updates all its labels as positives and {@link Args#neg()} sampled negatives,
+         * the predicted probabilities do not sum to one.
+         */
+        OVA(4);
         private final int value;
 
         LossName(int value) {
@@ -0,0 +1,133 @@
+package cc.fasttext;
+
+import cc.fasttext.io.FTInputStream;
+import cc.fasttext.io.FTOutputStream;
+import org.apache.commons.lang.Validate;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The state of an unfinished training, which is needed to resume it.
+ * A checkpoint file is the ordinary model file (see {@link FastText#saveModel(String)}) followed by this state,
+ * so it can be loaded as a model as well (the trailing state is ignored then).
+ * <p>
+ * The state consists of the size of training file, the initial learning rate (it is not a part of the {@link Args} format),
+ * the number of processed tokens (which gives the progress and the current learning rate)
+ * and the position of each training thread in the corpus:
+ * the offset in bytes for the text or the line number for the {@link CorpusCache} (see {@link CorpusReader#position()}).
+ * Immutable.
+ */
+final class Checkpoint {
+    private static final int MAGIC = 0x54504B43; // "CKPT"
+
+    private final long size;
+    private final double lr;
+    private final long tokenCount;
+    private final boolean cache;
+    private final long[] positions;
+
+    /**
+     * @param size       long, the size of training file in bytes
+     * @param lr         double, the initial learning rate
+     * @param tokenCount long, the number of processed tokens
+     * @param cache      boolean, true if the positions are the line numbers of {@link CorpusCache}
+     * @param positions  array of longs, the position of each thread, not empty
+     */
+    Checkpoint(long size, double lr, long tokenCount, boolean cache, long[] positions) {
+        Validate.isTrue(Objects.requireNonNull(positions, "Null positions").length > 0, "No threads");
+        Validate.isTrue(tokenCount >= 0, "Negative token count");
+        this.size = size;
+        this.lr = lr;
+        this.tokenCount = tokenCount;
+        this.cache = cache;
+        this.positions = positions.clone();
+    }
+
+    long size() {
+        return size;
+    }
+
+    double lr() {
+        return lr;
+    }
+
+    long tokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Returns the number of training threads.
+     *
+     * @return int, positive
+     */
+    int threads() {
+        return positions.length;
+    }
+
+    /**
+     * Returns the saved position of the given thread if it is measured in the required units.
+     *
+     * @param threadId int, the thread number
+     * @param cache    boolean, true for the line number in {@link CorpusCache}, false for the offset in the text
+     * @return long, the position or -1 if the units differ
+     */
+    long position(int threadId, boolean cache) {
+        return this.cache == cache ? positions[threadId] : -1;
+    }
+
+    /**
+     * Writes the state after the model.
+     *
+     * @param out {@link FTOutputStream}
+     * @throws IOException if an I/O error occurs
+     */
+    void save(FTOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeLong(size);
+        out.writeDouble(lr);
+        out.writeLong(tokenCount);
+        out.writeBoolean(cache);
+        out.writeInt(positions.length);
+        for (long p : positions) {
+            out.writeLong(p);
+        }
+    }
+
+    /**
+     * Reads the state, the stream must be positioned right after the model.
+     *
+     * @param in {@link FTInputStream}
+     * @return {@link Checkpoint}
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if there is no state, i.e. it is an ordinary model file
+     */
+    static Checkpoint load(FTInputStream in) throws IOException, IllegalArgumentException {
+        int magic;
+        try {
+            magic = in.readInt();
+        } catch (EOFException e) {
+            magic = 0;
+        }
+        if (magic != MAGIC) {
+            throw new IllegalArgumentException("Not a checkpoint: no training state after the model");
+        }
+        long size = in.readLong();
+        double lr = in.readDouble();
+        long tokenCount = in.readLong();
+        boolean cache = in.readBoolean();
+        long[] positions = new long[in.readInt()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = in.readLong();
+        }
+        return new Checkpoint(size, lr, tokenCount, cache, positions);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Checkpoint{size=%d, lr=%s, tokens=%d, %s=%s}",
+                size, lr, tokenCount, cache ? "lines" : "offsets", Arrays.toString(positions));
+    }
+}
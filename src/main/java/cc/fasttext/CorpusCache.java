@@ -0,0 +1,342 @@
+package cc.fasttext;
+
+import org.apache.commons.lang.Validate;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The training corpus compiled into a compact binary file of word and label ids, so the text is tokenized once
+ * instead of once per epoch.
+ * <p>
+ * The file is a sequence of line records, each number is a varint (7 bits per byte, the high bit is the continuation flag):
+ * <ul>
+ * <li>supervised: {@code ntokens, nwords, nlabels, word ids..., label ids...}, i.e. the result of
+ * {@link Dictionary#getLine(Dictionary.SeekableReader, IntList, IntList)} with word n-grams already computed</li>
+ * <li>unsupervised: {@code n, ids...}, i.e. the result of {@link Dictionary#getLineIds(Dictionary.SeekableReader, IntList)};
+ * the frequent words are discarded while reading, so the random generator is used exactly as for the text</li>
+ * </ul>
+ * The offset of every {@link #INDEX_STEP}-th line is kept in memory, so a thread can start from an exact line boundary.
+ * The cache is a temporary local file, it is deleted on {@link #close()}.
+ */
+final class CorpusCache implements Closeable {
+    private static final int INDEX_STEP = 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final Dictionary dictionary;
+    private final boolean supervised;
+    private final long lines;
+    private final long size;
+    private final long[] index;
+
+    private CorpusCache(Path file, Dictionary dictionary, boolean supervised, long lines, long size, long[] index) {
+        this.file = file;
+        this.dictionary = dictionary;
+        this.supervised = supervised;
+        this.lines = lines;
+        this.size = size;
+        this.index = index;
+    }
+
+    /**
+     * Tokenizes the whole text and writes the ids into a new temporary file.
+     *
+     * @param dictionary {@link Dictionary}
+     * @param supervised boolean, true to store the lines for {@link Args.ModelName#SUP supervised} training
+     * @param in         {@link Dictionary.SeekableReader} positioned at the start of text, it is not closed
+     * @return {@link CorpusCache}
+     * @throws IOException if an I/O error occurs
+     */
+    static CorpusCache compile(Dictionary dictionary, boolean supervised, Dictionary.SeekableReader in) throws IOException {
+        Objects.requireNonNull(dictionary, "Null dictionary");
+        Path file = Files.createTempFile("fasttext-corpus-", ".cache");
+        file.toFile().deleteOnExit();
+        long[] index = new long[16];
+        long lines = 0;
+        IntList words = new IntList();
+        IntList labels = new IntList();
+        try (VarIntOutput out = new VarIntOutput(Files.newOutputStream(file))) {
+            // the reader rewinds itself at the end of stream, so the loop must stop there:
+            while (!in.isEnd()) {
+                if (lines % INDEX_STEP == 0) {
+                    int i = (int) (lines / INDEX_STEP);
+                    if (i == index.length) {
+                        index = Arrays.copyOf(index, 2 * i);
+                    }
+                    index[i] = out.position();
+                }
+                if (supervised) {
+                    int ntokens = dictionary.getLine(in, words, labels);
+                    out.write(ntokens);
+                    out.write(words.size());
+                    out.write(labels.size());
+                    out.write(words);
+                    out.write(labels);
+                } else {
+                    dictionary.getLineIds(in, words);
+                    out.write(words.size());
+                    out.write(words);
+                }
+                lines++;
+            }
+            out.flush();
+            return new CorpusCache(file, dictionary, supervised, lines, out.position(),
+                    Arrays.copyOf(index, (int) ((lines + INDEX_STEP - 1) / INDEX_STEP)));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of lines.
+     *
+     * @return long
+     */
+    long lines() {
+        return lines;
+    }
+
+    /**
+     * Returns the size of cache file in bytes.
+     *
+     * @return long
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Opens a new reader for the given training thread,
+     * the corpus is split between the threads by lines.
+     *
+     * @param threadId int, the thread number
+     * @param threads  int, the number of threads
+     * @return {@link CorpusReader}
+     * @throws IOException if an I/O error occurs
+     */
+    CorpusReader reader(int threadId, int threads) throws IOException {
+        return reader(lines * threadId / Math.max(threads, 1));
+    }
+
+    /**
+     * Opens a new reader starting from the given line.
+     *
+     * @param line long, the line number, from 0 to the {@link #lines() number of lines}
+     * @return {@link CorpusReader}
+     * @throws IOException if an I/O error occurs
+     */
+    CorpusReader reader(long line) throws IOException {
+        Validate.isTrue(line >= 0 && line <= lines, "Wrong line number: " + line);
+        Reader res = new Reader();
+        try {
+            res.seek(line);
+        } catch (IOException | RuntimeException e) {
+            res.close();
+            throw e;
+        }
+        return res;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * The buffered reader of line records.
+     */
+    private class Reader implements CorpusReader {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final IntList ids = new IntList();
+        private long line;
+
+        private Reader() throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            buffer.limit(0);
+        }
+
+        /**
+         * Moves to the start of the given line.
+         *
+         * @param line long, the line number
+         * @throws IOException if an I/O error occurs
+         */
+        private void seek(long line) throws IOException {
+            int i = (int) (line / INDEX_STEP);
+            channel.position(lines == 0 ? 0 : index[i]);
+            buffer.limit(0);
+            this.line = (long) i * INDEX_STEP;
+            while (this.line < line) {
+                skipLine();
+            }
+        }
+
+        private void skipLine() throws IOException {
+            int n;
+            if (supervised) {
+                readVarInt(); // ntokens
+                n = readVarInt() + readVarInt();
+            } else {
+                n = readVarInt();
+            }
+            for (int i = 0; i < n; i++) {
+                readVarInt();
+            }
+            line++;
+        }
+
+        /**
+         * Rewinds to the first line after the last one, as the text reader does.
+         *
+         * @return false if the corpus is empty
+         * @throws IOException if an I/O error occurs
+         */
+        private boolean next() throws IOException {
+            if (line == lines) {
+                if (lines == 0) {
+                    return false;
+                }
+                seek(0);
+            }
+            line++;
+            return true;
+        }
+
+        @Override
+        public int getLine(IntList words, IntList labels) throws IOException {
+            checkMode(true);
+            words.clear();
+            labels.clear();
+            if (!next()) {
+                return 0;
+            }
+            int ntokens = readVarInt();
+            int nwords = readVarInt();
+            int nlabels = readVarInt();
+            read(words, nwords);
+            read(labels, nlabels);
+            return ntokens;
+        }
+
+        @Override
+        public int getLine(IntList words, RandomGenerator rng) throws IOException {
+            getLineIds(ids);
+            return dictionary.getLine(ids, words, rng);
+        }
+
+        @Override
+        public void getLineIds(IntList ids) throws IOException {
+            checkMode(false);
+            ids.clear();
+            if (next()) {
+                read(ids, readVarInt());
+            }
+        }
+
+        private void checkMode(boolean supervised) {
+            if (CorpusCache.this.supervised != supervised) {
+                throw new IllegalStateException("The cache is compiled for " + (supervised ? "unsupervised" : "supervised") + " training");
+            }
+        }
+
+        private void read(IntList list, int n) throws IOException {
+            for (int i = 0; i < n; i++) {
+                list.add(readVarInt());
+            }
+        }
+
+        private int readVarInt() throws IOException {
+            int b = readByte();
+            int res = b & 0x7F;
+            for (int shift = 7; b < 0; shift += 7) {
+                b = readByte();
+                res |= (b & 0x7F) << shift;
+            }
+            return res;
+        }
+
+        private byte readByte() throws IOException {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int n;
+                do {
+                    n = channel.read(buffer);
+                } while (n == 0);
+                buffer.flip();
+                if (n < 0) {
+                    throw new EOFException("Unexpected end of corpus cache " + file);
+                }
+            }
+            return buffer.get();
+        }
+
+        @Override
+        public long position() {
+            return line;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * The buffered output of non-negative varints.
+     */
+    private static class VarIntOutput implements Closeable {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int count;
+        private long flushed;
+
+        private VarIntOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        private long position() {
+            return flushed + count;
+        }
+
+        private void write(IntList values) throws IOException {
+            for (int i = 0; i < values.size(); i++) {
+                write(values.get(i));
+            }
+        }
+
+        private void write(int value) throws IOException {
+            if (count > buffer.length - 5) {
+                flush();
+            }
+            while ((value & ~0x7F) != 0) {
+                buffer[count++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            buffer[count++] = (byte) value;
+        }
+
+        private void flush() throws IOException {
+            out.write(buffer, 0, count);
+            flushed += count;
+            count = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
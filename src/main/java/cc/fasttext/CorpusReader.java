@@ -0,0 +1,97 @@
+package cc.fasttext;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A source of training lines for a single training thread.
+ * The corpus is endless: after the last line the reading starts again from the first one.
+ * There are two implementations: the text file which is tokenized on the fly (see {@link #text(Dictionary, Dictionary.SeekableReader)})
+ * and the pre-tokenized binary cache (see {@link CorpusCache}),
+ * any of them can be read ahead in a background thread (see {@link PrefetchingCorpusReader}).
+ * Not thread-safe.
+ */
+interface CorpusReader extends Closeable {
+
+    /**
+     * Reads the next line for supervised training.
+     *
+     * @param words  {@link IntList} of words and n-grams
+     * @param labels {@link IntList} of labels
+     * @return int, the number of tokens
+     * @throws IOException if an I/O error occurs
+     * @see Dictionary#getLine(Dictionary.SeekableReader, IntList, IntList)
+     */
+    int getLine(IntList words, IntList labels) throws IOException;
+
+    /**
+     * Reads the next line for unsupervised training.
+     *
+     * @param words {@link IntList} of words
+     * @param rng   {@link RandomGenerator} to discard frequent words
+     * @return int, the number of tokens
+     * @throws IOException if an I/O error occurs
+     * @see Dictionary#getLine(Dictionary.SeekableReader, IntList, RandomGenerator)
+     */
+    int getLine(IntList words, RandomGenerator rng) throws IOException;
+
+    /**
+     * Reads the ids of the next line for unsupervised training, before the frequent words are discarded,
+     * i.e. the part of {@link #getLine(IntList, RandomGenerator)} which does not depend on the random generator.
+     *
+     * @param ids {@link IntList} of word and label ids
+     * @throws IOException if an I/O error occurs
+     * @see Dictionary#getLineIds(Dictionary.SeekableReader, IntList)
+     */
+    void getLineIds(IntList ids) throws IOException;
+
+    /**
+     * Returns the position of the next line to read, to resume the training from it later (see {@link Checkpoint}).
+     * The units depend on the source: the offset in bytes for the text, the line number for the {@link CorpusCache}.
+     *
+     * @return long, non-negative
+     * @throws IOException if an I/O error occurs
+     */
+    long position() throws IOException;
+
+    /**
+     * Wraps the text reader.
+     *
+     * @param dictionary {@link Dictionary} to tokenize the lines
+     * @param in         {@link Dictionary.SeekableReader}
+     * @return {@link CorpusReader}
+     */
+    static CorpusReader text(Dictionary dictionary, Dictionary.SeekableReader in) {
+        Objects.requireNonNull(dictionary, "Null dictionary");
+        Objects.requireNonNull(in, "Null reader");
+        return new CorpusReader() {
+            @Override
+            public int getLine(IntList words, IntList labels) throws IOException {
+                return dictionary.getLine(in, words, labels);
+            }
+
+            @Override
+            public int getLine(IntList words, RandomGenerator rng) throws IOException {
+                return dictionary.getLine(in, words, rng);
+            }
+
+            @Override
+            public void getLineIds(IntList ids) throws IOException {
+                dictionary.getLineIds(in, ids);
+            }
+
+            @Override
+            public long position() throws IOException {
+                return in.getPos();
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+}
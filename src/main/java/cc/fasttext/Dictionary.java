@@ -1,12 +1,15 @@
 package cc.fasttext;
 
 import cc.fasttext.io.*;
+import com.google.common.base.Throwables;
+import com.google.common.base.Utf8;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
-import com.google.common.primitives.Floats;
-import com.google.common.primitives.UnsignedLong;
+import com.google.common.primitives.Ints;
 import org.apache.commons.lang.Validate;
-import org.apache.commons.math3.distribution.UniformRealDistribution;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.util.FastMath;
 
@@ -15,12 +18,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.function.BiConsumer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 /**
@@ -34,25 +40,35 @@ public class Dictionary {
     public static final String EOW = ">";
     public static final String EOS = BOW + "/s" + EOW;
     public static final String DELIMITERS = "\n\r\t \u000b\f\0";
+    private static final byte[] EOS_BYTES = EOS.getBytes(StandardCharsets.UTF_8);
 
     public static final int MAX_VOCAB_SIZE = 30_000_000;
     public static final int MAX_LINE_SIZE = 1024;
-    private static final Integer WORD_ID_DEFAULT = -1;
+    private static final int WORD_ID_DEFAULT = -1;
+    // the initial number of slots in the word table, a power of two:
+    private static final int WORD_TABLE_INITIAL_SIZE = 1 << 10;
     private static final Integer PRUNE_IDX_SIZE_DEFAULT = -1;
 
-    private static final UnsignedLong ADD_WORDS_NGRAMS_FACTOR_UNSIGNED_LONG = UnsignedLong.valueOf(116_049_371L);
+    private static final long ADD_WORDS_NGRAMS_FACTOR = 116_049_371L;
+    private static final long FNV_OFFSET_BASIS = 2_166_136_261L;
+    private static final long FNV_PRIME = 16_777_619;
 
     private static final long READ_LOG_STEP = 1_000_000;
-
-    private static final int PARALLEL_SIZE_THRESHOLD = Integer.parseInt(System.getProperty("parallel.dictionary.threshold",
-            String.valueOf(FastText.PARALLEL_THRESHOLD_FACTOR * 100)));
+    // the min number of bytes to read by a single thread while building the vocabulary in parallel:
+    private static final long READ_MIN_SHARD_SIZE = 1024 * 1024;
+    // the max number of out of vocabulary words in the subwords cache, 0 to disable
+    static final long SUBWORDS_CACHE_SIZE = Long.parseLong(System.getProperty("subwords.cache.size", "100000"));
+    private static final int[] NO_SUBWORDS = new int[0];
 
     private static final Comparator<Entry> ENTRY_COMPARATOR = Comparator.comparing((Function<Entry, EntryType>) t -> t.type)
             .thenComparing(Comparator.comparingLong((ToLongFunction<Entry>) value -> value.count).reversed());
 
-    private List<Entry> words = new ArrayList<>(MAX_VOCAB_SIZE);
-    private List<Float> pdiscard;
-    private Map<Long, Integer> word2int = new HashMap<>(MAX_VOCAB_SIZE);
+    private List<Entry> words = new ArrayList<>();
+    private float[] pdiscard;
+    // the open-addressing table (analogue of c++ word2int_): pairs of word id (-1 for empty slot) and word hash,
+    // the number of slots is a power of two, it grows to keep the table at most half full:
+    private int[] word2int = newWordTable(WORD_TABLE_INITIAL_SIZE);
+    private int word2intSize;
     private int size;
     private int nwords;
     private int nlabels;
@@ -60,9 +76,17 @@ public class Dictionary {
     private long pruneIdxSize = PRUNE_IDX_SIZE_DEFAULT;
     private Map<Integer, Integer> pruneIdx = new HashMap<>();
     private final Charset charset;
+    // true if tokens can be hashed and looked up as raw bytes, see #decodeIfNeeded(byte[], int)
+    private final boolean utf8;
+    private final byte[] labelBytes;
+    // subword ids of out of vocabulary words, see #getOovSubwordIds(String)
+    private final Cache<String, int[]> oovSubwords = CacheBuilder.newBuilder()
+            .maximumSize(SUBWORDS_CACHE_SIZE)
+            .recordStats()
+            .build();
 
     // args:
-    private final UnsignedLong bucket;
+    private final long bucket; // uint64_t
     private final int maxn;
     private final int minn;
     private final int wordNgrams;
@@ -71,10 +95,10 @@ public class Dictionary {
     private final double t;
 
     Dictionary(Args args, Charset charset) {
-        this(args.model(), args.label(), args.samplingThreshold(), UnsignedLong.valueOf(args.bucket()), args.maxn(), args.minn(), args.wordNgrams(), charset);
+        this(args.model(), args.label(), args.samplingThreshold(), args.bucket(), args.maxn(), args.minn(), args.wordNgrams(), charset);
     }
 
-    private Dictionary(Args.ModelName model, String label, double samplingThreshold, UnsignedLong bucket, int maxn, int minn, int wordNgrams, Charset charset) {
+    private Dictionary(Args.ModelName model, String label, double samplingThreshold, long bucket, int maxn, int minn, int wordNgrams, Charset charset) {
         this.model = model;
         this.label = label;
         this.bucket = bucket;
@@ -83,13 +107,15 @@ public class Dictionary {
         this.minn = minn;
         this.wordNgrams = wordNgrams;
         this.charset = charset;
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+        this.labelBytes = label.getBytes(charset);
     }
 
     public Charset charset() {
         return charset;
     }
 
-    long find(String w) {
+    int find(String w) {
         return find(w, hash(w));
     }
 
@@ -102,17 +128,142 @@ public class Dictionary {
      *  return id;
      * }}</pre>
      *
+     * Unlike the original, the table size is not {@code MAX_VOCAB_SIZE} but a power of two which grows with the vocabulary,
+     * and the stored hashes are compared before the strings.
+     *
      * @param w String
      * @param h long (uint32_t)
-     * @return int (int32_t)
+     * @return int (int32_t), the slot index
+     */
+    private int find(String w, long h) {
+        int hash = (int) h;
+        int mask = (word2int.length >>> 1) - 1;
+        int slot = hash & mask;
+        int id;
+        while ((id = word2int[2 * slot]) != WORD_ID_DEFAULT && (word2int[2 * slot + 1] != hash || !words.get(id).word.equals(w))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Finds the slot for the word given as well-formed UTF-8 bytes, without decoding them.
+     *
+     * @param bytes  array of bytes
+     * @param length int, the length of word in bytes
+     * @param h      long (uint32_t), the word hash, see {@link #hash(byte[], int, int)}
+     * @return int (int32_t), the slot index
+     * @see #find(String, long)
+     */
+    private int find(byte[] bytes, int length, long h) {
+        int hash = (int) h;
+        int mask = (word2int.length >>> 1) - 1;
+        int slot = hash & mask;
+        int id;
+        while ((id = word2int[2 * slot]) != WORD_ID_DEFAULT && (word2int[2 * slot + 1] != hash || !equalsUtf8(words.get(id).word, bytes, length))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Compares the string with the well-formed UTF-8 bytes char by char, without creating a new string.
+     *
+     * @param str    String
+     * @param bytes  array of bytes, must be well-formed UTF-8
+     * @param length int, the number of bytes
+     * @return true if the bytes is the encoded string
+     */
+    private static boolean equalsUtf8(String str, byte[] bytes, int length) {
+        int n = str.length();
+        if (n > length) {
+            return false;
+        }
+        int i = 0;
+        int j = 0;
+        while (j < length) {
+            int b = bytes[j];
+            if (b >= 0) { // ascii
+                if (i == n || str.charAt(i++) != b) {
+                    return false;
+                }
+                j++;
+                continue;
+            }
+            int c;
+            if ((b & 0xE0) == 0xC0) {
+                c = (b & 0x1F) << 6 | bytes[j + 1] & 0x3F;
+                j += 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                c = (b & 0x0F) << 12 | (bytes[j + 1] & 0x3F) << 6 | bytes[j + 2] & 0x3F;
+                j += 3;
+            } else {
+                c = (b & 0x07) << 18 | (bytes[j + 1] & 0x3F) << 12 | (bytes[j + 2] & 0x3F) << 6 | bytes[j + 3] & 0x3F;
+                j += 4;
+            }
+            if (Character.isBmpCodePoint(c)) {
+                if (i == n || str.charAt(i++) != c) {
+                    return false;
+                }
+            } else if (i + 1 >= n || str.charAt(i++) != Character.highSurrogate(c) || str.charAt(i++) != Character.lowSurrogate(c)) {
+                return false;
+            }
+        }
+        return i == n;
+    }
+
+    /**
+     * Puts the word id into the empty slot found by {@link #find(String, long)}.
+     * The slot becomes invalid if the table grows.
+     *
+     * @param slot int, the slot index
+     * @param id   int, the word id
+     * @param h    long (uint32_t), the word hash
+     */
+    private void putId(int slot, int id, long h) {
+        word2int[2 * slot] = id;
+        word2int[2 * slot + 1] = (int) h;
+        if (++word2intSize > word2int.length >>> 2) {
+            int[] table = newWordTable(word2int.length);
+            int mask = (table.length >>> 1) - 1;
+            for (int i = 0; i < word2int.length; i += 2) {
+                if (word2int[i] == WORD_ID_DEFAULT) {
+                    continue;
+                }
+                int j = word2int[i + 1] & mask;
+                while (table[2 * j] != WORD_ID_DEFAULT) {
+                    j = (j + 1) & mask;
+                }
+                table[2 * j] = word2int[i];
+                table[2 * j + 1] = word2int[i + 1];
+            }
+            word2int = table;
+        }
+    }
+
+    /**
+     * Fills the word table with the ids of the current words.
      */
-    private long find(String w, long h) {
-        long id = h % MAX_VOCAB_SIZE;
-        while (!Objects.equals(word2int.getOrDefault(id, WORD_ID_DEFAULT), WORD_ID_DEFAULT) &&
-                !Objects.equals(words.get(word2int.get(id)).word, w)) {
-            id = (id + 1) % MAX_VOCAB_SIZE;
+    private void initWordTable() {
+        int slots = WORD_TABLE_INITIAL_SIZE;
+        while (slots < 2 * words.size()) {
+            slots <<= 1;
+        }
+        word2int = newWordTable(slots);
+        word2intSize = 0;
+        for (int i = 0; i < words.size(); i++) {
+            String w = words.get(i).word;
+            long h = hash(w);
+            putId(find(w, h), i, h);
         }
-        return id;
+    }
+
+    private static int[] newWordTable(int slots) {
+        int[] res = new int[2 * slots];
+        for (int i = 0; i < res.length; i += 2) {
+            res[i] = WORD_ID_DEFAULT;
+        }
+        return res;
     }
 
     /**
@@ -134,14 +285,77 @@ public class Dictionary {
      * @param w String
      */
     void add(String w) {
-        long h = find(w);
+        long h = hash(w);
+        int slot = find(w, h);
         ntokens++;
-        if (Objects.equals(word2int.getOrDefault(h, WORD_ID_DEFAULT), WORD_ID_DEFAULT)) {
+        int id = word2int[2 * slot];
+        if (id == WORD_ID_DEFAULT) {
             Entry e = new Entry(w, 1, getType(w));
             words.add(e);
-            word2int.put(h, size++);
+            putId(slot, size++, h);
+        } else {
+            words.get(id).count++;
+        }
+    }
+
+    /**
+     * Adds the word given as bytes in the dictionary charset.
+     * The same as {@link #add(String)}, but the string is created only for a new word.
+     *
+     * @param bytes  array of bytes
+     * @param length int, the length of word in bytes
+     */
+    private void add(byte[] bytes, int length) {
+        String w = decodeIfNeeded(bytes, length);
+        if (w != null) {
+            add(w);
+            return;
+        }
+        long h = hash(bytes, 0, length);
+        int slot = find(bytes, length, h);
+        ntokens++;
+        int id = word2int[2 * slot];
+        if (id == WORD_ID_DEFAULT) {
+            w = new String(bytes, 0, length, charset);
+            words.add(new Entry(w, 1, getType(w)));
+            putId(slot, size++, h);
         } else {
-            words.get(word2int.get(h)).count++;
+            words.get(id).count++;
+        }
+    }
+
+    /**
+     * Decodes the token, which has been read as bytes, if it can not be processed as is.
+     * A token is processed as raw bytes (hashed, looked up and checked) only if the charset is UTF-8
+     * and the bytes are well-formed: in this case the encoding of the decoded string is exactly the same bytes,
+     * so the result is the same as for the string.
+     * Otherwise (e.g. a malformed sequence, which is replaced while decoding) the string is required.
+     *
+     * @param bytes  array of bytes
+     * @param length int, the length of token in bytes
+     * @return String or null if the token does not need to be decoded
+     */
+    private String decodeIfNeeded(byte[] bytes, int length) {
+        return utf8 && Utf8.isWellFormed(bytes, 0, length) ? null : new String(bytes, 0, length, charset);
+    }
+
+    /**
+     * Adds the word with the given count, used to merge dictionaries.
+     * Unlike {@link #add(String)} it does not change the number of tokens.
+     *
+     * @param w     String
+     * @param type  {@link EntryType}
+     * @param count long
+     */
+    private void add(String w, EntryType type, long count) {
+        long h = hash(w);
+        int slot = find(w, h);
+        int id = word2int[2 * slot];
+        if (id == WORD_ID_DEFAULT) {
+            words.add(new Entry(w, count, type));
+            putId(slot, size++, h);
+        } else {
+            words.get(id).count += count;
         }
     }
 
@@ -165,14 +379,10 @@ public class Dictionary {
         return size;
     }
 
-    List<Float> pdiscard() {
+    float[] pdiscard() {
         return pdiscard;
     }
 
-    Map<Long, Integer> getWord2int() {
-        return word2int;
-    }
-
     /**
      * <pre>{@code int32_t Dictionary::getId(const std::string& w) const {
      *  int32_t h = find(w);
@@ -183,7 +393,7 @@ public class Dictionary {
      * @return int32_t
      */
     public int getId(String w) {
-        return word2int.getOrDefault(find(w), WORD_ID_DEFAULT);
+        return word2int[2 * find(w)];
     }
 
     /**
@@ -197,7 +407,7 @@ public class Dictionary {
      * @return int (default: -1)
      */
     private int getId(String w, long h) {
-        return word2int.getOrDefault(find(w, h), WORD_ID_DEFAULT);
+        return word2int[2 * find(w, h)];
     }
 
     /**
@@ -212,6 +422,30 @@ public class Dictionary {
         return w.startsWith(label) ? EntryType.LABEL : EntryType.WORD;
     }
 
+    /**
+     * Returns the type of the word given as raw bytes.
+     *
+     * @param bytes  array of bytes
+     * @param length int, the length of word in bytes
+     * @return {@link EntryType}
+     * @see #getType(String)
+     */
+    private EntryType getType(byte[] bytes, int length) {
+        return startsWith(bytes, length, labelBytes) ? EntryType.LABEL : EntryType.WORD;
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+        if (prefix.length > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * <pre>{@code entry_type Dictionary::getType(int32_t id) const {
      *  assert(id >= 0);
@@ -263,9 +497,70 @@ public class Dictionary {
      * @return hash as long (uint32_t)
      */
     public static long hash(String str, Charset charset) {
-        long h = 2_166_136_261L;// 0xffffffc5;
-        for (long b : str.getBytes(charset)) {
-            h = (h ^ b) * 16_777_619; // FNV-1a
+        return hash(str, 0, str.length(), charset);
+    }
+
+    /**
+     * Calculates the hash of the substring {@code [from, to)} without creating it.
+     * For UTF-8 the chars are encoded on the fly, exactly as {@link String#getBytes(Charset)} does,
+     * so there is no allocation at all.
+     *
+     * @param str     String
+     * @param from    int, inclusive
+     * @param to      int, exclusive
+     * @param charset {@link Charset}, not null
+     * @return hash as long (uint32_t)
+     * @see #hash(String, Charset)
+     */
+    static long hash(String str, int from, int to, Charset charset) {
+        if (!StandardCharsets.UTF_8.equals(charset)) {
+            byte[] bytes = str.substring(from, to).getBytes(charset);
+            return hash(bytes, 0, bytes.length);
+        }
+        long h = FNV_OFFSET_BASIS;
+        for (int i = from; i < to; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                h = fnv(h, c);
+            } else if (c < 0x800) {
+                h = fnv(fnv(h, 0xC0 | c >> 6), 0x80 | c & 0x3F);
+            } else if (!Character.isSurrogate(c)) {
+                h = fnv(fnv(fnv(h, 0xE0 | c >> 12), 0x80 | c >> 6 & 0x3F), 0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(str.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, str.charAt(++i));
+                h = fnv(fnv(fnv(fnv(h, 0xF0 | cp >> 18), 0x80 | cp >> 12 & 0x3F), 0x80 | cp >> 6 & 0x3F), 0x80 | cp & 0x3F);
+            } else { // unpaired surrogate is replaced with '?'
+                h = fnv(h, '?');
+            }
+        }
+        return h & 0xffff_ffffL;
+    }
+
+    /**
+     * One step of FNV-1a: {@code h = (h ^ uint32_t(int8_t(b))) * 16777619}.
+     * The upper bits of the long are garbage, only the low 32 bits make sense.
+     *
+     * @param h long, the current hash
+     * @param b int, the byte (only low 8 bits are used, sign-extended as {@code char} in c++)
+     * @return long, the new hash
+     */
+    private static long fnv(long h, int b) {
+        return (h ^ (byte) b) * FNV_PRIME;
+    }
+
+    /**
+     * FNV-1a hash of the given bytes.
+     * For the bytes of an encoded string the result is the same as {@link #hash(String, Charset)} gives.
+     *
+     * @param bytes  array of bytes
+     * @param offset int, the start position
+     * @param length int, the number of bytes
+     * @return hash as long (uint32_t)
+     */
+    public static long hash(byte[] bytes, int offset, int length) {
+        long h = FNV_OFFSET_BASIS;
+        for (int i = offset; i < offset + length; i++) {
+            h = fnv(h, bytes[i]);
         }
         return h & 0xffff_ffffL;
     }
@@ -293,23 +588,20 @@ public class Dictionary {
      * }}</pre>
      */
     private void initNgrams() {
-        if (FastText.USE_PARALLEL_COMPUTATION && size > PARALLEL_SIZE_THRESHOLD) {
-            IntStream.range(0, size).parallel().forEach(this::initNgrams);
-            return;
-        }
-        for (int i = 0; i < size; i++) {
-            initNgrams(i);
-        }
+        Parallel.forEachRow(0, size, this::initNgrams);
+        // the cached subwords depend on the words and the pruned buckets:
+        oovSubwords.invalidateAll();
     }
 
     private void initNgrams(int i) {
         Entry e = words.get(i);
         String word = BOW + e.word + EOW;
-        e.subwords.clear();
-        e.subwords.add(i);
+        IntList subwords = new IntList();
+        subwords.add(i);
         if (!EOS.equals(e.word)) {
-            computeSubwords(word, e.subwords);
+            computeSubwords(word, subwords);
         }
+        e.subwords = subwords.toArray();
     }
 
     /**
@@ -333,10 +625,10 @@ public class Dictionary {
      * }}</pre>
      *
      * @param word String
-     * @param ngrams List of ints
+     * @param ngrams {@link IntList} of ints
      */
-    private void computeSubwords(String word, List<Integer> ngrams) {
-        computeSubwords(word, ngrams, null, this::pushHash);
+    private void computeSubwords(String word, IntList ngrams) {
+        computeSubwords(word, ngrams, null, true);
     }
 
     /**
@@ -360,27 +652,31 @@ public class Dictionary {
      * }}</pre>
      *
      * @param word String, the word
-     * @param ngrams List of ints
+     * @param ngrams {@link IntList} of ints
      * @param substrings List of strings
      */
-    private void computeSubwords(String word, List<Integer> ngrams, List<String> substrings) {
-        computeSubwords(word, ngrams, substrings, (nrgams, h) -> ngrams.add(nwords + h));
+    private void computeSubwords(String word, IntList ngrams, List<String> substrings) {
+        computeSubwords(word, ngrams, substrings, false);
     }
 
-    private void computeSubwords(String word, List<Integer> ngrams, List<String> substrings, BiConsumer<List<Integer>, Integer> pushMethod) {
+    private void computeSubwords(String word, IntList ngrams, List<String> substrings, boolean usePushHash) {
         for (int i = 0; i < word.length(); i++) {
             if ((word.charAt(i) & 0xC0) == 0x80) continue;
-            StringBuilder ngram = new StringBuilder();
+            // the ngram is the substring [i, j), it is hashed in place:
             for (int j = i, n = 1; j < word.length() && n <= maxn; n++) {
-                ngram.append(word.charAt(j++));
+                j++;
                 while (j < word.length() && (word.charAt(j) & 0xC0) == 0x80) {
-                    ngram.append(word.charAt(j++));
+                    j++;
                 }
                 if (n >= minn && !(n == 1 && (i == 0 || j == word.length()))) {
-                    int h = (int) (hash(ngram.toString()) % bucket.intValue());
-                    pushMethod.accept(ngrams, h);
+                    int h = (int) (hash(word, i, j, charset) % bucket);
+                    if (usePushHash) {
+                        pushHash(ngrams, h);
+                    } else {
+                        ngrams.add(nwords + h);
+                    }
                     if (substrings != null) {
-                        substrings.add(ngram.toString());
+                        substrings.add(word.substring(i, j));
                     }
                 }
             }
@@ -402,10 +698,10 @@ public class Dictionary {
      * }
      * }</pre>
      *
-     * @param hashes List of ints
+     * @param hashes {@link IntList} of ints
      * @param id int
      */
-    private void pushHash(List<Integer> hashes, int id) {
+    private void pushHash(IntList hashes, int id) {
         if (pruneIdxSize == 0 || id < 0) return;
         if (pruneIdxSize > 0) {
             if (pruneIdx.containsKey(id)) {
@@ -427,18 +723,12 @@ public class Dictionary {
      * }}</pre>
      */
     private void initTableDiscard() {
-        pdiscard = Floats.asList(new float[size]);
-        if (FastText.USE_PARALLEL_COMPUTATION && size > PARALLEL_SIZE_THRESHOLD) {
-            IntStream.range(0, size).parallel().forEach(i -> {
-                float f = ((float) words.get(i).count) / ntokens;
-                pdiscard.set(i, (float) (FastMath.sqrt(t / f) + t / f));
-            });
-            return;
-        }
-        for (int i = 0; i < size; i++) {
+        float[] pdiscard = new float[size];
+        Parallel.forEachRow(0, size, i -> {
             float f = ((float) words.get(i).count) / ntokens;
-            pdiscard.set(i, (float) (FastMath.sqrt(t / f) + t / f));
-        }
+            pdiscard[i] = (float) (FastMath.sqrt(t / f) + t / f);
+        });
+        this.pdiscard = pdiscard;
     }
 
     /**
@@ -493,30 +783,37 @@ public class Dictionary {
      * }</pre>
      *
      * @param in     {@link SeekableReader}
-     * @param words  List of words
-     * @param labels List of labels
+     * @param words  {@link IntList} of words
+     * @param labels {@link IntList} of labels
      * @return int32_t
      * @throws IOException if an I/O error occurs
      */
-    int getLine(SeekableReader in, List<Integer> words, List<Integer> labels) throws IOException {
+    int getLine(SeekableReader in, IntList words, IntList labels) throws IOException {
         in.rewind();
-        List<Integer> wordHashes = new ArrayList<>();
+        IntList wordHashes = in.wordHashes;
+        wordHashes.clear();
         int ntokens = 0;
         words.clear();
         labels.clear();
-        String token;
-        while ((token = in.nextWord()) != null) {
+        int length;
+        while ((length = in.nextToken()) >= 0) {
             ntokens++;
-            long h = hash(token);
-            int wid = getId(token, h);
-            EntryType type = wid < 0 ? getType(token) : getType(wid);
+            byte[] bytes = in.token();
+            // the string is created only if it is really needed, usually for out of vocab words:
+            String token = decodeIfNeeded(bytes, length);
+            long h = token == null ? hash(bytes, 0, length) : hash(token);
+            int wid = token == null ? word2int[2 * find(bytes, length, h)] : getId(token, h);
+            EntryType type = wid >= 0 ? getType(wid) : token == null ? getType(bytes, length) : getType(token);
             if (EntryType.WORD == type) {
+                if (wid < 0 && token == null) {
+                    token = new String(bytes, 0, length, charset);
+                }
                 addSubwords(words, token, wid);
                 wordHashes.add((int) h);
             } else if (EntryType.LABEL == type && wid >= 0) {
                 labels.add(wid - nwords);
             }
-            if (Objects.equals(token, EOS)) {
+            if (isEos(token, bytes, length)) {
                 break;
             }
         }
@@ -525,14 +822,53 @@ public class Dictionary {
     }
 
     public List<Integer> getLine(String line) {
-        List<Integer> res = new ArrayList<>();
-        InputStream in = new ByteArrayInputStream(line.getBytes(charset));
+        IntList res = new IntList();
+        getLine(line, res, new IntList());
+        return res.asList();
+    }
+
+    /**
+     * Parses the given line into the specified lists of words and labels.
+     *
+     * @param line   String
+     * @param words  {@link IntList} of words
+     * @param labels {@link IntList} of labels
+     * @return int32_t, number of tokens
+     */
+    int getLine(String line, IntList words, IntList labels) {
+        return getLine(createLineReader(), line, words, labels);
+    }
+
+    /**
+     * Parses the given line using the specified reusable reader.
+     *
+     * @param reader {@link LineReader}, not null
+     * @param line   String
+     * @param words  {@link IntList} of words
+     * @param labels {@link IntList} of labels
+     * @return int32_t, number of tokens
+     * @see #createLineReader()
+     */
+    int getLine(LineReader reader, String line, IntList words, IntList labels) {
+        return getLine(reader, line.getBytes(charset), words, labels);
+    }
+
+    /**
+     * Reads the line given as bytes in the dictionary charset, without line separator.
+     *
+     * @param reader {@link LineReader}, not null
+     * @param line   array of bytes
+     * @param words  {@link IntList} of words
+     * @param labels {@link IntList} of labels
+     * @return int32_t, number of tokens
+     * @see #getLine(LineReader, String, IntList, IntList)
+     */
+    int getLine(LineReader reader, byte[] line, IntList words, IntList labels) {
         try {
-            getLine(createReader(in), res, new ArrayList<>());
+            return getLine(reader.reset(line), words, labels);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
-        return res;
     }
 
     /**
@@ -557,29 +893,78 @@ public class Dictionary {
      * }
      * }</pre>
      *
+     * The line is read in two steps: {@link #getLineIds(SeekableReader, IntList)} and {@link #getLine(IntList, IntList, RandomGenerator)},
+     * the result is the same.
+     *
      * @param in    {@link SeekableReader}
-     * @param words List of words
+     * @param words {@link IntList} of words
      * @param rng   {@link RandomGenerator}
      * @return int32_t
      * @throws IOException if an I/O error occurs
      */
-    int getLine(SeekableReader in, List<Integer> words, RandomGenerator rng) throws IOException {
+    int getLine(SeekableReader in, IntList words, RandomGenerator rng) throws IOException {
+        getLineIds(in, in.ids);
+        return getLine(in.ids, words, rng);
+    }
+
+    /**
+     * Reads the ids of the in-vocabulary tokens of the next line,
+     * the first step of {@link #getLine(SeekableReader, IntList, RandomGenerator)}, which does not depend on the random generator.
+     * As in the original, the line is also terminated after {@link #MAX_LINE_SIZE} tokens.
+     *
+     * @param in  {@link SeekableReader}
+     * @param ids {@link IntList} of word and label ids
+     * @throws IOException if an I/O error occurs
+     */
+    void getLineIds(SeekableReader in, IntList ids) throws IOException {
         in.rewind();
-        UniformRealDistribution uniform = new UniformRealDistribution(rng, 0, 1);
-        int ntokens = 0;
-        words.clear();
-        String token;
-        while ((token = in.nextWord()) != null) {
-            long h = hash(token);
-            int wid = getId(token, h);
+        ids.clear();
+        int length;
+        while ((length = in.nextToken()) >= 0) {
+            byte[] bytes = in.token();
+            String token = decodeIfNeeded(bytes, length);
+            int wid = token == null ? word2int[2 * find(bytes, length, hash(bytes, 0, length))] : getId(token);
             if (wid < 0) continue;
-            ntokens++;
-            if (EntryType.WORD == getType(wid) && !discard(wid, uniform.sample())) {
+            ids.add(wid);
+            if (ids.size() > MAX_LINE_SIZE || isEos(token, bytes, length)) break;
+        }
+    }
+
+    /**
+     * Selects the words to train from the line ids, the second step of {@link #getLine(SeekableReader, IntList, RandomGenerator)}:
+     * the labels are skipped and the frequent words are randomly discarded.
+     *
+     * @param ids   {@link IntList} of word and label ids, see {@link #getLineIds(SeekableReader, IntList)}
+     * @param words {@link IntList} of words
+     * @param rng   {@link RandomGenerator}
+     * @return int32_t, number of tokens
+     */
+    int getLine(IntList ids, IntList words, RandomGenerator rng) {
+        words.clear();
+        for (int i = 0; i < ids.size(); i++) {
+            int wid = ids.get(i);
+            // the same as uniform_real_distribution(0, 1), but without allocation:
+            if (EntryType.WORD == getType(wid) && !discard(wid, rng.nextDouble())) {
                 words.add(wid);
             }
-            if (ntokens > MAX_LINE_SIZE || Objects.equals(token, EOS)) break;
         }
-        return ntokens;
+        return ids.size();
+    }
+
+    /**
+     * Answers {@code true} if the token is {@link #EOS}.
+     * As in the original, a literal {@code "</s>"} in the text is also considered as the end of line.
+     *
+     * @param token  String or null if the token is given as raw bytes
+     * @param bytes  array of bytes
+     * @param length int, the length of token in bytes
+     * @return boolean
+     */
+    private static boolean isEos(String token, byte[] bytes, int length) {
+        if (token != null) {
+            return EOS.equals(token);
+        }
+        return length == EOS_BYTES.length && startsWith(bytes, length, EOS_BYTES);
     }
 
     /**
@@ -599,7 +984,7 @@ public class Dictionary {
     private boolean discard(int id, double rand) {
         Validate.isTrue(id >= 0);
         Validate.isTrue(id < nwords);
-        return model != Args.ModelName.SUP && rand > pdiscard.get(id);
+        return model != Args.ModelName.SUP && rand > pdiscard[id];
     }
 
     /**
@@ -615,30 +1000,27 @@ public class Dictionary {
      * }
      * }</pre>
      *
-     * @param line   List of ints
-     * @param hashes List of ints
+     * @param line   {@link IntList} of ints
+     * @param hashes {@link IntList} of ints
      * @param n      int
      */
-    private void addWordNgrams(List<Integer> line, List<Integer> hashes, int n) {
-        if (FastText.USE_PARALLEL_COMPUTATION && hashes.size() > PARALLEL_SIZE_THRESHOLD) {
-            List<Integer> sync = Collections.synchronizedList(line);
-            IntStream.range(0, hashes.size()).parallel().forEach(i -> addWordNgrams(sync, hashes, i, n));
-            return;
-        }
+    private void addWordNgrams(IntList line, IntList hashes, int n) {
         for (int i = 0; i < hashes.size(); i++) { // int32_t
             addWordNgrams(line, hashes, i, n);
         }
     }
 
-    private void addWordNgrams(List<Integer> line, List<Integer> hashes, int i, int n) {
-        UnsignedLong h = UnsignedLong.fromLongBits(hashes.get(i)); // uint64_t
-        for (int j = i + 1; j < hashes.size() && j < i + n; j++) { // h = h * 116049371 + hashes[j] :
-            h = h.times(ADD_WORDS_NGRAMS_FACTOR_UNSIGNED_LONG).plus(UnsignedLong.fromLongBits(hashes.get(j)));
-            pushHash(line, h.mod(bucket).intValue()); // h % args_->bucket
+    private void addWordNgrams(IntList line, IntList hashes, int i, int n) {
+        // uint64_t arithmetic: the overflow of long multiplication and addition gives the same bits,
+        // only the remainder must be unsigned; int32_t hashes are sign-extended as in the original:
+        long h = hashes.get(i);
+        for (int j = i + 1; j < hashes.size() && j < i + n; j++) {
+            h = h * ADD_WORDS_NGRAMS_FACTOR + hashes.get(j);
+            pushHash(line, (int) Long.remainderUnsigned(h, bucket)); // h % args_->bucket
         }
     }
 
-    private void addWordNgrams(List<Integer> line, List<Integer> hashes) {
+    private void addWordNgrams(IntList line, IntList hashes) {
         addWordNgrams(line, hashes, wordNgrams);
     }
 
@@ -657,18 +1039,18 @@ public class Dictionary {
      * }
      * }}</pre>
      *
-     * @param line List of ints
+     * @param line {@link IntList} of ints
      * @param token String token
      * @param wid int, word id
      */
-    private void addSubwords(List<Integer> line, String token, int wid) {
+    private void addSubwords(IntList line, String token, int wid) {
         if (wid < 0) { // out of vocab
-            computeSubwords(BOW + token + EOW, line);
+            line.addAll(getOovSubwordIds(token));
         } else {
             if (maxn <= 0) { // in vocab w/o subwords
                 line.add(wid);
             } else { // in vocab w/ subwords
-                line.addAll(getSubwords(wid));
+                line.addAll(getSubwordIds(wid));
             }
         }
     }
@@ -683,9 +1065,21 @@ public class Dictionary {
      * }</pre>
      *
      * @param i int
-     * @return List of ints
+     * @return unmodifiable List of ints
      */
     public List<Integer> getSubwords(int i) {
+        return Collections.unmodifiableList(Ints.asList(getSubwordIds(i)));
+    }
+
+    /**
+     * Returns the subwords of the word with the specified id as a primitive array (without copying).
+     * The array must not be modified.
+     *
+     * @param i int
+     * @return array of ints
+     * @see #getSubwords(int)
+     */
+    int[] getSubwordIds(int i) {
         Validate.isTrue(i >= 0);
         Validate.isTrue(i < nwords);
         return words.get(i).subwords;
@@ -707,13 +1101,56 @@ public class Dictionary {
      * @return List of ints
      */
     public List<Integer> getSubwords(String word) {
+        return Collections.unmodifiableList(Ints.asList(getSubwordIds(word)));
+    }
+
+    /**
+     * Returns the subwords of the given word as a primitive array.
+     * The array must not be modified.
+     *
+     * @param word String
+     * @return array of ints
+     * @see #getSubwords(String)
+     */
+    int[] getSubwordIds(String word) {
         int i = getId(word);
         if (i >= 0) {
-            return getSubwords(i);
+            return getSubwordIds(i);
         }
-        List<Integer> ngrams = new ArrayList<>();
-        computeSubwords(BOW + word + EOW, ngrams);
-        return ngrams;
+        return getOovSubwordIds(word);
+    }
+
+    /**
+     * Computes the subwords of the out of vocabulary word.
+     * A word which is missed in the vocabulary (a misspelling, a product code, etc) usually occurs again and again,
+     * so the results are kept in the bounded concurrent cache (LRU), its size is specified by
+     * the system property {@code subwords.cache.size}, see {@link #subwordsCacheStats()}.
+     * The array must not be modified.
+     *
+     * @param word String, not in the vocabulary
+     * @return array of ints
+     */
+    private int[] getOovSubwordIds(String word) {
+        if (maxn <= 0) {
+            return NO_SUBWORDS;
+        }
+        int[] res = oovSubwords.getIfPresent(word);
+        if (res == null) {
+            IntList ngrams = new IntList();
+            computeSubwords(BOW + word + EOW, ngrams);
+            res = ngrams.toArray();
+            oovSubwords.put(word, res);
+        }
+        return res;
+    }
+
+    /**
+     * Returns the statistics of the out of vocabulary subwords cache (hits, misses, evictions).
+     *
+     * @return {@link CacheStats}
+     */
+    public CacheStats subwordsCacheStats() {
+        return oovSubwords.stats();
     }
 
     /**
@@ -736,7 +1173,7 @@ public class Dictionary {
      * @return {@link Multimap}
      */
     public Multimap<String, Integer> getSubwordsMap(String word) {
-        List<Integer> ngrams = new ArrayList<>();
+        IntList ngrams = new IntList();
         List<String> substrings = new ArrayList<>();
         int i = getId(word);
         if (i >= 0) {
@@ -757,6 +1194,16 @@ public class Dictionary {
         return res;
     }
 
+    /**
+     * Creates a reader to parse separate lines.
+     *
+     * @return {@link LineReader}
+     * @see #getLine(LineReader, String, IntList, IntList)
+     */
+    LineReader createLineReader() {
+        return new LineReader(charset);
+    }
+
     /**
      * Creates a dictionary Reader instance.
      *
@@ -828,22 +1275,20 @@ public class Dictionary {
      * @param labelThreshold long
      */
     void threshold(long wordThreshold, long labelThreshold) {
-        Stream<Entry> entries = this.words.stream()
+        boolean parallel = Parallel.isParallel(this.size);
+        Stream<Entry> entries = (parallel ? this.words.parallelStream() : this.words.stream())
                 .filter(e -> (EntryType.WORD != e.type || e.count >= wordThreshold) && (EntryType.LABEL != e.type || e.count >= labelThreshold))
                 .sorted(ENTRY_COMPARATOR);
-        if (FastText.USE_PARALLEL_COMPUTATION && this.size > PARALLEL_SIZE_THRESHOLD) {
-            entries = entries.parallel();
-        }
-        ArrayList<Entry> words = entries.collect(Collectors.toCollection(ArrayList::new));
+        // the parallel stream is executed in the dedicated pool, see Parallel#invoke:
+        ArrayList<Entry> words = parallel ?
+                Parallel.invoke(() -> entries.collect(Collectors.toCollection(ArrayList::new))) :
+                entries.collect(Collectors.toCollection(ArrayList::new));
         words.trimToSize();
         this.words = words;
-        this.word2int = new HashMap<>(words.size());
+        initWordTable();
         int wordsCount = 0;
         int labelsCount = 0;
-        int count = 0;
         for (Entry e : words) {
-            long h = find(e.word);
-            word2int.put(h, count++);
             if (EntryType.WORD == e.type) wordsCount++;
             if (EntryType.LABEL == e.type) labelsCount++;
         }
@@ -912,19 +1357,18 @@ public class Dictionary {
             res.addAll(ngrams);
         }
         pruneIdxSize = pruneIdx.size();
-        word2int.clear();
         int j = 0;
         for (int i = 0; i < this.words.size(); i++) {
             if (getType(i) != EntryType.LABEL && (j >= words.size() || words.get(j) != i)) {
                 continue;
             }
             this.words.set(j, this.words.get(i));
-            word2int.put(find(this.words.get(j).word), j);
             j++;
         }
         nwords = words.size();
         size = nwords + nlabels;
         this.words = this.words.subList(0, size);
+        initWordTable();
         initNgrams();
         return res;
     }
@@ -941,12 +1385,12 @@ public class Dictionary {
         res.nlabels = this.nlabels;
         res.ntokens = this.ntokens;
         res.pruneIdxSize = this.pruneIdxSize;
-        res.word2int = new HashMap<>(this.word2int);
+        res.word2int = this.word2int.clone();
+        res.word2intSize = this.word2intSize;
         res.words = new ArrayList<>(this.words.size());
         this.words.forEach(entry -> res.words.add(entry.copy()));
-        res.words = new ArrayList<>(this.words);
         res.pruneIdx = new HashMap<>(this.pruneIdx);
-        res.pdiscard = Floats.asList(Floats.toArray(this.pdiscard));
+        res.pdiscard = this.pdiscard == null ? null : this.pdiscard.clone();
         return res;
     }
 
@@ -1036,13 +1480,12 @@ public class Dictionary {
         res.nlabels = in.readInt();
         res.ntokens = in.readLong();
         res.pruneIdxSize = in.readLong();
-        res.word2int = new HashMap<>(res.size);
         res.words = new ArrayList<>(res.size);
         for (int i = 0; i < res.size; i++) {
             Entry e = new Entry(FTInputStream.readString(in, res.charset), in.readLong(), EntryType.fromValue(in.readByte()));
             res.words.add(e);
-            res.word2int.put(res.find(e.word), i);
         }
+        res.initWordTable();
         res.pruneIdx.clear();
         for (int i = 0; i < res.pruneIdxSize; i++) {
             res.pruneIdx.put(in.readInt(), in.readInt());
@@ -1095,10 +1538,10 @@ public class Dictionary {
         Dictionary res = new Dictionary(args, charset);
 
         long minThreshold = 1;
-        String word;
+        int length;
 
-        while ((word = reader.nextWord()) != null) {
-            res.add(word);
+        while ((length = reader.nextToken()) >= 0) {
+            res.add(reader.token(), length);
             if (logs.isDebugEnabled() && res.ntokens % READ_LOG_STEP == 0) {
                 logs.debug("\rRead %dM words", res.ntokens / READ_LOG_STEP);
             }
@@ -1119,6 +1562,126 @@ public class Dictionary {
         return res;
     }
 
+    /**
+     * Reads the vocabulary from the file using several threads.
+     * The file is split into shards by byte offsets, each shard is aligned to the line starts
+     * and its words are counted into a separate dictionary by its own thread.
+     * Then the shard dictionaries are merged in the file order: the counts are summed and the words keep
+     * the order of their first occurrence, and the same threshold and sort are applied,
+     * so the result is identical to {@link #read(InputStream, Args, Charset, PrintLogs)}.
+     * The only exception is a huge vocabulary which exceeds 75% of {@link #MAX_VOCAB_SIZE}:
+     * in this case the intermediate pruning is applied to each shard and to the merged dictionary independently.
+     *
+     * @param fs      {@link IOStreams} to open the file
+     * @param file    String, the file uri
+     * @param args    {@link Args}
+     * @param charset {@link Charset}
+     * @param logs    {@link PrintLogs} to log process
+     * @param threads int, the max number of threads, positive
+     * @return {@link Dictionary}
+     * @throws IOException           in case of error with stream
+     * @throws IllegalStateException if no words in dictionary
+     */
+    public static Dictionary read(IOStreams fs, String file, Args args, Charset charset, PrintLogs logs, int threads)
+            throws IOException, IllegalStateException {
+        Validate.isTrue(threads > 0, "Not positive number of threads");
+        long size = fs.size(file);
+        int shards = (int) Math.max(1, Math.min(threads, size / READ_MIN_SHARD_SIZE));
+        if (shards == 1) {
+            try (InputStream in = fs.openInput(file)) {
+                return read(in, args, charset, logs);
+            }
+        }
+        ExecutorService service = Executors.newFixedThreadPool(shards, r -> {
+            Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        Dictionary res = new Dictionary(args, charset);
+        try {
+            List<Future<Dictionary>> parts = new ArrayList<>(shards);
+            for (int i = 0; i < shards; i++) {
+                long start = i * size / shards;
+                long end = (i + 1) * size / shards;
+                parts.add(service.submit(() -> readShard(fs, file, start, end, args, charset)));
+            }
+            long minThreshold = 1;
+            for (Future<Dictionary> part : parts) {
+                Dictionary shard = part.get();
+                res.ntokens += shard.ntokens;
+                for (Entry e : shard.words) {
+                    res.add(e.word, e.type, e.count);
+                    if (res.size > 0.75 * MAX_VOCAB_SIZE) {
+                        minThreshold++;
+                        res.threshold(minThreshold, minThreshold);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IOException(e.getCause());
+        } finally {
+            service.shutdownNow();
+        }
+        res.threshold(args.minCount(), args.minCountLabel());
+        res.initTableDiscard();
+        res.initNgrams();
+        logs.infoln("\rRead %dM words", res.ntokens / READ_LOG_STEP);
+        logs.infoln("Number of words:  %d", res.nwords);
+        logs.infoln("Number of labels: %d", res.nlabels);
+        if (res.size == 0) {
+            throw new IllegalStateException("Empty vocabulary. Try a smaller -minCount value.");
+        }
+        return res;
+    }
+
+    /**
+     * Counts the words of the lines which start within the range {@code [start, end)} of the file.
+     *
+     * @param fs      {@link IOStreams}
+     * @param file    String, the file uri
+     * @param start   long, inclusive
+     * @param end     long, exclusive
+     * @param args    {@link Args}
+     * @param charset {@link Charset}
+     * @return {@link Dictionary}, not thresholded
+     * @throws IOException in case of error with stream
+     */
+    private static Dictionary readShard(IOStreams fs, String file, long start, long end, Args args, Charset charset) throws IOException {
+        Dictionary res = new Dictionary(args, charset);
+        try (SeekableReader reader = createSeekableWordReader(fs.openScrollable(file), charset, FastText.Factory.BUFF_SIZE)) {
+            if (start > 0) {
+                // a line starts at the 'start' position only if the previous byte is a line separator:
+                reader.seek(start - 1);
+                if (!reader.skipLine()) {
+                    return res;
+                }
+            }
+            // a line longer than a shard may cover the whole range, then the next line belongs to another shard:
+            if (reader.getPos() >= end) {
+                return res;
+            }
+            long minThreshold = 1;
+            int length;
+            while ((length = reader.nextToken()) >= 0) {
+                res.add(reader.token(), length);
+                if (res.size > 0.75 * MAX_VOCAB_SIZE) {
+                    minThreshold++;
+                    res.threshold(minThreshold, minThreshold);
+                }
+                // a literal "</s>" in the text can not be taken for the end of line:
+                if (reader.isLineEnd() && reader.getPos() >= end) {
+                    break;
+                }
+            }
+        }
+        return res;
+    }
+
     /**
      * Creates a word reader.
      *
@@ -1149,6 +1712,10 @@ public class Dictionary {
      * @see WordReader
      */
     public static class SeekableReader extends WordReader {
+        // the reusable buffer for word hashes, see #getLine(SeekableReader, IntList, IntList)
+        final IntList wordHashes = new IntList();
+        // the reusable buffer for line ids, see #getLine(SeekableReader, IntList, RandomGenerator)
+        final IntList ids = new IntList();
 
         public SeekableReader(InputStream in, Charset charset, int bufferSize, String newLineSymbol, String delimiters) {
             super(in, charset, bufferSize, newLineSymbol, delimiters);
@@ -1194,6 +1761,43 @@ public class Dictionary {
             return true;
         }
 
+        /**
+         * Returns the offset in bytes from the start of the stream of the next byte to be read by this reader,
+         * i.e. the position of the underlying stream minus the buffered bytes.
+         *
+         * @return long
+         * @throws IOException                   if an I/O error occurs
+         * @throws UnsupportedOperationException if this operation is not supported by the underlying stream
+         */
+        public long getPos() throws IOException, UnsupportedOperationException {
+            checkIsSeekable();
+            return ((ScrollableInputStream) in).getPos() - buffered();
+        }
+
+        /**
+         * Skips the rest of the current line including the line separator,
+         * so the next word will be read from the start of the next line.
+         *
+         * @return false if the end of stream is reached
+         * @throws IOException if an I/O error occurs
+         */
+        public boolean skipLine() throws IOException {
+            int b;
+            while ((b = nextByte()) != END) {
+                if (isNewLine(b)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Resets the internal state to read the encapsulated stream from its current position.
+         */
+        void restart() {
+            super.reset();
+        }
+
         private void checkIsSeekable() {
             if (in instanceof ScrollableInputStream) {
                 return;
@@ -1207,6 +1811,47 @@ public class Dictionary {
         }
     }
 
+    /**
+     * A reusable reader to parse separate lines (strings), which holds a {@link SeekableReader} with its buffer.
+     * Not thread-safe.
+     */
+    static class LineReader {
+        private final LineInputStream in = new LineInputStream();
+        private final SeekableReader reader;
+
+        private LineReader(Charset charset) {
+            this.reader = createSeekableWordReader(in, charset, FastText.Factory.BUFF_SIZE);
+        }
+
+        /**
+         * Prepares the reader to read the given line.
+         *
+         * @param line array of bytes
+         * @return {@link SeekableReader} to read words from the line
+         */
+        SeekableReader reset(byte[] line) {
+            in.reset(line);
+            reader.restart();
+            return reader;
+        }
+    }
+
+    /**
+     * A {@link ByteArrayInputStream} which can be refilled.
+     */
+    private static class LineInputStream extends ByteArrayInputStream {
+        private LineInputStream() {
+            super(new byte[0]);
+        }
+
+        private void reset(byte[] bytes) {
+            this.buf = bytes;
+            this.pos = 0;
+            this.mark = 0;
+            this.count = bytes.length;
+        }
+    }
+
     public enum EntryType {
         WORD, LABEL;
 
@@ -1221,7 +1866,7 @@ public class Dictionary {
     public static class Entry {
         final String word;
         final EntryType type;
-        final List<Integer> subwords = new ArrayList<>();
+        int[] subwords = new int[0];
         long count;
 
         private Entry(String word, long count, EntryType type) {
@@ -1232,7 +1877,7 @@ public class Dictionary {
 
         @Override
         public String toString() {
-            return String.format("entry [word=%s, count=%d, type=%s, subwords=%s]", word, count, type, subwords);
+            return String.format("entry [word=%s, count=%d, type=%s, subwords=%s]", word, count, type, Arrays.toString(subwords));
         }
 
         public long count() {
@@ -1241,7 +1886,7 @@ public class Dictionary {
 
         Entry copy() {
             Entry res = new Entry(this.word, this.count, this.type);
-            res.subwords.addAll(this.subwords);
+            res.subwords = this.subwords == null ? null : this.subwords.clone();
             return res;
         }
     }
@@ -0,0 +1,141 @@
+package cc.fasttext;
+
+import cc.fasttext.io.FTInputStream;
+import org.apache.commons.lang.Validate;
+import org.apache.commons.math3.distribution.UniformRealDistribution;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Objects;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * An off-heap {@link Matrix}, the data is stored in direct {@link ByteBuffer}s.
+ * It does not put any pressure on the garbage collector and is not limited by the max array size,
+ * so it is suitable for large input matrices (e.g. {@code -bucket 10000000 -dim 100}).
+ * Note: the total size is limited by the JVM option {@code -XX:MaxDirectMemorySize} (by default it is equal to the heap size).
+ * The page size (in bytes) can be changed through the system property {@code matrix.page.size}, the default value is 1GB.
+ */
+class DirectMatrix extends PagedMatrix {
+    private static final int PAGE_SIZE = Integer.parseInt(System.getProperty("matrix.page.size",
+            String.valueOf(1 << 30))) / Float.BYTES;
+    private static final int READ_BLOCK_SIZE = 64 * 1024;
+
+    DirectMatrix(int m, int n) {
+        this(m, n, rowsPerPage(n, PAGE_SIZE));
+    }
+
+    private DirectMatrix(int m, int n, int rows) {
+        super(m, n, allocate(m, n, rows), rows);
+    }
+
+    private static FloatBuffer[] allocate(int m, int n, int rows) {
+        Validate.isTrue(m > 0, "Wrong m-size: " + m);
+        FloatBuffer[] res = new FloatBuffer[(m - 1) / rows + 1];
+        for (int p = 0; p < res.length; p++) {
+            int size = Math.min(rows, m - p * rows) * n;
+            res[p] = ByteBuffer.allocateDirect(size * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+        return res;
+    }
+
+    @Override
+    public Matrix copy() {
+        DirectMatrix res = new DirectMatrix(m, n, rows);
+        for (int p = 0; p < pages.length; p++) {
+            FloatBuffer src = pages[p].duplicate();
+            src.clear();
+            res.pages[p].duplicate().put(src);
+        }
+        return res;
+    }
+
+    @Override
+    void put(int i, int j, float value) {
+        page(i).put(offset(i) + j, value);
+    }
+
+    @Override
+    public void compute(int i, int j, DoubleUnaryOperator operator) {
+        Objects.requireNonNull(operator, "Null operator");
+        FloatBuffer buffer = page(i);
+        int index = offset(i) + j;
+        buffer.put(index, (float) operator.applyAsDouble(buffer.get(index)));
+    }
+
+    /**
+     * Fills the matrix with random values in the same order as the heap {@link Matrix} does.
+     *
+     * @param rnd   {@link RandomGenerator}
+     * @param bound float, distribution bound
+     */
+    @Override
+    public void uniform(RandomGenerator rnd, float bound) {
+        UniformRealDistribution uniform = new UniformRealDistribution(rnd, -bound, bound);
+        for (FloatBuffer page : pages) {
+            for (int i = 0; i < page.capacity(); i++) {
+                page.put(i, (float) uniform.sample());
+            }
+        }
+    }
+
+    @Override
+    public void addRow(Vector vector, int index, float factor) {
+        validateMIndex(index);
+        validateNVector(vector);
+        float[] vec = vector.data();
+        FloatBuffer buffer = page(index);
+        int offset = offset(index);
+        for (int j = 0; j < n; j++) {
+            buffer.put(offset + j, buffer.get(offset + j) + factor * vec[j]);
+        }
+    }
+
+    @Override
+    protected void rowOp(Vector vector, int start, int end, DoubleBinaryOperator op) {
+        if (end == -1) {
+            end = m;
+        }
+        Validate.isTrue(end <= vector.size());
+        Validate.isTrue(end >= start);
+        int shift = start;
+        Parallel.forEachRow(start, end, i -> {
+            float val = vector.get(i - shift);
+            if (val == 0) {
+                return;
+            }
+            FloatBuffer buffer = page(i);
+            int offset = offset(i);
+            for (int j = offset; j < offset + n; j++) {
+                buffer.put(j, (float) op.applyAsDouble(buffer.get(j), val));
+            }
+        });
+    }
+
+    /**
+     * Reads an off-heap matrix from the stream.
+     *
+     * @param in {@link FTInputStream}
+     * @return {@link DirectMatrix} new instance
+     * @throws IOException if an I/O error occurs
+     * @see Matrix#load(FTInputStream)
+     */
+    static DirectMatrix load(FTInputStream in) throws IOException {
+        DirectMatrix res = new DirectMatrix((int) in.readLong(), (int) in.readLong());
+        // read by blocks of whole rows, a block never crosses a page boundary
+        float[] block = new float[Math.max(1, Math.min(res.rows, READ_BLOCK_SIZE / res.n)) * res.n];
+        for (int i = 0; i < res.m; ) {
+            int count = Math.min(Math.min(block.length / res.n, res.m - i), res.rows - i % res.rows);
+            in.readFloats(block, 0, count * res.n);
+            FloatBuffer buffer = res.page(i).duplicate();
+            buffer.position(res.offset(i));
+            buffer.put(block, 0, count * res.n);
+            i += count;
+        }
+        return res;
+    }
+}
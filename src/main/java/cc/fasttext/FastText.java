@@ -1,13 +1,20 @@
 package cc.fasttext;
 
+import cc.fasttext.Args.LossName;
 import cc.fasttext.Args.ModelName;
 import cc.fasttext.Dictionary.EntryType;
 import cc.fasttext.io.*;
+import cc.fasttext.io.impl.GzipIOStreams;
 import cc.fasttext.io.impl.LocalIOStreams;
+import cc.fasttext.io.impl.LocalInputStream;
+import cc.fasttext.io.impl.MappedInputStream;
+import com.google.common.base.Throwables;
 import com.google.common.collect.*;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.Striped;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
-import org.apache.commons.math3.distribution.UniformIntegerDistribution;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.random.Well19937c;
 import org.apache.commons.math3.util.FastMath;
@@ -17,13 +24,17 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.lang.ref.Reference;
 import java.lang.ref.SoftReference;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 import java.util.function.Function;
 import java.util.function.IntFunction;
 import java.util.stream.Collectors;
@@ -34,6 +45,9 @@ import java.util.stream.StreamSupport;
 /**
  * FastText class, can be used as a lib in other projects.
  * It is assumed that all public methods of the instance do not change the state of the object and therefore thread-safe.
+ * A single instance can serve many concurrent prediction requests:
+ * {@link #predictLine(String, int)} uses the per-thread scratch buffers (hidden/output vectors, token ids, heap),
+ * so it requires neither synchronization nor allocation of these buffers for each call.
  * To create instance use {@link Factory factory}.
  * <p>
  * see <a href='https://github.com/facebookresearch/fastText/blob/master/src/fasttext.cc'>fasttext.cc</a> and
@@ -47,13 +61,14 @@ public class FastText {
     // binary file signature:
     public static final int FASTTEXT_FILEFORMAT_MAGIC_INT32 = 793_712_314;
 
-    // experimental, use parallel streams where it makes sense:
+    // use the row-blocked parallel computations for whole-matrix operations, see Parallel:
     public static final boolean USE_PARALLEL_COMPUTATION = Boolean.parseBoolean(System.getProperty("parallel", "true"));
-    static final int PARALLEL_THRESHOLD_FACTOR = Integer.parseInt(System.getProperty("parallel.factor", "100"));
+    // the number of lines in a task of multi-threaded prediction:
+    private static final int PREDICT_BATCH_SIZE = 256;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(FastText.class);
 
-    public static final Factory DEFAULT_FACTORY = new Factory(new LocalIOStreams(), Well19937c::new, new SimpleLogger(), StandardCharsets.UTF_8);
+    public static final Factory DEFAULT_FACTORY = new Factory(new GzipIOStreams(new LocalIOStreams()), Well19937c::new, new SimpleLogger(), StandardCharsets.UTF_8);
 
     private static final double FIND_NN_THRESHOLD = 1e-8;
     private final Args args;
@@ -65,7 +80,9 @@ public class FastText {
     private final PrintLogs logs;
     private final IntFunction<RandomGenerator> random;
 
-    private Reference<Matrix> precomputedWordVectors;
+    private volatile Reference<Matrix> precomputedWordVectors;
+    // per-thread inference buffers:
+    private final ThreadLocal<InferenceScratch> scratch;
 
     private FastText(Args args, Dictionary dict, Model model, int version,
                      IOStreams fs, PrintLogs logs, IntFunction<RandomGenerator> random) {
@@ -76,6 +93,7 @@ public class FastText {
         this.fs = fs;
         this.logs = logs;
         this.random = random;
+        this.scratch = ThreadLocal.withInitial(() -> new InferenceScratch(dict, model));
     }
 
     public static FastText train(Args args, String file) throws IOException, ExecutionException {
@@ -127,12 +145,12 @@ public class FastText {
      */
     public Vector getWordVector(String word) {
         Vector res = new Vector(args.dim());
-        List<Integer> ngrams = dict.getSubwords(word);
-        for (Integer i : ngrams) {
+        int[] ngrams = dict.getSubwordIds(word);
+        for (int i : ngrams) {
             addInputVector(res, i);
         }
-        if (ngrams.size() > 0) {
-            res.mul(1.0f / ngrams.size());
+        if (ngrams.length > 0) {
+            res.mul(1.0f / ngrams.length);
         }
         return res;
     }
@@ -224,25 +242,33 @@ public class FastText {
     private Matrix computeWordVectors() {
         logs.info("Pre-computing word vectors... ");
         Matrix res = new Matrix(dict.nwords(), args.dim());
-        for (int i = 0; i < dict.nwords(); i++) {
+        // each row is written by a single task:
+        Parallel.forEachRow(0, dict.nwords(), i -> {
             String word = dict.getWord(i);
             Vector vec = getWordVector(word);
             float norm = vec.norm();
             if (norm > 0) {
                 res.addRow(vec, i, 1.0f / norm);
             }
-        }
+        });
         logs.infoln("done.");
         return res;
     }
 
     Matrix getPrecomputedWordVectors() {
+        Reference<Matrix> ref = precomputedWordVectors;
         Matrix res;
-        if (precomputedWordVectors != null && (res = precomputedWordVectors.get()) != null) {
+        if (ref != null && (res = ref.get()) != null) {
+            return res;
+        }
+        synchronized (this) {
+            ref = precomputedWordVectors;
+            if (ref != null && (res = ref.get()) != null) {
+                return res;
+            }
+            precomputedWordVectors = new SoftReference<>(res = computeWordVectors());
             return res;
         }
-        precomputedWordVectors = new SoftReference<>(res = computeWordVectors());
-        return res;
     }
 
     /**
@@ -284,22 +310,24 @@ public class FastText {
         if (FastMath.abs(queryNorm) < FIND_NN_THRESHOLD) {
             queryNorm = 1;
         }
-        TreeMultimap<Float, String> heap = TreeMultimap.create(Comparator.reverseOrder(), Comparator.reverseOrder());
         Multimap<Float, String> res = TreeMultimap.create(Comparator.reverseOrder(), Comparator.reverseOrder());
-        for (int i = 0; i < dict.nwords(); i++) {
-            String word = dict.getWord(i);
-            float dp = wordVectors.dotRow(queryVec, i);
-            heap.put(dp / queryNorm, word);
-        }
-        int i = 0;
-        while (i < k && heap.size() > 0) {
-            Float key = heap.asMap().firstKey();
-            String value = heap.get(key).first();
-            if (!banSet.contains(value)) {
-                res.put(key, value);
-                i++;
+        float[] scores = new float[dict.nwords()];
+        float norm = queryNorm;
+        Parallel.forEachRow(0, scores.length, i -> scores[i] = wordVectors.dotRow(queryVec, i) / norm);
+        // only k + |banSet| best words can be in the result:
+        ScoreHeap heap = new ScoreHeap((int) Math.min((long) k + banSet.size(), Math.max(scores.length, 1)));
+        for (int i = 0; i < scores.length; i++) {
+            if (!heap.rejects(scores[i])) {
+                heap.offer(scores[i], i);
+            }
+        }
+        heap.sort();
+        for (int i = 0, j = 0; j < k && i < heap.size(); i++) {
+            String word = dict.getWord(heap.id(i));
+            if (!banSet.contains(word)) {
+                res.put(heap.score(i), word);
+                j++;
             }
-            heap.remove(key, value);
         }
         return res;
     }
@@ -589,26 +617,51 @@ public class FastText {
         }
         logs.infoln("Saving model to %s", file);
         try (FTOutputStream out = new FTOutputStream(new BufferedOutputStream(fs.createOutput(file)))) {
-            signModel(out);
-            args.save(out);
-            dict.save(out);
-            boolean quant_ = model.isQuant();
-            out.writeBoolean(quant_);
-            if (quant_) {
-                model.qinput().save(out);
-            } else {
-                model.input().save(out);
-            }
-            out.writeBoolean(args.qout());
-            if (quant_ && args.qout()) {
-                model.qoutput().save(out);
-            } else {
-                model.output().save(out);
-            }
+            saveModel(out);
         }
         Events.SAVE_BIN.end();
     }
 
+    private void saveModel(FTOutputStream out) throws IOException {
+        signModel(out);
+        args.save(out);
+        dict.save(out);
+        boolean quant_ = model.isQuant();
+        out.writeBoolean(quant_);
+        if (quant_) {
+            model.qinput().save(out);
+        } else {
+            model.input().save(out);
+        }
+        out.writeBoolean(args.qout());
+        if (quant_ && args.qout()) {
+            model.qoutput().save(out);
+        } else {
+            model.output().save(out);
+        }
+    }
+
+    /**
+     * Saves the model of an unfinished training with the state to resume it, see {@link Factory#resume(String, String)}.
+     * If the file system {@link IOStreams#canMove(String) can rename} the file, the checkpoint is written
+     * into a temporary file first, so the previous checkpoint is replaced only by a complete one.
+     *
+     * @param file  the full file path-uri
+     * @param state {@link Checkpoint}
+     * @throws IOException if an I/O error occurs
+     */
+    void saveCheckpoint(String file, Checkpoint state) throws IOException {
+        boolean move = fs.canMove(file);
+        String tmp = move ? file + ".tmp" : file;
+        try (FTOutputStream out = new FTOutputStream(new BufferedOutputStream(fs.createOutput(tmp)))) {
+            saveModel(out);
+            state.save(out);
+        }
+        if (move) {
+            fs.move(tmp, file);
+        }
+    }
+
     /**
      * Writes versions to the model file bin.
      * <pre>{@code
@@ -664,17 +717,35 @@ public class FastText {
     public TestInfo test(InputStream in, int k) throws IOException {
         Objects.requireNonNull(in, "Null input");
         Validate.isTrue(k > 0, "Not positive factor");
+        return test(dict.createReader(in), k, Long.MAX_VALUE);
+    }
+
+    /**
+     * Tests the lines which start before the specified position.
+     *
+     * @param reader {@link Dictionary.SeekableReader} positioned at the start of a line
+     * @param k      the number of result labels
+     * @param end    long, the end position in bytes (exclusive), {@code Long.MAX_VALUE} to read the stream till the end
+     * @return {@link TestInfo} object
+     * @throws IOException if something wrong while reading
+     */
+    private TestInfo test(Dictionary.SeekableReader reader, int k, long end) throws IOException {
         int nexamples = 0, nlabels = 0;
         double precision = 0.0;
-        List<Integer> line = new ArrayList<>();
-        List<Integer> labels = new ArrayList<>();
-        Dictionary.SeekableReader reader = dict.createReader(in);
-        while (!reader.isEnd() && dict.getLine(reader, line, labels) != 0) {
+        InferenceScratch state = new InferenceScratch(dict, model);
+        IntList line = state.words;
+        IntList labels = state.labels;
+        ScoreHeap heap = state.heap;
+        while (!reader.isEnd() && (end == Long.MAX_VALUE || reader.getPos() < end) && dict.getLine(reader, line, labels) != 0) {
             if (labels.isEmpty() || line.isEmpty()) {
                 continue;
             }
-            TreeMultimap<Float, Integer> modelPredictions = model.predict(line, k);
-            precision += modelPredictions.values().stream().filter(labels::contains).count();
+            model.predict(line, k, state.hidden, state.output, heap);
+            for (int i = 0; i < heap.size(); i++) {
+                if (labels.contains(heap.id(i))) {
+                    precision += 1.0;
+                }
+            }
             nexamples++;
             nlabels += labels.size();
         }
@@ -699,6 +770,78 @@ public class FastText {
         }
     }
 
+    /**
+     * Tests a file using several threads.
+     * The file is split into the {@code threads} shards by byte offsets (in the same way as the training splits it),
+     * each shard is aligned to the line starts and is evaluated in its own thread;
+     * then the counts are merged, so the result is the same as for {@link #test(String, int)}.
+     *
+     * @param file    file path uri, not null
+     * @param k       the number of result labels
+     * @param threads the number of threads, positive
+     * @return {@link TestInfo} object.
+     * @throws IOException              if something wrong while reading
+     * @throws ExecutionException       if any error occurs in any sub-thread
+     * @throws IllegalArgumentException in case wrong file specified.
+     */
+    public TestInfo test(String file, int k, int threads) throws IOException, ExecutionException {
+        Validate.isTrue(threads > 0, "Not positive number of threads");
+        if (threads == 1) {
+            return test(file, k);
+        }
+        Validate.isTrue(k > 0, "Not positive factor");
+        if (!fs.canRead(file)) {
+            throw new IllegalArgumentException("Can't read file " + file);
+        }
+        long size = fs.size(file);
+        ExecutorService service = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<TestInfo>> shards = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                long start = i * size / threads;
+                long end = (i + 1) * size / threads;
+                shards.add(service.submit(() -> testShard(file, k, start, end)));
+            }
+            TestInfo res = new TestInfo(k, 0, 0, 0);
+            for (Future<TestInfo> shard : shards) {
+                res = res.merge(shard.get());
+            }
+            return res;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(e);
+        } finally {
+            service.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests the lines which start within the range {@code [start, end)} of the file.
+     *
+     * @param file  file path uri
+     * @param k     the number of result labels
+     * @param start long, inclusive
+     * @param end   long, exclusive
+     * @return {@link TestInfo} object.
+     * @throws IOException if something wrong while reading
+     */
+    private TestInfo testShard(String file, int k, long start, long end) throws IOException {
+        try (Dictionary.SeekableReader reader = dict.createReader(fs.openScrollable(file))) {
+            if (start > 0) {
+                // a line starts at the 'start' position only if the previous byte is a line separator:
+                reader.seek(start - 1);
+                if (!reader.skipLine()) {
+                    return new TestInfo(k, 0, 0, 0);
+                }
+            }
+            return test(reader, k, end);
+        }
+    }
+
     /**
      * Compares labels for output, auxiliary method.
      *
@@ -715,6 +858,20 @@ public class FastText {
         return left.compareTo(right);
     }
 
+    /**
+     * Transforms the model's predictions to the output form, auxiliary method.
+     *
+     * @param heap {@link ScoreHeap}, label ids with log-probabilities
+     * @return {@link Multimap}, labels (String) as keys, log-probabilities (float) as values
+     */
+    private Multimap<String, Float> toLabelMultimap(ScoreHeap heap) {
+        Multimap<String, Float> res = TreeMultimap.create((left, right) -> compareLabels(args.label(), left, right), Comparator.reverseOrder());
+        for (int i = 0; i < heap.size(); i++) {
+            res.put(dict.getLabel(heap.id(i)), heap.score(i));
+        }
+        return res;
+    }
+
     /**
      * Transforms {@link Multimap} -> {@link Map}, auxiliary method.
      *
@@ -775,9 +932,25 @@ public class FastText {
      * @see #predict(String, int)
      */
     public Stream<Map<String, Float>> predict(InputStream in, int k) {
+        return predict(in, k, 0f);
+    }
+
+    /**
+     * Predicts the labels with the probability not less than the threshold, at most {@code k} per line.
+     * A line without such labels gives no result, as a line without known words.
+     *
+     * @param in        {@link InputStream} to read data
+     * @param k         the max number of result labels in the line
+     * @param threshold float, the min probability, from 0 to 1
+     * @return {@link Stream} of {@link Map map}s with labels as keys and probabilities (float) as values
+     * @see #predict(InputStream, int)
+     */
+    public Stream<Map<String, Float>> predict(InputStream in, int k, float threshold) {
         Objects.requireNonNull(in, "Null input");
         Validate.isTrue(k > 0, "Not positive factor");
         Dictionary.SeekableReader reader = dict.createReader(in);
+        // the stream can be consumed by any thread, so the buffers are not thread-local:
+        InferenceScratch state = new InferenceScratch(dict, model);
         Spliterator<Map<String, Float>> res = Spliterators.spliteratorUnknownSize(new Iterator<Map<String, Float>>() {
             @Override
             public boolean hasNext() {
@@ -789,7 +962,7 @@ public class FastText {
                 boolean hasNext = !reader.isEnd();
                 if (!hasNext) throw new NoSuchElementException();
                 try {
-                    return toProbabilityMap(predict(reader, k));
+                    return toProbabilityMap(predict(reader, k, threshold, state));
                 } catch (IOException e) {
                     throw new UncheckedIOException(e);
                 }
@@ -798,6 +971,119 @@ public class FastText {
         return StreamSupport.stream(res, false).filter(m -> !m.isEmpty());
     }
 
+    /**
+     * Predicts most likely labels for input stream using several threads.
+     * The input is split into batches of lines by the calling thread,
+     * the batches are predicted by the {@code threads} workers, and the results are returned in the input order,
+     * so the result is the same as for {@link #predict(InputStream, int)}.
+     * The number of batches in progress is limited, so the memory consumption does not depend on the input size.
+     * Note: don't forget to call {@link Stream#close()} to stop the workers if the stream is not consumed entirely.
+     *
+     * @param in      {@link InputStream} to read data
+     * @param k       the number of result labels in the line
+     * @param threads the number of workers, positive
+     * @return {@link Stream} of {@link Map map}s with labels as keys and probabilities (float) as values
+     * @see #predict(String, int, int)
+     */
+    public Stream<Map<String, Float>> predict(InputStream in, int k, int threads) {
+        return predict(in, k, 0f, threads);
+    }
+
+    /**
+     * Predicts the labels with the probability not less than the threshold using several threads.
+     *
+     * @param in        {@link InputStream} to read data
+     * @param k         the max number of result labels in the line
+     * @param threshold float, the min probability, from 0 to 1
+     * @param threads   the number of workers, positive
+     * @return {@link Stream} of {@link Map map}s with labels as keys and probabilities (float) as values
+     * @see #predict(InputStream, int, int)
+     * @see #predict(InputStream, int, float)
+     */
+    public Stream<Map<String, Float>> predict(InputStream in, int k, float threshold, int threads) {
+        Objects.requireNonNull(in, "Null input");
+        Validate.isTrue(k > 0, "Not positive factor");
+        Validate.isTrue(threads > 0, "Not positive number of threads");
+        if (threads == 1) {
+            return predict(in, k, threshold);
+        }
+        ByteLineReader lines = new ByteLineReader(in, Factory.BUFF_SIZE, (byte) '\n');
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService service = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setName("FT-PredictThread-" + counter.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<List<Map<String, Float>>>> batches = new ArrayDeque<>();
+        Iterator<List<Map<String, Float>>> res = new Iterator<List<Map<String, Float>>>() {
+            private boolean end;
+
+            @Override
+            public boolean hasNext() {
+                submit();
+                return !batches.isEmpty();
+            }
+
+            @Override
+            public List<Map<String, Float>> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                try {
+                    return batches.poll().get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted", e);
+                } catch (ExecutionException e) {
+                    Throwables.throwIfUnchecked(e.getCause());
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+
+            private void submit() {
+                while (!end && batches.size() < 2 * threads) {
+                    List<byte[]> batch;
+                    try {
+                        batch = lines.nextLines(PREDICT_BATCH_SIZE);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    if (batch.isEmpty()) {
+                        end = true;
+                        service.shutdown();
+                        return;
+                    }
+                    batches.add(service.submit(() -> predictLines(batch, k, threshold)));
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(res, Spliterator.ORDERED), false)
+                .flatMap(List::stream).onClose(service::shutdownNow);
+    }
+
+    /**
+     * Predicts the given lines, a single task of {@link #predict(InputStream, int, int)}.
+     *
+     * @param lines     List of lines as bytes
+     * @param k         the number of result labels in the line
+     * @param threshold float, the min probability
+     * @return List of non-empty {@link Map map}s
+     */
+    private List<Map<String, Float>> predictLines(List<byte[]> lines, int k, float threshold) {
+        InferenceScratch state = scratch.get();
+        List<Map<String, Float>> res = new ArrayList<>(lines.size());
+        for (byte[] line : lines) {
+            dict.getLine(state.reader, line, state.words, state.labels);
+            if (state.words.isEmpty()) {
+                continue;
+            }
+            ScoreHeap heap = model.predict(state.words, k, threshold, state.hidden, state.output, state.heap);
+            if (!heap.isEmpty()) {
+                res.add(toProbabilityMap(toLabelMultimap(heap)));
+            }
+        }
+        return res;
+    }
+
     /**
      * <pre>{@code
      * void FastText::predict(std::istream& in, int32_t k, std::vector<std::pair<real,std::string>>& predictions) const {
@@ -815,25 +1101,19 @@ public class FastText {
      *  }
      * }}</pre>
      *
-     * @param in {@link Dictionary.SeekableReader}
-     * @param k  int the factor
+     * @param in        {@link Dictionary.SeekableReader}
+     * @param k         int the factor
+     * @param threshold float, the min probability
+     * @param state     {@link InferenceScratch} buffers to use
      * @return {@link Multimap}
      * @throws IOException if i/o error occures
      */
-    private Multimap<String, Float> predict(Dictionary.SeekableReader in, int k) throws IOException {
-        List<Integer> words = new ArrayList<>();
-        List<Integer> labels = new ArrayList<>();
-        dict.getLine(in, words, labels);
-        if (words.isEmpty()) {
+    private Multimap<String, Float> predict(Dictionary.SeekableReader in, int k, float threshold, InferenceScratch state) throws IOException {
+        dict.getLine(in, state.words, state.labels);
+        if (state.words.isEmpty()) {
             return ImmutableListMultimap.of();
         }
-        Vector hidden = new Vector(args.dim());
-        Vector output = new Vector(dict.nlabels());
-        TreeMultimap<Float, Integer> map = model.predict(words, k, hidden, output);
-        @SuppressWarnings("ConstantConditions")
-        Multimap<String, Float> res = TreeMultimap.create((left, right) -> compareLabels(args.label(), left, right), map.keySet().comparator());
-        map.forEach((f, i) -> res.put(dict.getLabel(i), f));
-        return res;
+        return toLabelMultimap(model.predict(state.words, k, threshold, state.hidden, state.output, state.heap));
     }
 
     /**
@@ -862,6 +1142,49 @@ public class FastText {
         });
     }
 
+    /**
+     * Predicts most likely labels for specified file using several threads.
+     * Note: don't forget to call {@link Stream#close()} after terminate operation.
+     *
+     * @param file    the file uri-path to predict
+     * @param k       int, the factor (size of result map)
+     * @param threads int, the number of workers
+     * @return Stream of map (lines), where label is a key and probability is a value, the size of map is {@code k}
+     * @throws IOException              if unable to open file
+     * @throws IllegalArgumentException if wrong input
+     * @see #predict(InputStream, int, int)
+     */
+    public Stream<Map<String, Float>> predict(String file, int k, int threads) throws IOException, IllegalArgumentException {
+        return predict(file, k, 0f, threads);
+    }
+
+    /**
+     * Predicts the labels with the probability not less than the threshold for specified file using several threads.
+     * Note: don't forget to call {@link Stream#close()} after terminate operation.
+     *
+     * @param file      the file uri-path to predict
+     * @param k         int, the max size of result map
+     * @param threshold float, the min probability, from 0 to 1
+     * @param threads   int, the number of workers
+     * @return Stream of map (lines), where label is a key and probability is a value
+     * @throws IOException              if unable to open file
+     * @throws IllegalArgumentException if wrong input
+     * @see #predict(InputStream, int, float, int)
+     */
+    public Stream<Map<String, Float>> predict(String file, int k, float threshold, int threads) throws IOException, IllegalArgumentException {
+        if (!fs.canRead(file)) {
+            throw new IllegalArgumentException("Can't read file " + file);
+        }
+        InputStream in = fs.openInput(file);
+        return predict(in, k, threshold, threads).onClose(() -> {
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
     /**
      * Predicts the given line.
      *
@@ -872,19 +1195,79 @@ public class FastText {
      * @throws IllegalArgumentException if wrong input
      */
     public Map<String, Float> predictLine(String line, int k) throws IllegalStateException, IllegalArgumentException {
+        return predictLine(line, k, 0f);
+    }
+
+    /**
+     * Predicts the labels of the given line with the probability not less than the threshold.
+     * It is useful for the {@link Args.LossName#OVA one-vs-all} models, where each label has an independent probability.
+     *
+     * @param line      String data to analyze
+     * @param k         int, the max size of result map
+     * @param threshold float, the min probability, from 0 to 1
+     * @return Map, labels as keys, probability as values
+     * @throws IllegalStateException    if duplicate labels in the output
+     * @throws IllegalArgumentException if wrong input
+     */
+    public Map<String, Float> predictLine(String line, int k, float threshold) throws IllegalStateException, IllegalArgumentException {
         Validate.notEmpty(line, "Null line specified.");
         Validate.isTrue(k > 0, "Negative or zero factor");
-        List<Integer> words = dict.getLine(line);
-        if (words.isEmpty()) {
+        InferenceScratch state = scratch.get();
+        dict.getLine(state.reader, line, state.words, state.labels);
+        if (state.words.isEmpty()) {
             return Collections.emptyMap();
         }
-        Vector hidden = new Vector(args.dim());
-        Vector output = new Vector(dict.nlabels());
-        TreeMultimap<Float, Integer> map = model.predict(words, k, hidden, output);
-        @SuppressWarnings("ConstantConditions")
-        Multimap<String, Float> res = TreeMultimap.create((left, right) -> compareLabels(args.label(), left, right), map.keySet().comparator());
-        map.forEach((f, i) -> res.put(dict.getLabel(i), f));
-        return toProbabilityMap(res);
+        return toProbabilityMap(toLabelMultimap(model.predict(state.words, k, threshold, state.hidden, state.output, state.heap)));
+    }
+
+    /**
+     * Predicts the given lines in a batch.
+     * The result is the same as calling {@link #predictLine(String, int)} for each line, but it is faster for large batches:
+     * the lines are tokenized in parallel, and then the model scores them by blocks against the output matrix
+     * (see {@link Model#predictBatch(List, int)}), instead of a matrix-vector product for each line.
+     *
+     * @param lines List of Strings to analyze, not null, without null elements
+     * @param k     int, the factor (size of each result map)
+     * @return List of Maps in the same order as the lines, labels as keys, probability as values;
+     * a line without known words gets an empty map
+     * @throws IllegalStateException    if duplicate labels in the output
+     * @throws IllegalArgumentException if wrong input
+     */
+    public List<Map<String, Float>> predictBatch(List<String> lines, int k) throws IllegalStateException, IllegalArgumentException {
+        return predictBatch(lines, k, 0f);
+    }
+
+    /**
+     * Predicts the given lines in a batch, only the labels with the probability not less than the threshold are returned.
+     *
+     * @param lines     List of Strings to analyze, not null, without null elements
+     * @param k         int, the max size of each result map
+     * @param threshold float, the min probability, from 0 to 1
+     * @return List of Maps in the same order as the lines, labels as keys, probability as values
+     * @throws IllegalStateException    if duplicate labels in the output
+     * @throws IllegalArgumentException if wrong input
+     * @see #predictBatch(List, int)
+     */
+    public List<Map<String, Float>> predictBatch(List<String> lines, int k, float threshold) throws IllegalStateException, IllegalArgumentException {
+        Validate.noNullElements(Objects.requireNonNull(lines, "Null lines specified."), "Null line specified.");
+        Validate.isTrue(k > 0, "Negative or zero factor");
+        IntList[] inputs = new IntList[lines.size()];
+        Parallel.forEachBlock(0, inputs.length, Model.BATCH_BLOCK_SIZE, (from, to) -> {
+            InferenceScratch state = scratch.get();
+            for (int i = from; i < to; i++) {
+                inputs[i] = new IntList();
+                dict.getLine(state.reader, lines.get(i), inputs[i], state.labels);
+            }
+        });
+        ScoreHeap[] heaps = model.predictBatch(Arrays.asList(inputs), k, threshold);
+        // the blocks set distinct elements, the list is not structurally modified:
+        List<Map<String, Float>> res = new ArrayList<>(Collections.nCopies(heaps.length, null));
+        Parallel.forEachBlock(0, res.size(), Model.BATCH_BLOCK_SIZE, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                res.set(i, heaps[i].isEmpty() ? Collections.emptyMap() : toProbabilityMap(toLabelMultimap(heaps[i])));
+            }
+        });
+        return Collections.unmodifiableList(res);
     }
 
     /**
@@ -978,7 +1361,12 @@ public class FastText {
                 .setQNorm(other.qnorm())
                 .setDSub(other.dsub())
                 .build();
+        long rows = qargs.cutoff() > 0 && qargs.cutoff() < model.input().getM() ? qargs.cutoff() : model.input().getM();
+        // checked before the retraining, the product quantizer works with the whole matrix as a single array:
+        Validate.isTrue(rows * qargs.dim() <= Matrix.MAX_ARRAY_SIZE,
+                "Too large input matrix to quantize: " + rows + "x" + qargs.dim() + ", reduce the number of rows with cutoff");
         Dictionary qdict = this.dict.copy();
+        // the retraining gets only heap copies, the matrices of a memory-mapped model are read-only:
         Matrix input;
         Matrix output = model.output().copy();
         Factory factory = toFactory();
@@ -1034,6 +1422,10 @@ public class FastText {
             this.labels = numLabels;
         }
 
+        private TestInfo merge(TestInfo other) {
+            return new TestInfo(k, precision + other.precision, examples + other.examples, labels + other.labels);
+        }
+
         public double getPrecision() {
             return precision;
         }
@@ -1119,10 +1511,18 @@ public class FastText {
         public static final Locale LOCALE = Locale.ENGLISH;
         public static final int BUFF_SIZE = 8 * 1024;
 
-        private final IOStreams fs;
-        private final PrintLogs logs;
-        private final IntFunction<RandomGenerator> random;
-        private final Charset charset;
+        // the settings, each setter changes one of them in a new copy, so a published instance is not modified:
+        private IOStreams fs;
+        private PrintLogs logs;
+        private IntFunction<RandomGenerator> random;
+        private Charset charset;
+        private boolean memoryMapped;
+        private boolean offHeap;
+        private boolean corpusCache;
+        private int prefetch;
+        private int outputLocks;
+        private String checkpoint;
+        private int checkpointInterval;
 
         public Factory(IOStreams factory, IntFunction<RandomGenerator> random, PrintLogs logs, Charset charset) {
             this.fs = Objects.requireNonNull(factory, "Null io-factory.");
@@ -1131,16 +1531,144 @@ public class FastText {
             this.charset = Objects.requireNonNull(charset, "Null charset.");
         }
 
+        private Factory(Factory other) {
+            this.fs = other.fs;
+            this.random = other.random;
+            this.logs = other.logs;
+            this.charset = other.charset;
+            this.memoryMapped = other.memoryMapped;
+            this.offHeap = other.offHeap;
+            this.corpusCache = other.corpusCache;
+            this.prefetch = other.prefetch;
+            this.outputLocks = other.outputLocks;
+            this.checkpoint = other.checkpoint;
+            this.checkpointInterval = other.checkpointInterval;
+        }
+
         public Factory setFileSystem(IOStreams fs) {
-            return new Factory(fs, this.random, this.logs, this.charset);
+            Factory res = new Factory(this);
+            res.fs = Objects.requireNonNull(fs, "Null io-factory.");
+            return res;
         }
 
         public Factory setLogs(PrintLogs logs) {
-            return new Factory(this.fs, this.random, logs, this.charset);
+            Factory res = new Factory(this);
+            res.logs = Objects.requireNonNull(logs, "Null logs.");
+            return res;
         }
 
         public Factory setRandom(IntFunction<RandomGenerator> random) {
-            return new Factory(this.fs, random, this.logs, this.charset);
+            Factory res = new Factory(this);
+            res.random = Objects.requireNonNull(random, "Null random-factory.");
+            return res;
+        }
+
+        /**
+         * Turns on or off the memory-mapped loading.
+         * If it is on, the {@link #load(String)} method maps the input and output matrices of a model file
+         * directly into memory instead of reading them into the heap.
+         * Such a model starts almost instantly, but it is read-only: it can not be used for training.
+         * Works only with local files (see {@link LocalIOStreams}), for other file systems the option is ignored.
+         *
+         * @param memoryMapped boolean
+         * @return new {@link Factory} instance
+         */
+        public Factory setMemoryMapped(boolean memoryMapped) {
+            Factory res = new Factory(this);
+            res.memoryMapped = memoryMapped;
+            return res;
+        }
+
+        /**
+         * Turns on or off the off-heap storage for matrices.
+         * If it is on, the input matrix of a new model (see {@link #createInput(Args, Dictionary)})
+         * and both matrices of a loaded model are placed into direct memory instead of the java heap.
+         * This takes a lot of pressure off the garbage collector in case of big models.
+         * Note: the JVM option {@code -XX:MaxDirectMemorySize} should be set large enough.
+         *
+         * @param offHeap boolean
+         * @return new {@link Factory} instance
+         * @see DirectMatrix
+         */
+        public Factory setOffHeap(boolean offHeap) {
+            Factory res = new Factory(this);
+            res.offHeap = offHeap;
+            return res;
+        }
+
+        /**
+         * Turns on or off the pre-tokenized corpus cache for training.
+         * If it is on, the training file is tokenized once into a temporary binary file of word and label ids (see {@link CorpusCache}),
+         * and the training threads read the ids from it instead of tokenizing the text again on each epoch.
+         * The result of single-thread training is the same as without cache.
+         * Note: the cache file is placed into the default temporary directory, it needs some free disk space.
+         *
+         * @param corpusCache boolean
+         * @return new {@link Factory} instance
+         */
+        public Factory setCorpusCache(boolean corpusCache) {
+            Factory res = new Factory(this);
+            res.corpusCache = corpusCache;
+            return res;
+        }
+
+        /**
+         * Sets the size of the read-ahead ring for training, {@code 0} turns the prefetching off.
+         * If it is positive, each training thread gets a dedicated reader thread, which reads and tokenizes the lines ahead
+         * into a bounded ring of the given number of batches (see {@link PrefetchingCorpusReader}),
+         * so the training does not stop for I/O. Works both for the text and the {@link #setCorpusCache(boolean) cache}.
+         * The queue depth and the stall times of each thread are logged at the end of training.
+         * The result of single-thread training is the same as without prefetching.
+         *
+         * @param prefetch int, the number of batches of {@link PrefetchingCorpusReader#BATCH_LINES} lines, non-negative
+         * @return new {@link Factory} instance
+         */
+        public Factory setPrefetch(int prefetch) {
+            Validate.isTrue(prefetch >= 0, "Negative prefetch");
+            Factory res = new Factory(this);
+            res.prefetch = prefetch;
+            return res;
+        }
+
+        /**
+         * Sets the number of lock stripes for the output matrix in the {@link LossName#SOFTMAX softmax} training,
+         * {@code 0} means the lock-free (Hogwild) updates as in the original.
+         * Each softmax example updates all rows of the output matrix, so with many threads the racy updates
+         * overwrite each other and the cache lines of the matrix are bouncing between cores.
+         * If the number is positive, the row update is guarded by one of the given number of locks
+         * (see {@link Model#setOutputLocks(com.google.common.util.concurrent.Striped)}).
+         * The option is ignored for other losses and single-thread training.
+         *
+         * @param stripes int, non-negative, rounded up to a power of two
+         * @return new {@link Factory} instance
+         */
+        public Factory setOutputLocks(int stripes) {
+            Validate.isTrue(stripes >= 0, "Negative number of output locks");
+            Factory res = new Factory(this);
+            res.outputLocks = stripes;
+            return res;
+        }
+
+        /**
+         * Sets the periodic checkpoints of training, the {@code null} file turns them off.
+         * If it is set, a background thread writes the current model with the state of training into the given file
+         * every given number of seconds (see {@link Checkpoint}), and the training can be continued from that file
+         * by the {@link #resume(String, String)} method after a crash.
+         * The training threads are not stopped for that: the matrices are written as they are,
+         * while being updated, the same way the Hogwild threads see each other's rows.
+         * So a checkpoint is not a precise snapshot, some rows may be a bit newer than the saved progress,
+         * which is harmless for the resumed training.
+         *
+         * @param file    String, the checkpoint file uri, or null
+         * @param seconds int, the interval between checkpoints, positive if the file is specified
+         * @return new {@link Factory} instance
+         */
+        public Factory setCheckpoint(String file, int seconds) {
+            Validate.isTrue(file == null || seconds > 0, "Not positive checkpoint interval");
+            Factory res = new Factory(this);
+            res.checkpoint = file;
+            res.checkpointInterval = file == null ? 0 : seconds;
+            return res;
         }
 
         public IOStreams getFileSystem() {
@@ -1159,6 +1687,14 @@ public class FastText {
             return charset;
         }
 
+        public boolean isMemoryMapped() {
+            return memoryMapped;
+        }
+
+        public boolean isOffHeap() {
+            return offHeap;
+        }
+
         /**
          * Loads model by file-reference (URI) using {@link IOStreams file-system}.
          * <p>
@@ -1183,9 +1719,16 @@ public class FastText {
             if (!fs.canRead(Objects.requireNonNull(uri, "Null file ref specified."))) {
                 throw new IllegalArgumentException("Model file cannot be opened for loading: <" + uri + ">");
             }
-            try (InputStream in = fs.openInput(uri)) {
+            try (InputStream in = memoryMapped ? fs.openScrollable(uri) : fs.openInput(uri)) {
                 logs.debug("Load model %s ... ", uri);
-                FastText res = load(in);
+                FastText res;
+                if (in instanceof LocalInputStream) {
+                    res = loadMapped(in, ((LocalInputStream) in).getChannel());
+                } else if (in instanceof MappedInputStream) {
+                    res = loadMapped(in, ((MappedInputStream) in).getChannel());
+                } else {
+                    res = load(in);
+                }
                 logs.debugln("done.");
                 return res;
             } catch (Exception e) {
@@ -1258,7 +1801,33 @@ public class FastText {
          * @throws IllegalArgumentException if file is wrong
          */
         public FastText load(InputStream in) throws IOException, IllegalArgumentException {
-            FTInputStream inputStream = new FTInputStream(new BufferedInputStream(in));
+            return load(new FTInputStream(new BufferedInputStream(in)), stream -> Matrix.load(stream, offHeap));
+        }
+
+        /**
+         * Loads model from a local file, the matrices are mapped into memory.
+         * The position of each matrix in the file is tracked by counting the bytes read,
+         * and then the matrix data is skipped (which is a cheap seek for the local file).
+         *
+         * @param in      {@link InputStream} of the local file, {@link LocalInputStream} or {@link MappedInputStream}
+         * @param channel {@link FileChannel} of the same file
+         * @return new {@link FastText model} instance
+         * @throws IOException              if something is wrong while read file
+         * @throws IllegalArgumentException if file is wrong
+         * @see MappedMatrix
+         */
+        private FastText loadMapped(InputStream in, FileChannel channel) throws IOException, IllegalArgumentException {
+            CountingInputStream counter = new CountingInputStream(new BufferedInputStream(in, BUFF_SIZE));
+            return load(new FTInputStream(counter), stream -> {
+                int m = (int) stream.readLong();
+                int n = (int) stream.readLong();
+                MappedMatrix res = MappedMatrix.map(channel, counter.getCount(), m, n);
+                ByteStreams.skipFully(stream, res.size() * Float.BYTES);
+                return res;
+            });
+        }
+
+        private FastText load(FTInputStream inputStream, MatrixReader matrixReader) throws IOException, IllegalArgumentException {
             int magic = inputStream.readInt();
             if (FASTTEXT_FILEFORMAT_MAGIC_INT32 != magic) {
                 throw new IllegalArgumentException("Model file has wrong format!");
@@ -1281,7 +1850,7 @@ public class FastText {
                 input = Matrix.empty();
             } else {
                 qinput = QMatrix.empty();
-                input = Matrix.load(inputStream);
+                input = matrixReader.read(inputStream);
             }
             if (!quant && dict.isPruned()) {
                 throw new IllegalArgumentException("Invalid model file.\nPlease download the updated model from " +
@@ -1295,7 +1864,7 @@ public class FastText {
                 output = Matrix.empty();
             } else {
                 qoutput = QMatrix.empty();
-                output = Matrix.load(inputStream);
+                output = matrixReader.read(inputStream);
             }
             Model model = createModel(args, dict, input, output, 0).setQuantizePointer(qinput, qoutput);
             return createFastText(args, dict, model, version);
@@ -1386,7 +1955,7 @@ public class FastText {
                 }
             }
             dictionary.threshold(1, 0);
-            Matrix res = new Matrix(dictionary.nwords() + args.bucket(), args.dim());
+            Matrix res = Matrix.create(dictionary.nwords() + args.bucket(), args.dim(), offHeap);
             res.uniform(random.apply(1), 1.0f / args.dim());
             for (int i = 0; i < n; i++) {
                 int idx = dictionary.getId(words.get(i));
@@ -1401,6 +1970,7 @@ public class FastText {
 
         /**
          * Reads dictionary from file.
+         * Large files are read by {@link Args#thread()} threads, see {@link Dictionary#read(IOStreams, String, Args, Charset, PrintLogs, int)}.
          *
          * @param args {@link Args} settings to construct new dictionary
          * @param file String, file path, not null
@@ -1408,13 +1978,11 @@ public class FastText {
          * @throws IOException if an I/O error occurs
          */
         protected Dictionary readDictionary(Args args, String file) throws IOException {
-            try (InputStream in = fs.openInput(file)) {
-                return Dictionary.read(in, args, charset, logs);
-            }
+            return Dictionary.read(fs, file, args, charset, logs, args.thread());
         }
 
         protected Matrix createInput(Args args, Dictionary dictionary) {
-            Matrix res = new Matrix(dictionary.nwords() + args.bucket(), args.dim());
+            Matrix res = Matrix.create(dictionary.nwords() + args.bucket(), args.dim(), offHeap);
             res.uniform(random.apply(1), 1.0f / args.dim());
             return res;
         }
@@ -1474,6 +2042,53 @@ public class FastText {
             }
         }
 
+        /**
+         * Continues the training from a checkpoint, see {@link #setCheckpoint(String, int)}.
+         * The settings, the dictionary and the matrices are taken from the checkpoint file,
+         * the same number of threads go on from the saved positions in the corpus with the saved progress,
+         * so the learning rate keeps decreasing from where it stopped.
+         * The positions are used if the {@link #setCorpusCache(boolean) corpus cache} is set the same way as before,
+         * otherwise the threads start from the usual split of the corpus.
+         * The result is not identical to an uninterrupted training, since the random generators start anew.
+         * If this factory has the checkpoints set, they continue to be written.
+         *
+         * @param checkpoint String, the checkpoint file uri, not null
+         * @param file       String, the same data file as the checkpoint has been trained on, not null
+         * @return {@link FastText}
+         * @throws IOException              if something is wrong with input files
+         * @throws ExecutionException       if something is wrong while training
+         * @throws IllegalArgumentException if the checkpoint is wrong or does not match the data file
+         */
+        public FastText resume(String checkpoint, String file) throws IOException, ExecutionException, IllegalArgumentException {
+            if (!fs.canRead(Objects.requireNonNull(checkpoint, "Null checkpoint file specified"))) {
+                throw new IllegalArgumentException("Checkpoint cannot be opened: " + checkpoint);
+            }
+            Events.TRAIN.start();
+            try {
+                FastText base;
+                Checkpoint state;
+                try (FTInputStream in = new FTInputStream(new BufferedInputStream(fs.openInput(checkpoint)))) {
+                    base = load(in, stream -> Matrix.load(stream, offHeap));
+                    state = Checkpoint.load(in);
+                }
+                if (base.model.isQuant()) {
+                    throw new IllegalArgumentException("Quantized model can not be trained: " + checkpoint);
+                }
+                Args args = new Args.Builder().copy(base.args).setLR(state.lr()).setThread(state.threads()).build();
+                Trainer trainer = newTrainer(args, file, base.dict, base.model.input(), base.model.output());
+                if (trainer.size != state.size()) {
+                    throw new IllegalArgumentException(String.format("The checkpoint %s is trained on another file: size %d instead of %d",
+                            checkpoint, state.size(), trainer.size));
+                }
+                logs.infoln("Resume training from %s: %.1f%% done", checkpoint,
+                        100f * state.tokenCount() / (args.epoch() * base.dict.ntokens()));
+                Model model = trainer.resumeFrom(state).train();
+                return createFastText(args, trainer.dictionary, model, FASTTEXT_VERSION);
+            } finally {
+                Events.TRAIN.end();
+            }
+        }
+
         /**
          * Creates model.
          *
@@ -1494,6 +2109,25 @@ public class FastText {
             return res;
         }
 
+        /**
+         * Creates a model which shares the output tables with another model of the same training run.
+         *
+         * @param args    {@link Args}
+         * @param dict    {@link Dictionary}
+         * @param input   {@link Matrix}
+         * @param output  {@link Matrix}
+         * @param seed    seed
+         * @param targets {@link Model.Targets} to share, or null to build new tables
+         * @return {@link Model}
+         * @see #createModel(Args, Dictionary, Matrix, Matrix, int)
+         */
+        Model createModel(Args args, Dictionary dict, Matrix input, Matrix output, int seed, Model.Targets targets) {
+            if (targets == null) {
+                return createModel(args, dict, input, output, seed);
+            }
+            return new Model(input, output, args, random.apply(seed)).shareTargets(targets);
+        }
+
         /**
          * Creates a new FastText
          *
@@ -1507,8 +2141,33 @@ public class FastText {
             return new FastText(args, dictionary, model, version, this.fs, this.logs, this.random);
         }
 
+        /**
+         * A function to read {@link Matrix} from the model file stream.
+         */
+        @FunctionalInterface
+        private interface MatrixReader {
+            Matrix read(FTInputStream in) throws IOException;
+        }
+
         /**
          * Auxiliary class to perform model training.
+         * <p>
+         * The training is Hogwild, as in the original: all threads update the shared input and output matrices
+         * with plain reads and writes, without any locks or memory barriers, and some updates are lost in races.
+         * This is by design: the updates are sparse and small, so the lost ones do not hurt the convergence.
+         * The only point of synchronization is the end of training: the threads are joined through their futures,
+         * which guarantees that the resulting model sees all the written values.
+         * The rest of the thread state is confined: each thread creates its own {@link Model} with its own buffers.
+         * <p>
+         * The progress is counted with a {@link LongAdder}, which has a separate padded cell per contending thread.
+         * A thread adds its tokens and reads the total once per {@link Args#lrUpdateRate()} tokens,
+         * and uses that total for the learning rate in between, so the shared counter is not touched per line.
+         * The only optional synchronization is the {@link Factory#setOutputLocks(int) striped locks}
+         * for the output rows under the softmax loss.
+         * <p>
+         * The {@link Factory#setCheckpoint(String, int) checkpoints} are written by a separate scheduled thread,
+         * which reads the matrices without stopping the training, as any other Hogwild thread does.
+         * Each training thread publishes its position in the corpus when it flushes the token count.
          */
         protected class Trainer {
             private final String file;
@@ -1521,10 +2180,17 @@ public class FastText {
             private final Matrix output;
 
             private Instant start;          // original: clock_t start;
-            private AtomicLong tokenCount;  // original: std::atomic<int64_t> tokenCount;
+            private LongAdder tokenCount;   // original: std::atomic<int64_t> tokenCount;
+            private CorpusCache cache;
+            private Model.Targets targets;  // the output tables shared by all threads
+            private Striped<Lock> rowLocks;
+            private Checkpoint resumed;             // the state to continue from, or null
+            private AtomicLongArray positions;      // the corpus position of each thread, for checkpoints
 
             protected Trainer(Args args, String file, long size, Dictionary dictionary, Matrix input, Matrix output) {
                 this.args = Objects.requireNonNull(args, "Null args");
+                Validate.isTrue(LossName.OVA != args.loss() || ModelName.SUP == args.model(),
+                        "The one-vs-all loss is supported for supervised models only");
                 this.file = Objects.requireNonNull(file, "Null file");
                 this.size = size;
                 this.dictionary = Objects.requireNonNull(dictionary, "Null dictionary");
@@ -1532,10 +2198,73 @@ public class FastText {
                 this.output = Objects.requireNonNull(output, "Null output matrix");
             }
 
+            /**
+             * Sets the state to continue the training from.
+             *
+             * @param state {@link Checkpoint}, not null
+             * @return this trainer
+             */
+            Trainer resumeFrom(Checkpoint state) {
+                Validate.isTrue(state.threads() == args.thread(), "Wrong number of threads");
+                this.resumed = state;
+                return this;
+            }
+
             protected Dictionary.SeekableReader createReader() throws IOException {
                 return dictionary.createReader(fs.openScrollable(file));
             }
 
+            /**
+             * Creates the reader of training lines for the specified thread.
+             * Each thread starts from its own part of the corpus: the text is split by bytes (as in the original),
+             * the cache is split by lines.
+             *
+             * @param threadId int, the id of thread
+             * @return {@link CorpusReader}
+             * @throws IOException if an I/O error occurs
+             */
+            protected CorpusReader createCorpusReader(int threadId) throws IOException {
+                CorpusReader res = createSourceReader(threadId);
+                if (prefetch == 0) {
+                    return res;
+                }
+                return new PrefetchingCorpusReader(res, dictionary, ModelName.SUP == args.model(), prefetch, "FT-Prefetch-" + threadId);
+            }
+
+            private CorpusReader createSourceReader(int threadId) throws IOException {
+                long position = resumed == null ? -1 : resumed.position(threadId, cache != null);
+                if (cache != null) {
+                    return position < 0 || position > cache.lines() ? cache.reader(threadId, args.thread()) : cache.reader(position);
+                }
+                Dictionary.SeekableReader res = createReader();
+                try {
+                    long skip = position < 0 || position > size ? threadId * size / args.thread() : position;
+                    Events.FILE_SEEK.start();
+                    res.seek(skip);
+                    Events.FILE_SEEK.end();
+                } catch (IOException | RuntimeException e) {
+                    res.close();
+                    throw e;
+                }
+                return CorpusReader.text(dictionary, res);
+            }
+
+            /**
+             * Tokenizes the training file into the {@link CorpusCache}.
+             *
+             * @return {@link CorpusCache}
+             * @throws IOException if an I/O error occurs
+             */
+            protected CorpusCache compileCache() throws IOException {
+                Instant time = Instant.now();
+                try (Dictionary.SeekableReader in = createReader()) {
+                    CorpusCache res = CorpusCache.compile(dictionary, ModelName.SUP == args.model(), in);
+                    logs.infoln("Corpus cache: %d lines, %d bytes, %d ms", res.lines(), res.size(),
+                            ChronoUnit.MILLIS.between(time, Instant.now()));
+                    return res;
+                }
+            }
+
             /**
              * <pre>{@code void FastText::train(std::shared_ptr<Args> args) {
              *  args_ = args;
@@ -1578,10 +2307,20 @@ public class FastText {
              * @throws IllegalArgumentException in case wrong file refs.
              */
             public Model train() throws IOException, ExecutionException, IllegalArgumentException {
-                perform();
+                if (corpusCache) {
+                    cache = compileCache();
+                }
+                try {
+                    perform();
+                } finally {
+                    if (cache != null) {
+                        cache.close();
+                        cache = null;
+                    }
+                }
                 Events.CREATE_RES_MODEL.start();
                 try {
-                    return Factory.this.createModel(args, dictionary, input, output, 0);
+                    return Factory.this.createModel(args, dictionary, input, output, 0, targets);
                 } finally {
                     Events.CREATE_RES_MODEL.end();
                 }
@@ -1612,11 +2351,30 @@ public class FastText {
              */
             protected void perform() throws ExecutionException, IOException {
                 this.start = Instant.now();
-                this.tokenCount = new AtomicLong(0);
+                this.tokenCount = new LongAdder();
+                if (resumed != null) {
+                    tokenCount.add(resumed.tokenCount());
+                }
+                // the first model builds the tables of negatives or the tree once, the other threads share them:
+                Model first = Factory.this.createModel(args, dictionary, input, output, 0);
+                this.targets = first.targets();
+                ScheduledExecutorService checkpoints = startCheckpoints();
+                try {
+                    startThreads(first);
+                } finally {
+                    stopCheckpoints(checkpoints);
+                }
+            }
+
+            private void startThreads(Model first) throws ExecutionException, IOException {
                 if (args.thread() <= 1) {
-                    trainThread(0);
+                    trainThread(0, first);
                     return;
                 }
+                if (outputLocks > 0 && LossName.SOFTMAX == args.loss()) {
+                    this.rowLocks = Striped.lock(outputLocks);
+                    first.setOutputLocks(rowLocks);
+                }
                 ExecutorService service = Executors.newFixedThreadPool(args.thread(), r -> {
                     Thread t = Executors.defaultThreadFactory().newThread(r);
                     t.setDaemon(true);
@@ -1626,7 +2384,8 @@ public class FastText {
                 IntStream.range(0, args.thread()).forEach(id ->
                         completionService.submit(() -> {
                             Thread.currentThread().setName("FT-TrainThread-" + id);
-                            trainThread(id);
+                            trainThread(id, id == 0 ? first :
+                                    Factory.this.createModel(args, dictionary, input, output, id, targets).setOutputLocks(rowLocks));
                             return null;
                         }));
                 service.shutdown();
@@ -1642,6 +2401,72 @@ public class FastText {
                 }
             }
 
+            /**
+             * Starts writing the checkpoints periodically, if they are {@link Factory#setCheckpoint(String, int) set}.
+             *
+             * @return {@link ScheduledExecutorService} or null
+             */
+            private ScheduledExecutorService startCheckpoints() {
+                if (checkpoint == null) {
+                    return null;
+                }
+                this.positions = new AtomicLongArray(args.thread());
+                for (int i = 0; i < args.thread(); i++) {
+                    positions.set(i, -1);
+                }
+                ScheduledExecutorService res = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "FT-Checkpoint");
+                    t.setDaemon(true);
+                    return t;
+                });
+                res.scheduleWithFixedDelay(this::writeCheckpoint, checkpointInterval, checkpointInterval, TimeUnit.SECONDS);
+                return res;
+            }
+
+            /**
+             * Cancels the next checkpoints and waits for the current one to be written, if any.
+             *
+             * @param service {@link ScheduledExecutorService} or null
+             */
+            private void stopCheckpoints(ScheduledExecutorService service) {
+                if (service == null) {
+                    return;
+                }
+                service.shutdown();
+                try {
+                    service.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            /**
+             * Writes the current model and the state of training into the {@link Factory#setCheckpoint(String, int) checkpoint} file.
+             * The state is taken before the matrices are written, so the resumed training may repeat a bit of work but not skip it.
+             * A failure is logged and does not stop the training, the next checkpoint may succeed.
+             * Package-private so that a checkpoint can be written without waiting for the scheduler.
+             */
+            void writeCheckpoint() {
+                try {
+                    long[] current = new long[positions.length()];
+                    for (int i = 0; i < current.length; i++) {
+                        if ((current[i] = positions.get(i)) < 0) {
+                            // not all threads have started yet
+                            return;
+                        }
+                    }
+                    Instant time = Instant.now();
+                    long tokens = tokenCount.sum();
+                    Checkpoint state = new Checkpoint(size, args.lr(), tokens, cache != null, current);
+                    Model model = Factory.this.createModel(args, dictionary, input, output, 0, targets);
+                    createFastText(args, dictionary, model, FASTTEXT_VERSION).saveCheckpoint(checkpoint, state);
+                    logs.infoln("Checkpoint %s: %.1f%% done, %d ms", checkpoint,
+                            100f * tokens / (args.epoch() * dictionary.ntokens()), ChronoUnit.MILLIS.between(time, Instant.now()));
+                } catch (IOException | RuntimeException e) {
+                    logs.infoln("Checkpoint %s failed: %s", checkpoint, e);
+                }
+            }
+
             /**
              * <pre>{@code void FastText::trainThread(int32_t threadId) {
              *  std::ifstream ifs(args_->input);
@@ -1684,53 +2509,62 @@ public class FastText {
              * }}</pre>
              *
              * @param threadId the id of thread, used as random seed inside model
+             * @param model    {@link Model} of the thread
              * @throws IOException if an I/O error occurs
              */
-            protected void trainThread(int threadId) throws IOException {
-                Model model;
-                try (Dictionary.SeekableReader in = createReader()) {
-                    long skip = threadId * size / args.thread();
-                    Events.FILE_SEEK.start();
-                    in.seek(skip);
-                    Events.FILE_SEEK.end();
-                    model = Factory.this.createModel(args, dictionary, input, output, threadId);
+            protected void trainThread(int threadId, Model model) throws IOException {
+                try (CorpusReader in = createCorpusReader(threadId)) {
                     long epochTokens = args.epoch() * dictionary.ntokens();
                     long localTokenCount = 0;
-                    List<Integer> line = new ArrayList<>();
-                    List<Integer> labels = new ArrayList<>();
-                    while (tokenCount.longValue() < epochTokens) {
-                        float progress = tokenCount.floatValue() / epochTokens;
+                    // per-thread reusable buffers:
+                    IntList line = new IntList(Dictionary.MAX_LINE_SIZE);
+                    IntList labels = new IntList();
+                    IntList bow = new IntList();
+                    // the total seen by this thread, it is refreshed when the local count is flushed:
+                    long globalTokenCount = tokenCount.sum();
+                    if (positions != null) {
+                        positions.set(threadId, in.position());
+                    }
+                    while (globalTokenCount < epochTokens) {
+                        float progress = (float) globalTokenCount / epochTokens;
                         float lr = (float) (args.lr() * (1 - progress));
                         if (ModelName.SUP == args.model()) {
                             Events.DIC_GET_LINE.start();
-                            localTokenCount += dictionary.getLine(in, line, labels);
+                            localTokenCount += in.getLine(line, labels);
                             Events.DIC_GET_LINE.end();
                             Events.TRAIN_CALC.start();
                             supervised(model, lr, line, labels);
                             Events.TRAIN_CALC.end();
                         } else if (ModelName.CBOW == args.model()) {
                             Events.DIC_GET_LINE.start();
-                            localTokenCount += dictionary.getLine(in, line, model.random());
+                            localTokenCount += in.getLine(line, model.random());
                             Events.DIC_GET_LINE.end();
                             Events.TRAIN_CALC.start();
-                            cbow(model, lr, line);
+                            cbow(model, lr, line, bow);
                             Events.TRAIN_CALC.end();
                         } else if (ModelName.SG == args.model()) {
                             Events.DIC_GET_LINE.start();
-                            localTokenCount += dictionary.getLine(in, line, model.random());
+                            localTokenCount += in.getLine(line, model.random());
                             Events.DIC_GET_LINE.end();
                             Events.TRAIN_CALC.start();
                             skipgram(model, lr, line);
                             Events.TRAIN_CALC.end();
                         }
                         if (localTokenCount > args.lrUpdateRate()) {
-                            tokenCount.addAndGet(localTokenCount);
+                            tokenCount.add(localTokenCount);
                             localTokenCount = 0;
+                            globalTokenCount = tokenCount.sum();
+                            if (positions != null) {
+                                positions.set(threadId, in.position());
+                            }
                             if (threadId == 0 && logs.isDebugEnabled()) {
                                 logs.debug(progressMessage(progress, model.getLoss()));
                             }
                         }
                     }
+                    if (in instanceof PrefetchingCorpusReader && logs.isInfoEnabled()) {
+                        logs.infoln("Prefetch (thread %d): %s", threadId, ((PrefetchingCorpusReader) in).stats());
+                    }
                 }
                 if (logs.isInfoEnabled() && threadId == 0) {
                     logs.infoln(progressMessage(1, model.getLoss()));
@@ -1761,7 +2595,7 @@ public class FastText {
              */
             protected String progressMessage(float progress, float loss) {
                 float t = ChronoUnit.NANOS.between(start, Instant.now()) / 1_000_000_000f;
-                float wst = tokenCount.get() / t;
+                float wst = tokenCount.sum() / t;
                 float lr = (float) (args.lr() * (1 - progress));
                 int eta = (int) (t / progress * (1 - progress) / args.thread());
                 int etaH = eta / 3600;
@@ -1779,16 +2613,24 @@ public class FastText {
              *  int32_t i = uniform(model.rng);
              *  model.update(line, labels[i], lr);
              * }}</pre>
+             * The {@link LossName#OVA one-vs-all} loss takes all the labels of the line at once instead of a random one.
              *
              * @param model  {@link Model}
              * @param lr     float
-             * @param line   List of ints
-             * @param labels List of ints
+             * @param line   {@link IntList} of ints
+             * @param labels {@link IntList} of ints
              */
-            protected void supervised(Model model, float lr, List<Integer> line, List<Integer> labels) {
+            protected void supervised(Model model, float lr, IntList line, IntList labels) {
                 if (labels.isEmpty() || line.isEmpty())
                     return;
-                int i = new UniformIntegerDistribution(model.random(), 0, labels.size() - 1).sample();
+                if (LossName.OVA == args.loss()) {
+                    Events.MODEL_UPDATE.start();
+                    model.update(line, labels, lr);
+                    Events.MODEL_UPDATE.end();
+                    return;
+                }
+                // the same as uniform_int_distribution(0, labels.size() - 1), but without allocation:
+                int i = model.random().nextInt(labels.size());
                 Events.MODEL_UPDATE.start();
                 model.update(line, labels.get(i), lr);
                 Events.MODEL_UPDATE.end();
@@ -1814,18 +2656,19 @@ public class FastText {
              *
              * @param model {@link Model}
              * @param lr    float
-             * @param line  List of ints
+             * @param line  {@link IntList} of ints
+             * @param bow   {@link IntList}, reusable buffer for the bag of words
              */
-            protected void cbow(Model model, float lr, List<Integer> line) {
-                UniformIntegerDistribution uniform = new UniformIntegerDistribution(model.random(), 1, args.ws());
+            protected void cbow(Model model, float lr, IntList line, IntList bow) {
+                RandomGenerator rng = model.random();
                 for (int w = 0; w < line.size(); w++) {
-                    List<Integer> bow = new ArrayList<>();
-                    int boundary = uniform.sample();
+                    bow.clear();
+                    // the same as uniform_int_distribution(1, ws), but without allocation:
+                    int boundary = 1 + rng.nextInt(args.ws());
                     for (int c = -boundary; c <= boundary; c++) {
                         int wc;
                         if (c != 0 && (wc = w + c) >= 0 && wc < line.size()) {
-                            List<Integer> ngrams = dictionary.getSubwords(line.get(wc));
-                            bow.addAll(ngrams);
+                            bow.addAll(dictionary.getSubwordIds(line.get(wc)));
                         }
                     }
                     Events.MODEL_UPDATE.start();
@@ -1850,18 +2693,18 @@ public class FastText {
              *
              * @param model {@link Model}
              * @param lr    float
-             * @param line  List of ints
+             * @param line  {@link IntList} of ints
              */
-            protected void skipgram(Model model, float lr, List<Integer> line) {
-                UniformIntegerDistribution uniform = new UniformIntegerDistribution(model.random(), 1, args.ws());
+            protected void skipgram(Model model, float lr, IntList line) {
+                RandomGenerator rng = model.random();
                 for (int w = 0; w < line.size(); w++) {
-                    int boundary = uniform.sample();
-                    List<Integer> ngrams = dictionary.getSubwords(line.get(w));
+                    int boundary = 1 + rng.nextInt(args.ws());
+                    int[] ngrams = dictionary.getSubwordIds(line.get(w));
                     for (int c = -boundary; c <= boundary; c++) {
                         int wc;
                         if (c != 0 && (wc = w + c) >= 0 && wc < line.size()) {
                             Events.MODEL_UPDATE.start();
-                            model.update(ngrams, line.get(wc), lr);
+                            model.update(ngrams, ngrams.length, line.get(wc), lr);
                             Events.MODEL_UPDATE.end();
                         }
                     }
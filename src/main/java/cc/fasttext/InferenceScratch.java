@@ -0,0 +1,23 @@
+package cc.fasttext;
+
+/**
+ * The mutable state required to predict labels for a single line:
+ * a line reader, token id buffers, hidden and output vectors and a top-k heap.
+ * An instance is reused from line to line, so the prediction does not allocate these objects each time.
+ * It must be confined to a single thread, see {@link FastText#predictLine(String, int)},
+ * which keeps an instance per thread.
+ */
+final class InferenceScratch {
+    final Dictionary.LineReader reader;
+    final IntList words = new IntList();
+    final IntList labels = new IntList();
+    final Vector hidden;
+    final Vector output;
+    final ScoreHeap heap = new ScoreHeap(1);
+
+    InferenceScratch(Dictionary dict, Model model) {
+        this.reader = dict.createLineReader();
+        this.hidden = new Vector(model.hiddenSize());
+        this.output = new Vector(model.outputSize());
+    }
+}
@@ -0,0 +1,156 @@
+package cc.fasttext;
+
+import com.google.common.primitives.Ints;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A growable array of primitive ints, the analogue of c++ {@code std::vector<int32_t>}.
+ * It is used in the hot paths (e.g. training) instead of {@code List<Integer>} to avoid boxing:
+ * such a buffer is allocated once per thread and then reused through the {@link #clear()} method,
+ * so there are no allocations except growth.
+ * Not thread-safe.
+ */
+public final class IntList {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] data;
+    private int size;
+
+    public IntList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntList(int capacity) {
+        this.data = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Creates a new int-list with the same content as the given list.
+     *
+     * @param list List of Integers, not null
+     * @return {@link IntList}
+     */
+    public static IntList of(List<Integer> list) {
+        IntList res = new IntList(list.size());
+        list.forEach(res::add);
+        return res;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int i) {
+        if (i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size);
+        }
+        return data[i];
+    }
+
+    public void set(int i, int value) {
+        if (i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size);
+        }
+        data[i] = value;
+    }
+
+    public void add(int value) {
+        if (size == data.length) {
+            grow(size + 1);
+        }
+        data[size++] = value;
+    }
+
+    public void addAll(int[] values) {
+        addAll(values, 0, values.length);
+    }
+
+    public void addAll(int[] values, int offset, int length) {
+        if (size + length > data.length) {
+            grow(size + length);
+        }
+        System.arraycopy(values, offset, data, size, length);
+        size += length;
+    }
+
+    public void addAll(IntList other) {
+        addAll(other.data, 0, other.size);
+    }
+
+    public boolean contains(int value) {
+        for (int i = 0; i < size; i++) {
+            if (data[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all elements, the capacity is retained.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    private void grow(int min) {
+        data = Arrays.copyOf(data, Math.max(min, data.length + (data.length >> 1)));
+    }
+
+    /**
+     * Returns the internal array, only the first {@link #size()} elements are valid.
+     * Note: the array is changed when the list grows.
+     *
+     * @return int[]
+     */
+    int[] data() {
+        return data;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    /**
+     * Returns an unmodifiable snapshot of this list as a java collection.
+     *
+     * @return List of Integers
+     */
+    public List<Integer> asList() {
+        return Collections.unmodifiableList(Ints.asList(toArray()));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IntList)) return false;
+        IntList other = (IntList) o;
+        if (size != other.size) return false;
+        for (int i = 0; i < size; i++) {
+            if (data[i] != other.data[i]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int res = 1;
+        for (int i = 0; i < size; i++) {
+            res = 31 * res + data[i];
+        }
+        return Objects.hash(res, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -5,8 +5,7 @@ import cc.fasttext.io.IOStreams;
 import cc.fasttext.io.PrintLogs;
 import org.apache.commons.lang.StringUtils;
 
-import java.io.IOException;
-import java.io.PrintStream;
+import java.io.*;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
@@ -25,6 +24,12 @@ import java.util.stream.Stream;
  * <a href='https://github.com/facebookresearch/fastText/blob/master/src/main.h'>main.h</a>
  */
 public class Main {
+    // the size of buffer to print predictions
+    private static final int OUTPUT_BUFFER_SIZE = 1024 * 1024;
+
+    // the train args that can be specified along with -resume, the others are taken from the checkpoint
+    private static final Set<String> RESUME_ARGS = new HashSet<>(Arrays.asList("-input", "-output", "-saveOutput", "-verbose",
+            "-cache", "-prefetch", "-outputLocks", "-checkpoint", "-resume"));
 
     private static FastText.Factory factory = FastText.DEFAULT_FACTORY;
 
@@ -63,20 +68,27 @@ public class Main {
      *  exit(0);
      * }}</pre>
      *
-     * @param input array of args (example: "predict-prob out\dbpedia.bin out\dbpedia.test 7")
+     * Unlike the original, accepts the optional {@code -thread <n>} argument,
+     * a file (but not the stdin) is evaluated by that number of threads, see {@link FastText#test(String, int, int)}.
+     *
+     * @param args array of args (example: "test out\dbpedia.bin out\dbpedia.test 7 -thread 4")
      * @throws IOException              in case something is wrong while operating with in/out
+     * @throws ExecutionException       if any error occurs in any sub-thread
      * @throws IllegalArgumentException in case wrong input
      */
-    public static void test(String[] input) throws IOException, IllegalArgumentException {
+    public static void test(String[] args) throws IOException, ExecutionException, IllegalArgumentException {
+        List<String> list = new ArrayList<>(Arrays.asList(args));
+        int thread = removeThreadArg(list, Usage.TEST);
+        String[] input = list.toArray(new String[0]);
         int k = 1;
         if (input.length == 4) {
             k = Integer.parseInt(input[3]);
         } else if (input.length != 3) {
-            throw Usage.TEST.toException();
+            throw input.length == 5 ? Usage.TEST.toException("The number of threads is given by -thread <n>") : Usage.TEST.toException();
         }
         FastText fasttext = loadModel(input[1]);
         String infile = input[2];
-        FastText.TestInfo res = "-".equals(infile) ? fasttext.test(System.in, k) : fasttext.test(infile, k);
+        FastText.TestInfo res = "-".equals(infile) ? fasttext.test(System.in, k) : fasttext.test(infile, k, thread);
         System.out.println(res.toString());
     }
 
@@ -108,13 +120,25 @@ public class Main {
      *  exit(0);
      * }}</pre>
      *
-     * @param input array of args (example: "predict-prob out\dbpedia.bin - 7")
+     * Also accepts the optional probability threshold after {@code k}, as the later versions of the original.
+     * Unlike the original, accepts the optional {@code -thread <n>} argument:
+     * the lines are predicted by that number of threads, but printed in the input order,
+     * see {@link FastText#predict(InputStream, int, int)}.
+     *
+     * @param args array of args (example: "predict-prob out\dbpedia.bin - 7 -thread 4")
      * @throws IOException              in case something is wrong with in/out
      * @throws IllegalArgumentException wrong inputs
      */
-    public static void predict(String[] input) throws IOException, IllegalArgumentException {
+    public static void predict(String[] args) throws IOException, IllegalArgumentException {
+        List<String> list = new ArrayList<>(Arrays.asList(args));
+        int thread = removeThreadArg(list, Usage.PREDICT);
+        String[] input = list.toArray(new String[0]);
         int k = 1;
-        if (input.length == 4) {
+        float threshold = 0;
+        if (input.length == 5) {
+            threshold = Float.parseFloat(input[4]);
+        }
+        if (input.length == 4 || input.length == 5) {
             k = Integer.parseInt(input[3]);
         } else if (input.length != 3) {
             throw Usage.PREDICT.toException();
@@ -122,19 +146,56 @@ public class Main {
         boolean printProb = "predict-prob".equalsIgnoreCase(input[0]);
         FastText fasttext = loadModel(input[1]);
         String file = input[2];
-        try (Stream<Map<String, Float>> res = "-".equals(file) ? fasttext.predict(System.in, k) : fasttext.predict(file, k)) {
-            res.map(map -> map.entrySet().stream()
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), OUTPUT_BUFFER_SIZE);
+        try (Stream<Map<String, Float>> res = "-".equals(file) ? fasttext.predict(System.in, k, threshold, thread) : fasttext.predict(file, k, threshold, thread)) {
+            Iterator<String> lines = res.map(map -> map.entrySet().stream()
                     .map(e -> {
                         String line = e.getKey();
                         if (printProb) {
                             line += " " + FormatUtils.toString(e.getValue(), 6);
                         }
                         return line;
-                    }).collect(Collectors.joining(" ")))
-                    .forEach(System.out::println);
+                    }).collect(Collectors.joining(" "))).iterator();
+            while (lines.hasNext()) {
+                out.write(lines.next());
+                out.write(System.lineSeparator());
+            }
+        } finally {
+            out.flush();
         }
     }
 
+    /**
+     * Removes the optional {@code -thread <n>} pair from the list of arguments.
+     * This is the only form of the thread count for the {@code test} and {@code predict} commands,
+     * the same as for the training commands (see {@link #parseArgs(Args.ModelName, Map)}), it may be placed anywhere after the command.
+     *
+     * @param args  List of arguments to modify
+     * @param usage {@link Usage} to report wrong input
+     * @return int, the number of threads, 1 if not specified
+     * @throws IllegalArgumentException in case wrong input
+     */
+    private static int removeThreadArg(List<String> args, Usage usage) throws IllegalArgumentException {
+        int index = args.indexOf("-thread");
+        if (index < 0) {
+            return 1;
+        }
+        if (index == args.size() - 1) {
+            throw usage.toException("No value for -thread");
+        }
+        int res;
+        try {
+            res = Integer.parseInt(args.remove(index + 1));
+        } catch (NumberFormatException n) {
+            throw usage.toException("Wrong value for -thread: " + n.getMessage());
+        }
+        args.remove(index);
+        if (res <= 0) {
+            throw usage.toException("Wrong value for -thread: " + res);
+        }
+        return res;
+    }
+
     /**
      * <pre>{@code void printWordVectors(const std::vector<std::string> args) {
      *  if (args.size() != 3) {
@@ -334,6 +395,10 @@ public class Main {
      *      fasttext.saveOutput();
      *  }
      * }}</pre>
+     * Unlike the original, with {@code -checkpoint <seconds>} the training is periodically saved into the {@code <output>.checkpoint} file,
+     * and with {@code -resume} it is continued from that file, see {@link FastText.Factory#resume(String, String)}.
+     * The model settings (e.g. {@code -dim}, {@code -epoch}, {@code -thread}) can not be specified with {@code -resume},
+     * they are taken from the checkpoint.
      *
      * @param input input parameters, array of strings, not null
      * @throws IOException              if an I/O error occurs
@@ -370,8 +435,31 @@ public class Main {
         if (!StringUtils.isEmpty(vectors) && !fileSystem().canRead(vectors)) {
             throw Usage.TRAIN.toException("Wrong -pretrainedVectors: can't read " + vectors, Usage.ARGS);
         }
+        String checkpoint = model + ".checkpoint";
+        int interval = parseNonNegative(args, "-checkpoint");
+        boolean resume = args.containsKey("-resume");
+        if (interval > 0 && !fileSystem().canWrite(checkpoint)) {
+            throw Usage.TRAIN.toException("Wrong -output: can't write checkpoint " + checkpoint, Usage.ARGS);
+        }
+        if (resume && !fileSystem().canRead(checkpoint)) {
+            throw Usage.TRAIN.toException("Wrong -resume: can't read checkpoint " + checkpoint, Usage.ARGS);
+        }
+        if (resume) {
+            // the model settings are taken from the checkpoint, only the run options may be specified:
+            Optional<String> conflict = args.keySet().stream()
+                    .filter(key -> key.startsWith("-") && !RESUME_ARGS.contains(key)).findFirst();
+            if (conflict.isPresent()) {
+                throw Usage.TRAIN.toException("Wrong " + conflict.get() + ": can't be used with -resume, " +
+                        "the settings are taken from the checkpoint " + checkpoint, Usage.ARGS);
+            }
+        }
         PrintLogs.Level verbose = parseVerbose(args, Usage.TRAIN);
-        FastText fasttext = factory.setLogs(createStdErrLogger(verbose)).train(parseArgs(type, args), data, vectors);
+        FastText.Factory trainer = factory.setLogs(createStdErrLogger(verbose))
+                .setCorpusCache(args.containsKey("-cache"))
+                .setPrefetch(parseNonNegative(args, "-prefetch"))
+                .setOutputLocks(parseNonNegative(args, "-outputLocks"))
+                .setCheckpoint(interval > 0 ? checkpoint : null, interval);
+        FastText fasttext = resume ? trainer.resume(checkpoint, data) : trainer.train(parseArgs(type, args), data, vectors);
         fasttext.saveModel(bin);
         fasttext.saveVectors(vec);
         if (out == null) return;
@@ -506,6 +594,19 @@ public class Main {
         }
     }
 
+    private static int parseNonNegative(Map<String, String> args, String key) {
+        if (!args.containsKey(key)) return 0;
+        try {
+            int res = Integer.parseInt(args.get(key));
+            if (res < 0) {
+                throw Usage.TRAIN.toException("Negative " + key, Usage.ARGS);
+            }
+            return res;
+        } catch (NumberFormatException e) {
+            throw Usage.TRAIN.toException("Wrong " + key + ": " + e.getMessage(), Usage.ARGS);
+        }
+    }
+
     /**
      * from args.cc:
      * <pre>{@code void Args::parseArgs(const std::vector<std::string>& args) {
@@ -724,14 +825,17 @@ public class Main {
                 + "  analogies               query for analogies\n"),
         TRAIN("usage: {fasttext} {supervised|skipgram|cbow} <args>"),
         QUANTIZE("usage: {fasttext} quantize <args>"),
-        TEST("usage: {fasttext} test <model> <test-data> [<k>]\n\n"
+        TEST("usage: {fasttext} test <model> <test-data> [<k>] [-thread <n>]\n\n"
                 + "  <model>      model filename\n"
                 + "  <test-data>  test data filename (if -, read from stdin)\n"
-                + "  <k>          (optional; 1 by default) predict top k labels\n"),
-        PREDICT("usage: {fasttext} predict[-prob] <model> <test-data> [<k>]\n\n"
+                + "  <k>          (optional; 1 by default) predict top k labels\n"
+                + "  -thread <n>  (optional; 1 by default) number of threads, ignored for stdin\n"),
+        PREDICT("usage: {fasttext} predict[-prob] <model> <test-data> [<k>] [<th>] [-thread <n>]\n\n"
                 + "  <model>      model filename\n"
                 + "  <test-data>  test data filename (if -, read from stdin)\n"
-                + "  <k>          (optional; 1 by default) predict top k labels\n"),
+                + "  <k>          (optional; 1 by default) predict top k labels\n"
+                + "  <th>         (optional; 0.0 by default) probability threshold\n"
+                + "  -thread <n>  (optional; 1 by default) number of threads, the output keeps the input order\n"),
         PRINT_WORD_VECTORS("usage: {fasttext} print-word-vectors <model>\n\n"
                 + "  <model>      model filename\n"),
         PRINT_SENTENCE_VECTORS("usage: {fasttext} print-sentence-vectors <model>\n\n"
@@ -747,7 +851,7 @@ public class Main {
                 + "  <k>          (optional; 10 by default) predict top k labels\n"),
 
         ARGS_BASIC_HELP("\nThe following arguments are mandatory:\n"
-                + "  -input              training file uri\n"
+                + "  -input              training file uri (*.gz and *.bgz files are decompressed on the fly)\n"
                 + "  -output             output file name\n"
                 + "\nThe following arguments are optional:\n"
                 + "  -verbose            verbosity level [integer]\n"),
@@ -767,10 +871,16 @@ public class Main {
                 + "  -ws                 size of the context window [integer]\n"
                 + "  -epoch              number of epochs [integer]\n"
                 + "  -neg                number of negatives sampled [integer]\n"
-                + "  -loss               loss function {ns|hs|softmax} [string]\n"
+                + "  -loss               loss function {ns|hs|softmax|ova} [string]\n"
                 + "  -thread             number of threads [integer]\n"
                 + "  -pretrainedVectors  pretrained word vectors for supervised learning [file uri]\n"
-                + "  -saveOutput         whether output params should be saved [boolean]\n"),
+                + "  -saveOutput         whether output params should be saved [boolean]\n"
+                + "  -cache              whether the input should be tokenized once into a temporary binary cache [boolean]\n"
+                + "  -prefetch           number of line batches read ahead for each thread by a dedicated reader thread, 0 to disable [integer]\n"
+                + "  -outputLocks        number of lock stripes for the output rows in multi-thread softmax training, 0 for lock-free [integer]\n"
+                + "  -checkpoint         interval in seconds to save the training into <output>.checkpoint, 0 to disable [integer]\n"
+                + "  -resume             whether the training should be continued from <output>.checkpoint with its settings,\n"
+                + "                      only -input, -output, -saveOutput, -verbose, -cache, -prefetch, -outputLocks, -checkpoint are allowed then [boolean]\n"),
         ARGS_QUANTIZATION_HELP("\nThe following arguments for quantization are optional:\n"
                 + "  -cutoff             number of words and ngrams to retain [integer]\n"
                 + "  -retrain            whether embeddings are finetuned if a cutoff is applied [boolean]\n"
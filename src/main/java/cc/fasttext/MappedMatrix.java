@@ -0,0 +1,77 @@
+package cc.fasttext;
+
+import cc.fasttext.io.FTOutputStream;
+import org.apache.commons.lang.Validate;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A read-only {@link Matrix} which is served directly from a memory-mapped region of a model file.
+ * The data is not copied into the heap: it stays in the OS page cache and can be shared between processes.
+ * Since a single mapping can not exceed 2GB, the matrix is split into several pages.
+ * All modifying operations throw {@link UnsupportedOperationException}, use {@link #copy()} to get a heap matrix.
+ */
+class MappedMatrix extends PagedMatrix {
+    // the max number of floats in one page (a mapped region can not be larger than Integer.MAX_VALUE bytes)
+    private static final int PAGE_SIZE = Integer.MAX_VALUE / Float.BYTES;
+
+    private MappedMatrix(int m, int n, FloatBuffer[] pages, int rows) {
+        super(m, n, pages, rows);
+    }
+
+    /**
+     * Maps the matrix data from the file channel.
+     * The floats are expected to be in little endian order, as they are written by {@link Matrix#save(FTOutputStream)}.
+     *
+     * @param channel  {@link FileChannel} to map, not null
+     * @param position long, the offset of the matrix data (the first float) in the file
+     * @param m        int, number of rows
+     * @param n        int, number of columns
+     * @return {@link MappedMatrix}
+     * @throws IOException if an I/O error occurs
+     */
+    static MappedMatrix map(FileChannel channel, long position, int m, int n) throws IOException {
+        Validate.isTrue(m > 0, "Wrong m-size: " + m);
+        int rows = rowsPerPage(n, PAGE_SIZE);
+        Validate.isTrue(position + (long) m * n * Float.BYTES <= channel.size(), "The file is too short");
+        FloatBuffer[] pages = new FloatBuffer[(m - 1) / rows + 1];
+        for (int p = 0; p < pages.length; p++) {
+            long bytes = (long) Math.min(rows, m - p * rows) * n * Float.BYTES;
+            pages[p] = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes)
+                    .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            position += bytes;
+        }
+        return new MappedMatrix(m, n, pages, rows);
+    }
+
+    @Override
+    void put(int i, int j, float value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void compute(int i, int j, DoubleUnaryOperator operator) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void uniform(RandomGenerator rnd, float bound) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addRow(Vector vector, int index, float factor) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void rowOp(Vector vector, int start, int end, DoubleBinaryOperator op) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -24,10 +24,13 @@ import java.util.stream.IntStream;
  */
 public class Matrix {
 
-    private static final int PARALLEL_SIZE_THRESHOLD = Integer.parseInt(System.getProperty("parallel.matrix.threshold",
-            String.valueOf(FastText.PARALLEL_THRESHOLD_FACTOR * 100)));
+    // the largest array size most JVMs can allocate
+    static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+    // the number of floats in a tile of rows used by dotRows, 64KB fits into L2 cache
+    private static final int DOT_TILE_SIZE = 16 * 1024;
 
-    private float[][] data;
+    // row-major storage: the element (i, j) is placed at index i * n + j
+    private float[] data;
 
     protected int m; // vocabSize
     protected int n; // layer1Size
@@ -38,38 +41,36 @@ public class Matrix {
     public Matrix(int m, int n) {
         Validate.isTrue(m > 0, "Wrong m-size: " + m);
         Validate.isTrue(n > 0, "Wrong n-size: " + n);
+        Validate.isTrue((long) m * n <= MAX_ARRAY_SIZE, "Too large matrix: " + m + "x" + n);
         this.m = m;
         this.n = n;
-        this.data = new float[m][n];
+        this.data = new float[m * n];
     }
 
     public Matrix copy() {
         Matrix res = new Matrix(m, n);
-        for (int i = 0; i < m; i++) {
-            System.arraycopy(data[i], 0, res.data[i], 0, n);
-        }
+        System.arraycopy(data, 0, res.data, 0, data.length);
         return res;
     }
 
+    /**
+     * Returns the backing row-major array as is, without copying.
+     *
+     * @return float[]
+     */
     float[] flatData() {
-        float[] res = new float[m * n];
-        for (int i = 0; i < m; i++) {
-            System.arraycopy(data[i], 0, res, i * n, n);
-        }
-        return res;
-    }
-
-    float[][] data() {
         return data;
     }
 
     /**
      * Returns matrix data as collection of vectors.
+     * Each vector is a copy of the corresponding row.
      *
      * @return List of {@link Vector}s
      */
     public List<Vector> getData() {
-        return Collections.unmodifiableList(Arrays.stream(data).map(Vector::new).collect(Collectors.toList()));
+        return Collections.unmodifiableList(IntStream.range(0, m)
+                .mapToObj(i -> new Vector(Arrays.copyOfRange(data, i * n, i * n + n))).collect(Collectors.toList()));
     }
 
     public boolean isEmpty() {
@@ -95,7 +96,7 @@ public class Matrix {
     }
 
     float at(int i, int j) {
-        return data[i][j];
+        return data[i * n + j];
     }
 
     public void set(int i, int j, float value) {
@@ -105,12 +106,13 @@ public class Matrix {
     }
 
     void put(int i, int j, float value) {
-        data[i][j] = value;
+        data[i * n + j] = value;
     }
 
     public void compute(int i, int j, DoubleUnaryOperator operator) {
         Objects.requireNonNull(operator, "Null operator");
-        data[i][j] = (float) operator.applyAsDouble(data[i][j]);
+        int index = i * n + j;
+        data[index] = (float) operator.applyAsDouble(data[index]);
     }
 
     void validateMIndex(int i) {
@@ -151,10 +153,8 @@ public class Matrix {
         // don't use parallel optimization:
         // the order of setting random is important to have the same prediction result as for c++ version for supervised model. wtf ?
         UniformRealDistribution uniform = new UniformRealDistribution(rnd, -bound, bound);
-        for (int i = 0; i < m; i++) {
-            for (int j = 0; j < n; j++) {
-                data[i][j] = (float) uniform.sample();
-            }
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (float) uniform.sample();
         }
     }
 
@@ -180,14 +180,11 @@ public class Matrix {
     public float dotRow(Vector vector, int i) {
         validateMIndex(i);
         validateNVector(vector);
-        float d;
-        if (FastText.USE_PARALLEL_COMPUTATION && n > PARALLEL_SIZE_THRESHOLD) {
-            d = (float) IntStream.range(0, n).parallel().mapToDouble(j -> data[i][j] * vector.get(j)).sum();
-        } else {
-            d = 0;
-            for (int j = 0; j < n; j++) {
-                d += data[i][j] * vector.get(j);
-            }
+        float[] vec = vector.data();
+        int offset = i * n;
+        float d = 0;
+        for (int j = 0; j < n; j++) {
+            d += data[offset + j] * vec[j];
         }
         if (Float.isNaN(d)) {
             throw new IllegalStateException("Encountered NaN.");
@@ -195,6 +192,66 @@ public class Matrix {
         return d;
     }
 
+    /**
+     * Computes the product of the batch and the transposed matrix: {@code out[r * m + i] = dotRow(batch[r], i)}
+     * for each row {@code r} of the batch and each row {@code i} of this matrix.
+     * The rows of this matrix are processed by tiles, each tile is multiplied by all rows of the batch
+     * while it is still in the cpu cache.
+     * Each dot product is summed in the same order as in {@link #dotRow(Vector, int)}, so the results are the same.
+     *
+     * @param batch {@link Matrix} on-heap, {@code b x n}
+     * @param out   float[] to write the result, {@code b x m} row-major
+     * @throws IllegalStateException if NaN is encountered
+     */
+    void dotRows(Matrix batch, float[] out) throws IllegalStateException {
+        Validate.isTrue(batch.n == n, "Wrong batch n-size: " + batch.n + " (!= " + n + ")");
+        Validate.isTrue(out.length >= batch.m * m, "Too small output array: " + out.length);
+        float[] vectors = batch.data;
+        int tile = Math.max(1, DOT_TILE_SIZE / n);
+        for (int start = 0; start < m; start += tile) {
+            int end = Math.min(m, start + tile);
+            for (int r = 0; r < batch.m; r++) {
+                int vectorOffset = r * n;
+                int outOffset = r * m;
+                for (int i = start; i < end; i++) {
+                    int offset = i * n;
+                    float d = 0;
+                    for (int j = 0; j < n; j++) {
+                        d += data[offset + j] * vectors[vectorOffset + j];
+                    }
+                    if (Float.isNaN(d)) {
+                        throw new IllegalStateException("Encountered NaN.");
+                    }
+                    out[outOffset + i] = d;
+                }
+            }
+        }
+    }
+
+    /**
+     * The generic implementation of {@link #dotRows(Matrix, float[])} for matrices without on-heap storage,
+     * it is based on {@link #dotRow(Vector, int)}.
+     *
+     * @param batch {@link Matrix}, {@code b x n}
+     * @param out   float[], {@code b x m} row-major
+     */
+    final void dotRowsByVectors(Matrix batch, float[] out) {
+        Validate.isTrue(batch.n == n, "Wrong batch n-size: " + batch.n + " (!= " + n + ")");
+        Validate.isTrue(out.length >= batch.m * m, "Too small output array: " + out.length);
+        List<Vector> vectors = batch.getData();
+        int tile = Math.max(1, DOT_TILE_SIZE / n);
+        for (int start = 0; start < m; start += tile) {
+            int end = Math.min(m, start + tile);
+            for (int r = 0; r < vectors.size(); r++) {
+                Vector vector = vectors.get(r);
+                int outOffset = r * m;
+                for (int i = start; i < end; i++) {
+                    out[outOffset + i] = dotRow(vector, i);
+                }
+            }
+        }
+    }
+
     /**
      * <pre>{@code void Matrix::addRow(const Vector& vec, int64_t i, real a) {
      *  assert(i >= 0);
@@ -212,12 +269,51 @@ public class Matrix {
     public void addRow(Vector vector, int index, float factor) {
         validateMIndex(index);
         validateNVector(vector);
-        if (FastText.USE_PARALLEL_COMPUTATION && n > PARALLEL_SIZE_THRESHOLD) {
-            IntStream.range(0, n).parallel().forEach(j -> data[index][j] += factor * vector.get(j));
-            return;
+        float[] vec = vector.data();
+        int offset = index * n;
+        for (int j = 0; j < n; j++) {
+            data[offset + j] += factor * vec[j];
         }
+    }
+
+    /**
+     * The fused gradient step for the i-th row:
+     * adds the row multiplied by the factor to the gradient, and then the vector multiplied by the factor to the row
+     * ({@code grad += factor * A[i]; A[i] += factor * vector}), in a single pass over the row.
+     * The result is the same as {@link #addToVector(Vector, int, float)} followed by {@link #addRow(Vector, int, float)}:
+     * the gradient takes the old value of each element.
+     *
+     * @param vector {@link Vector} to add to the row, n-dimensional
+     * @param grad   {@link Vector} to modify, n-dimensional
+     * @param i      m-dimensional index
+     * @param factor float multiplier
+     */
+    void addRowWithGradient(Vector vector, Vector grad, int i, float factor) {
+        validateMIndex(i);
+        validateNVector(vector);
+        float[] vec = vector.data();
+        float[] g = grad.data();
+        int offset = i * n;
         for (int j = 0; j < n; j++) {
-            data[index][j] += factor * vector.get(j);
+            float a = data[offset + j];
+            g[j] += factor * a;
+            data[offset + j] = a + factor * vec[j];
+        }
+    }
+
+    /**
+     * Adds the i-th row multiplied by the factor to the specified vector ({@code x += factor * A[i]}).
+     * It is the matrix part of {@link Vector#addRow(Matrix, int, float)}, which works directly with the storage.
+     *
+     * @param x      {@link Vector} to modify, n-dimensional
+     * @param i      m-dimensional index
+     * @param factor float multiplier
+     */
+    void addToVector(Vector x, int i, float factor) {
+        float[] vec = x.data();
+        int offset = i * n;
+        for (int j = 0; j < n; j++) {
+            vec[j] += factor * data[offset + j];
         }
     }
 
@@ -277,19 +373,22 @@ public class Matrix {
         divideRow(vector, 0, -1);
     }
 
+    /**
+     * Applies the operation to each row from the range, rows are processed by blocks in parallel.
+     *
+     * @param vector {@link Vector}, the second operands, one per row
+     * @param start  int, the first row
+     * @param end    int, the last row (exclusive) or {@code -1} to use matrix m-size
+     * @param op     {@link DoubleBinaryOperator}
+     * @see Parallel#forEachRow(int, int, java.util.function.IntConsumer)
+     */
     protected void rowOp(Vector vector, int start, int end, DoubleBinaryOperator op) {
         if (end == -1) {
             end = m;
         }
         Validate.isTrue(end <= vector.size());
         Validate.isTrue(end >= start);
-        if (FastText.USE_PARALLEL_COMPUTATION && end - start > PARALLEL_SIZE_THRESHOLD) {
-            IntStream.range(start, end).parallel().forEach(i -> vectorOp(vector, i, op, start));
-            return;
-        }
-        for (int i = start; i < end; i++) {
-            vectorOp(vector, i, op, start);
-        }
+        Parallel.forEachRow(start, end, i -> vectorOp(vector, i, op, start));
     }
 
     private void vectorOp(Vector vector, int i, DoubleBinaryOperator op, int shift) {
@@ -297,12 +396,9 @@ public class Matrix {
         if (val == 0) {
             return;
         }
-        if (FastText.USE_PARALLEL_COMPUTATION && n > PARALLEL_SIZE_THRESHOLD) {
-            IntStream.range(0, n).parallel().forEach(j -> data[i][j] = (float) op.applyAsDouble(data[i][j], val));
-            return;
-        }
-        for (int j = 0; j < n; j++) {
-            data[i][j] = (float) op.applyAsDouble(data[i][j], val);
+        int offset = i * n;
+        for (int j = offset; j < offset + n; j++) {
+            data[j] = (float) op.applyAsDouble(data[j], val);
         }
     }
 
@@ -322,16 +418,12 @@ public class Matrix {
      * @param i m-dimensional index
      * @return float
      */
-    private float l2NormRow(int i) {
-        float norm;
-        if (FastText.USE_PARALLEL_COMPUTATION && n > PARALLEL_SIZE_THRESHOLD) {
-            norm = (float) IntStream.range(0, n).parallel().mapToDouble(j -> data[i][j] * data[i][j]).sum();
-        } else {
-            norm = 0;
-            for (int j = 0; j < n; j++) {
-                float v = at(i, j);
-                norm += v * v;
-            }
+    float l2NormRow(int i) {
+        int offset = i * n;
+        float norm = 0;
+        for (int j = offset; j < offset + n; j++) {
+            float v = data[j];
+            norm += v * v;
         }
         if (Float.isNaN(norm)) {
             throw new IllegalStateException("Encountered NaN.");
@@ -351,11 +443,7 @@ public class Matrix {
      */
     public Vector l2NormRow() {
         Vector res = new Vector(m);
-        IntStream ints = IntStream.range(0, m);
-        if (FastText.USE_PARALLEL_COMPUTATION && m > PARALLEL_SIZE_THRESHOLD) {
-            ints = ints.parallel();
-        }
-        ints.forEach(i -> res.set(i, l2NormRow(i)));
+        Parallel.forEachRow(0, m, i -> res.set(i, l2NormRow(i)));
         return res;
     }
 
@@ -373,11 +461,7 @@ public class Matrix {
     void save(FTOutputStream out) throws IOException {
         out.writeLong(m);
         out.writeLong(n);
-        for (int i = 0; i < m; i++) {
-            for (int j = 0; j < n; j++) {
-                out.writeFloat(data[i][j]);
-            }
-        }
+        out.writeFloats(data, 0, data.length);
     }
 
     /**
@@ -395,14 +479,34 @@ public class Matrix {
      */
     static Matrix load(FTInputStream in) throws IOException {
         Matrix res = new Matrix((int) in.readLong(), (int) in.readLong());
-        for (int i = 0; i < res.m; i++) {
-            for (int j = 0; j < res.n; j++) {
-                res.data[i][j] = in.readFloat();
-            }
-        }
+        in.readFloats(res.data, 0, res.data.length);
         return res;
     }
 
+    /**
+     * Reads a matrix from the stream either into the heap or off-heap.
+     *
+     * @param in      {@link FTInputStream}
+     * @param offHeap boolean, if true the {@link DirectMatrix off-heap matrix} is returned
+     * @return {@link Matrix} new instance
+     * @throws IOException if an I/O error occurs
+     */
+    static Matrix load(FTInputStream in, boolean offHeap) throws IOException {
+        return offHeap ? DirectMatrix.load(in) : load(in);
+    }
+
+    /**
+     * Creates a new zero matrix either in the heap or off-heap.
+     *
+     * @param m       int, number of rows
+     * @param n       int, number of columns
+     * @param offHeap boolean, if true the {@link DirectMatrix off-heap matrix} is returned
+     * @return {@link Matrix}
+     */
+    static Matrix create(int m, int n, boolean offHeap) {
+        return offHeap ? new DirectMatrix(m, n) : new Matrix(m, n);
+    }
+
     /**
      * Creates an empty matrix.
      *
@@ -2,22 +2,25 @@ package cc.fasttext;
 
 import cc.fasttext.Args.LossName;
 import cc.fasttext.Args.ModelName;
-import com.google.common.collect.TreeMultimap;
 import com.google.common.primitives.Ints;
-import com.google.common.util.concurrent.AtomicDouble;
+import com.google.common.util.concurrent.Striped;
 import org.apache.commons.lang.Validate;
-import org.apache.commons.math3.random.RandomAdaptor;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.util.FastMath;
 
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.locks.Lock;
 
 /**
  * see <a href='https://github.com/facebookresearch/fastText/blob/master/src/model.cc'>model.cc</a> and
  * <a href='https://github.com/facebookresearch/fastText/blob/master/src/model.h'>model.h</>
+ * <p>
+ * The training methods use the instance state (hidden, output and gradient vectors, the loss counters),
+ * so a model is trained by a single thread.
+ * The matrices are shared by the models of all training threads and updated without synchronization (Hogwild),
+ * except the output rows under the softmax loss if {@link #setOutputLocks(Striped) the locks} are set.
+ * The prediction methods do not touch that state: they work with the specified or newly created buffers,
+ * and therefore can be called concurrently.
  */
 public class Model {
 
@@ -25,13 +28,12 @@ public class Model {
     private static final int MAX_SIGMOID = 8;
     private static final int LOG_TABLE_SIZE = 512;
     private static final int NEGATIVE_TABLE_SIZE = 10_000_000;
-
-    private static final Comparator<Float> HEAP_PROBABILITY_COMPARATOR = Comparator.reverseOrder();
-    // the following order does not important, it is just to match c++ and java versions:
-    private static final Comparator<Integer> HEAP_LABEL_COMPARATOR = Comparator.reverseOrder();//Integer::compareTo;
-
-    private static final int PARALLEL_SIZE_THRESHOLD = Integer.parseInt(System.getProperty("parallel.model.threshold",
-            String.valueOf(FastText.PARALLEL_THRESHOLD_FACTOR * 100)));
+    // the softmax labels with a smaller gradient factor are not updated: an approximation, the skipped changes are tiny but not zero
+    static final float SOFTMAX_EPSILON = 1e-8f;
+    // the max number of inputs predicted together by a single task, see predictBatch
+    static final int BATCH_BLOCK_SIZE = 64;
+    // the max number of output scores kept by a single batch task (4MB)
+    private static final int BATCH_OUTPUT_SIZE = 1024 * 1024;
 
     private QMatrix qwi_;
     private QMatrix qwo_;
@@ -39,21 +41,21 @@ public class Model {
     private Matrix wi_; // input
     private Matrix wo_; // output
 
+    // training state:
     private Vector hidden_;
     private Vector output_;
     private Vector grad_;
+    private final IntList label_ = new IntList(1); // a single target for the one-vs-all loss
     private int osz_; // output vocabSize
     private float loss_;
     private long nexamples_;
     private float[] t_sigmoid; // orig: std::vector<real> t_sigmoid_;
     private float[] t_log; // orig: std::vector<real> t_log_;
-    // used for negative sampling:
-    private List<Integer> negatives;
+    // used for negative sampling and hierarchical softmax, can be shared with other models:
+    private Targets targets;
     private int negpos;
-    // used for hierarchical softmax:
-    private List<List<Integer>> paths;
-    private List<List<Boolean>> codes;
-    private List<Node> tree;
+    // guards the output rows in softmax, null for lock-free updates:
+    private Striped<Lock> outputLocks;
 
     // args:
     private final Args.ModelName model;
@@ -129,6 +131,20 @@ public class Model {
         return qwo_;
     }
 
+    /**
+     * @return int, the size of the hidden layer ({@code dim})
+     */
+    int hiddenSize() {
+        return dim;
+    }
+
+    /**
+     * @return int, the size of the output layer (the number of labels for supervised model)
+     */
+    int outputSize() {
+        return osz_;
+    }
+
     public boolean isQuant() {
         return qwi_ != null && !qwi_.isEmpty();
     }
@@ -154,8 +170,7 @@ public class Model {
     private float binaryLogistic(int target, boolean label, float lr) {
         float score = sigmoid(wo_.dotRow(hidden_, target));
         float alpha = lr * ((label ? 1 : 0) - score);
-        grad_.addRow(wo_, target, alpha);
-        wo_.addRow(hidden_, target, alpha);
+        wo_.addRowWithGradient(hidden_, grad_, target, alpha);
         if (label) {
             return -log(score);
         } else {
@@ -194,6 +209,34 @@ public class Model {
         return loss;
     }
 
+    /**
+     * The {@link LossName#OVA one-vs-all} loss: the sum of binary logistic losses of all positive labels
+     * and {@code neg} sampled negatives, so the cost does not depend on the number of labels.
+     * A sampled label which is one of the positives is drawn again, but not more than {@link #neg} extra times.
+     *
+     * @param labels {@link IntList}, the positive labels, not empty
+     * @param lr     float
+     * @return float
+     */
+    private float oneVsAll(IntList labels, float lr) {
+        grad_.clear();
+        float loss = 0;
+        for (int i = 0; i < labels.size(); i++) {
+            loss += binaryLogistic(labels.get(i), true, lr);
+        }
+        int[] negatives = targets.negatives;
+        for (int n = 0, draws = 0; n < neg && draws < 2 * neg; draws++) {
+            int negative = negatives[negpos];
+            negpos = (negpos + 1) % negatives.length;
+            if (labels.contains(negative)) {
+                continue;
+            }
+            loss += binaryLogistic(negative, false, lr);
+            n++;
+        }
+        return loss;
+    }
+
     /**
      * <pre>{@code real Model::hierarchicalSoftmax(int32_t target, real lr) {
      *  real loss = 0.0;
@@ -213,10 +256,9 @@ public class Model {
     private float hierarchicalSoftmax(int target, float lr) {
         float loss = 0.0f;
         grad_.clear();
-        List<Boolean> binaryCode = codes.get(target);
-        List<Integer> pathToRoot = paths.get(target);
-        for (int i = 0; i < pathToRoot.size(); i++) {
-            loss += binaryLogistic(pathToRoot.get(i), binaryCode.get(i), lr);
+        int[] pathToRoot = targets.pathNodes;
+        for (int i = targets.pathStarts[target], end = targets.pathStarts[target + 1]; i < end; i++) {
+            loss += binaryLogistic(pathToRoot[i], targets.code(i), lr);
         }
         return loss;
     }
@@ -245,33 +287,32 @@ public class Model {
      * @param output {@link Vector}
      */
     private void computeOutputSoftmax(Vector hidden, Vector output) {
-        if (isQuant() && qout) {
-            output.mul(qwo_, hidden);
-        } else {
-            output.mul(wo_, hidden);
-        }
-        if (FastText.USE_PARALLEL_COMPUTATION && osz_ > PARALLEL_SIZE_THRESHOLD) {
-            double max = IntStream.range(0, osz_).parallel().mapToDouble(output::get).max().orElseThrow(() -> new IllegalStateException("Can't calc max"));
-            AtomicDouble z = new AtomicDouble();
-            IntStream.range(0, osz_).parallel().forEach(i -> {
-                double v = FastMath.exp(output.get(i) - max);
-                output.set(i, (float) v);
-                z.addAndGet(v);
-            });
-            IntStream.range(0, osz_).parallel().forEach(i -> output.set(i, output.get(i) / z.floatValue()));
-            return;
-        }
-        float max = output.get(0);
+        output.mul(outputMatrix(), hidden);
+        softmax(output.data(), 0);
+    }
+
+    private Matrix outputMatrix() {
+        return isQuant() && qout ? qwo_ : wo_;
+    }
+
+    /**
+     * Normalizes {@code osz_} scores starting from the offset, the second part of {@code Model::computeOutputSoftmax}.
+     *
+     * @param output float[] with scores
+     * @param offset int, the position of the first score
+     */
+    private void softmax(float[] output, int offset) {
+        float max = output[offset];
         float z = 0.0f;
-        for (int i = 0; i < osz_; i++) {
-            max = FastMath.max(output.get(i), max);
+        for (int i = offset; i < offset + osz_; i++) {
+            max = FastMath.max(output[i], max);
         }
-        for (int i = 0; i < osz_; i++) {
-            output.set(i, (float) FastMath.exp(output.get(i) - max));
-            z += output.get(i);
+        for (int i = offset; i < offset + osz_; i++) {
+            output[i] = (float) FastMath.exp(output[i] - max);
+            z += output[i];
         }
-        for (int i = 0; i < osz_; i++) {
-            output.set(i, output.get(i) / z);
+        for (int i = offset; i < offset + osz_; i++) {
+            output[i] = output[i] / z;
         }
     }
 
@@ -279,6 +320,23 @@ public class Model {
         computeOutputSoftmax(hidden_, output_);
     }
 
+    /**
+     * Turns {@code osz_} scores starting from the offset into the probabilities:
+     * the independent sigmoids for the {@link LossName#OVA one-vs-all} loss, otherwise the softmax.
+     *
+     * @param output array of floats
+     * @param offset int
+     */
+    private void normalize(float[] output, int offset) {
+        if (LossName.OVA != loss) {
+            softmax(output, offset);
+            return;
+        }
+        for (int i = offset; i < offset + osz_; i++) {
+            output[i] = (float) (1 / (1 + FastMath.exp(-output[i])));
+        }
+    }
+
     /**
      * <pre>{@code real Model::softmax(int32_t target, real lr) {
      *  grad_.zero();
@@ -291,6 +349,15 @@ public class Model {
      *  }
      *  return -log(output_[target]);
      * }}</pre>
+     * The gradient and the row update are fused into a single pass over the row
+     * (see {@link Matrix#addRowWithGradient(Vector, Vector, int, float)}),
+     * and the labels whose factor {@code |alpha|} is less than {@link #SOFTMAX_EPSILON} are skipped.
+     * With a large number of labels most of them have a negligible probability,
+     * so only a small part of the output matrix is written per example.
+     * Note: the skip is an approximation, not an exact equivalent of the original:
+     * such an update is not necessarily lost in the float rounding (e.g. for a row that is still near zero),
+     * so the trained model may differ slightly from the one trained without it.
+     * The full pass to compute the probabilities remains: the normalization needs all the scores.
      *
      * @param target int32_t
      * @param lr     float
@@ -299,14 +366,26 @@ public class Model {
     private float softmax(int target, float lr) {
         grad_.clear();
         computeOutputSoftmax();
-        IntStream ints = IntStream.range(0, osz_);
-        ints.forEach(i -> {
+        float[] output = output_.data();
+        for (int i = 0; i < osz_; i++) {
             float label = i == target ? 1.0f : 0.0f;
-            float alpha = lr * (label - output_.get(i));
-            grad_.addRow(wo_, i, alpha);
-            wo_.addRow(hidden_, i, alpha);
-        });
-        return -log(output_.get(target));
+            float alpha = lr * (label - output[i]);
+            if (Math.abs(alpha) < SOFTMAX_EPSILON) {
+                continue;
+            }
+            if (outputLocks == null) {
+                wo_.addRowWithGradient(hidden_, grad_, i, alpha);
+                continue;
+            }
+            Lock lock = outputLocks.getAt(i % outputLocks.size());
+            lock.lock();
+            try {
+                wo_.addRowWithGradient(hidden_, grad_, i, alpha);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return -log(output[target]);
     }
 
     /**
@@ -323,20 +402,18 @@ public class Model {
      *  hidden.mul(1.0 / input.size());
      * }}</pre>
      *
-     * @param input  List of ints (int32_t)
+     * @param input  array of ints (int32_t), only the first {@code size} elements are used
+     * @param size   int, the number of input ids
      * @param hidden {@link Vector}
      */
-    private void computeHidden(List<Integer> input, Vector hidden) {
+    private void computeHidden(int[] input, int size, Vector hidden) {
         Validate.isTrue(hidden.size() == dim, "Wrong size of hidden vector: " + hidden.size() + "!=" + dim);
         hidden.clear();
-        input.forEach(it -> {
-            if (isQuant()) {
-                hidden.addRow(qwi_, it);
-            } else {
-                hidden.addRow(wi_, it);
-            }
-        });
-        hidden.mul(1.0f / input.size());
+        Matrix wi = isQuant() ? qwi_ : wi_;
+        for (int i = 0; i < size; i++) {
+            hidden.addRow(wi, input[i]);
+        }
+        hidden.mul(1.0f / size);
     }
 
     /**
@@ -362,23 +439,54 @@ public class Model {
      * @param k      int
      * @param hidden {@link Vector}
      * @param output {@link Vector}
-     * @return {@link TreeMultimap}
+     * @return {@link ScoreHeap}, sorted from the best to the worst
      */
-    public TreeMultimap<Float, Integer> predict(List<Integer> input, int k, Vector hidden, Vector output) {
+    public ScoreHeap predict(List<Integer> input, int k, Vector hidden, Vector output) {
+        return predict(IntList.of(input), k, hidden, output, new ScoreHeap(k));
+    }
+
+    /**
+     * The same as {@link #predict(List, int, Vector, Vector)} but takes a primitive list of ids and fills the given heap.
+     *
+     * @param input  {@link IntList}
+     * @param k      int
+     * @param hidden {@link Vector}
+     * @param output {@link Vector}
+     * @param heap   {@link ScoreHeap} to reuse, it is reset to the capacity {@code k}
+     * @return the same {@link ScoreHeap}, sorted from the best to the worst
+     */
+    public ScoreHeap predict(IntList input, int k, Vector hidden, Vector output, ScoreHeap heap) {
+        return predict(input, k, 0, hidden, output, heap);
+    }
+
+    /**
+     * The same as {@link #predict(IntList, int, Vector, Vector, ScoreHeap)}, but returns only the labels
+     * with the probability not less than the threshold, so the result may contain less than {@code k} labels.
+     * It is useful for the {@link LossName#OVA one-vs-all} loss, where each label has an independent probability.
+     *
+     * @param input     {@link IntList}
+     * @param k         int
+     * @param threshold float, the min probability, from 0 to 1
+     * @param hidden    {@link Vector}
+     * @param output    {@link Vector}
+     * @param heap      {@link ScoreHeap} to reuse, it is reset to the capacity {@code k}
+     * @return the same {@link ScoreHeap}, sorted from the best to the worst
+     */
+    public ScoreHeap predict(IntList input, int k, float threshold, Vector hidden, Vector output, ScoreHeap heap) {
         if (k <= 0) {
             throw new IllegalArgumentException("k needs to be 1 or higher!");
         }
         if (!ModelName.SUP.equals(model)) {
             throw new IllegalArgumentException("Model needs to be supervised for prediction!");
         }
-        TreeMultimap<Float, Integer> heap = TreeMultimap.create(HEAP_PROBABILITY_COMPARATOR, HEAP_LABEL_COMPARATOR);
-        computeHidden(input, hidden);
+        heap.reset(k, minScore(threshold));
+        computeHidden(input.data(), input.size(), hidden);
         if (LossName.HS == loss) {
-            dfs(k, 2 * osz_ - 2, 0.0f, heap, hidden);
+            dfs(2 * osz_ - 2, 0.0f, heap, hidden);
         } else {
-            findKBest(k, heap, hidden, output);
+            findKBest(heap, hidden, output);
         }
-        return heap;
+        return heap.sort();
     }
 
     /**
@@ -386,13 +494,109 @@ public class Model {
      * void Model::predict(const std::vector<int32_t>& input, int32_t k, std::vector<std::pair<real, int32_t>>& heap) {
      *  predict(input, k, heap, hidden_, output_);
      * }}</pre>
+     * Unlike the original, the shared {@code hidden_} and {@code output_} vectors are not used: new ones are created,
+     * so the method is thread-safe.
      *
      * @param input List of ints
      * @param k     int
-     * @return {@link TreeMultimap}
+     * @return {@link ScoreHeap}, sorted from the best to the worst
+     */
+    public ScoreHeap predict(List<Integer> input, int k) {
+        return predict(input, k, new Vector(dim), new Vector(osz_));
+    }
+
+    /**
+     * Predicts the k most likely labels for each of the inputs.
+     * The result is the same as calling {@link #predict(IntList, int, Vector, Vector, ScoreHeap)} for each input,
+     * but the inputs are processed by blocks in parallel (see {@link Parallel#forEachBlock(int, int, int, Parallel.RangeConsumer)}).
+     * For the softmax-like losses the hidden vectors of a block are collected into a batch matrix,
+     * which is multiplied by the output matrix at once (see {@link Matrix#dotRows(Matrix, float[])});
+     * the hierarchical softmax walks the tree for each input separately.
+     * Unlike the single-input method, an empty input is allowed: it gets an empty heap.
+     *
+     * @param inputs List of {@link IntList}s, not null
+     * @param k      int, positive
+     * @return array of sorted {@link ScoreHeap}s in the order of inputs
+     * @throws IllegalArgumentException if wrong input
+     */
+    public ScoreHeap[] predictBatch(List<IntList> inputs, int k) throws IllegalArgumentException {
+        return predictBatch(inputs, k, 0);
+    }
+
+    /**
+     * The same as {@link #predictBatch(List, int)}, but with the min probability of labels.
+     *
+     * @param inputs    List of {@link IntList}s, not null
+     * @param k         int, positive
+     * @param threshold float, the min probability, from 0 to 1
+     * @return array of sorted {@link ScoreHeap}s in the order of inputs
+     * @throws IllegalArgumentException if wrong input
+     * @see #predict(IntList, int, float, Vector, Vector, ScoreHeap)
+     */
+    public ScoreHeap[] predictBatch(List<IntList> inputs, int k, float threshold) throws IllegalArgumentException {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k needs to be 1 or higher!");
+        }
+        if (!ModelName.SUP.equals(model)) {
+            throw new IllegalArgumentException("Model needs to be supervised for prediction!");
+        }
+        Validate.noNullElements(Objects.requireNonNull(inputs, "Null inputs"), "Null input");
+        ScoreHeap[] res = new ScoreHeap[inputs.size()];
+        int blockSize = Math.max(1, Math.min(BATCH_BLOCK_SIZE, BATCH_OUTPUT_SIZE / osz_));
+        float minScore = minScore(threshold);
+        Parallel.forEachBlock(0, res.length, blockSize, (from, to) -> predictBlock(inputs, from, to, k, minScore, res));
+        return res;
+    }
+
+    /**
+     * Returns the min score (log-probability) to predict.
+     *
+     * @param threshold float, the min probability
+     * @return float
      */
-    public TreeMultimap<Float, Integer> predict(List<Integer> input, int k) {
-        return predict(input, k, hidden_, output_);
+    private float minScore(float threshold) {
+        Validate.isTrue(threshold >= 0 && threshold <= 1, "Wrong threshold: " + threshold);
+        return threshold == 0 ? Float.NEGATIVE_INFINITY : stdLog(threshold);
+    }
+
+    private void predictBlock(List<IntList> inputs, int from, int to, int k, float minScore, ScoreHeap[] res) {
+        Vector hidden = new Vector(dim);
+        int rows = 0;
+        for (int i = from; i < to; i++) {
+            res[i] = new ScoreHeap(k).reset(k, minScore);
+            IntList input = inputs.get(i);
+            if (input.isEmpty()) {
+                continue;
+            }
+            if (LossName.HS == loss) {
+                computeHidden(input.data(), input.size(), hidden);
+                dfs(2 * osz_ - 2, 0.0f, res[i], hidden);
+            }
+            rows++;
+        }
+        if (LossName.HS == loss || rows == 0) {
+            Arrays.stream(res, from, to).forEach(ScoreHeap::sort);
+            return;
+        }
+        Matrix batch = new Matrix(rows, dim);
+        for (int i = from, row = 0; i < to; i++) {
+            IntList input = inputs.get(i);
+            if (input.isEmpty()) {
+                continue;
+            }
+            computeHidden(input.data(), input.size(), hidden);
+            System.arraycopy(hidden.data(), 0, batch.flatData(), dim * row++, dim);
+        }
+        float[] output = new float[rows * osz_];
+        outputMatrix().dotRows(batch, output);
+        for (int i = from, row = 0; i < to; i++) {
+            if (!inputs.get(i).isEmpty()) {
+                int offset = osz_ * row++;
+                normalize(output, offset);
+                findKBest(res[i], output, offset);
+            }
+            res[i].sort();
+        }
     }
 
     /**
@@ -413,38 +617,23 @@ public class Model {
      * }
      * }}</pre>
      *
-     * @param k      int
-     * @param heap   {@link TreeMultimap}
+     * @param heap   {@link ScoreHeap} with capacity {@code k}
      * @param hidden {@link Vector}
      * @param output {@link Vector}
      */
-    private void findKBest(int k, TreeMultimap<Float, Integer> heap, Vector hidden, Vector output) {
-        computeOutputSoftmax(hidden, output);
+    private void findKBest(ScoreHeap heap, Vector hidden, Vector output) {
+        output.mul(outputMatrix(), hidden);
+        normalize(output.data(), 0);
+        findKBest(heap, output.data(), 0);
+    }
+
+    private void findKBest(ScoreHeap heap, float[] output, int offset) {
         for (int i = 0; i < osz_; i++) {
-            float key = stdLog(output.get(i));
-            if (heap.size() == k && key < heap.asMap().firstKey()) {
+            float score = stdLog(output[offset + i]);
+            if (heap.rejects(score)) {
                 continue;
             }
-            put(heap, k, key, i);
-        }
-    }
-
-    /**
-     * Puts key-value pair to sorted multimap with fixed size.
-     * The smallest element will be deleted if the size exceeds the limit.
-     *
-     * @param map     {@link TreeMultimap} the multimap
-     * @param maxSize int, max size
-     * @param key     the key
-     * @param value   the value
-     * @param <K>     type of key
-     * @param <V>     type of value
-     */
-    private <K, V> void put(TreeMultimap<K, V> map, int maxSize, K key, V value) {
-        map.put(key, value);
-        if (map.size() > maxSize) {
-            K last = map.asMap().lastKey();
-            map.get(last).pollLast();
+            heap.offer(score, i);
         }
     }
 
@@ -474,18 +663,17 @@ public class Model {
      *  dfs(k, tree[node].right, score + std_log(f), heap, hidden);
      * }}</pre>
      *
-     * @param k      int32_t
-     * @param node   float
+     * @param node   int32_t
      * @param score  float
-     * @param heap   {@link TreeMultimap}
+     * @param heap   {@link ScoreHeap} with capacity {@code k}
      * @param hidden {@link Vector}
      */
-    private void dfs(int k, int node, float score, TreeMultimap<Float, Integer> heap, Vector hidden) {
-        if (heap.size() == k && score < heap.asMap().firstKey()) {
+    private void dfs(int node, float score, ScoreHeap heap, Vector hidden) {
+        if (heap.rejects(score)) {
             return;
         }
-        if (tree.get(node).left == -1 && tree.get(node).right == -1) {
-            put(heap, k, score, node);
+        if (targets.isLeaf(node)) {
+            heap.offer(score, node);
             return;
         }
         float f;
@@ -495,8 +683,8 @@ public class Model {
             f = wo_.dotRow(hidden, node - osz_);
         }
         f = (float) (1 / (1 + FastMath.exp(-f)));
-        dfs(k, tree.get(node).left, score + stdLog(1.0f - f), heap, hidden);
-        dfs(k, tree.get(node).right, score + stdLog(f), heap, hidden);
+        dfs(targets.left(node), score + stdLog(1.0f - f), heap, hidden);
+        dfs(targets.right(node), score + stdLog(f), heap, hidden);
     }
 
     /**
@@ -523,27 +711,32 @@ public class Model {
      *  }
      * }}</pre>
      *
-     * @param input  List of ints
+     * @param input  {@link IntList} of ids
+     * @param target int
+     * @param lr     float
+     */
+    void update(IntList input, int target, float lr) {
+        update(input.data(), input.size(), target, lr);
+    }
+
+    /**
+     * Updates the model using the first {@code size} ids from the array.
+     * Does not allocate anything, the array is usually a reusable per-thread buffer.
+     *
+     * @param input  array of ints
+     * @param size   int, the number of input ids
      * @param target int
      * @param lr     float
+     * @see #update(IntList, int, float)
      */
-    void update(List<Integer> input, int target, float lr) {
+    void update(int[] input, int size, int target, float lr) {
         Validate.isTrue(target >= 0);
         Validate.isTrue(target < osz_);
-        if (input.isEmpty()) {
+        if (size == 0) {
             return;
         }
         Events.MODEL_COMPUTE_HIDDEN.start();
-        Map<Integer, Long> inputMap;
-        if (FastText.USE_PARALLEL_COMPUTATION && input.size() > PARALLEL_SIZE_THRESHOLD) {
-            inputMap = input.parallelStream().collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
-            hidden_.clear();
-            inputMap.entrySet().parallelStream().forEach(e -> hidden_.addRow(isQuant() ? qwi_ : wi_, e.getKey(), e.getValue()));
-            hidden_.mul(1.0f / input.size());
-        } else {
-            inputMap = Collections.emptyMap();
-            computeHidden(input, hidden_);
-        }
+        computeHidden(input, size, hidden_);
         Events.MODEL_COMPUTE_HIDDEN.end();
 
         Events.MODEL_LOSS_CALC.start();
@@ -551,29 +744,68 @@ public class Model {
             loss_ += negativeSampling(target, lr);
         } else if (LossName.HS == loss) {
             loss_ += hierarchicalSoftmax(target, lr);
+        } else if (LossName.OVA == loss) {
+            label_.clear();
+            label_.add(target);
+            loss_ += oneVsAll(label_, lr);
         } else {
             loss_ += softmax(target, lr);
         }
         Events.MODEL_LOSS_CALC.end();
+        updateInput(input, size);
+    }
+
+    /**
+     * Updates the model with all the labels of an example at once.
+     * Used while train only, for the {@link LossName#OVA one-vs-all} loss,
+     * other losses take a single label per example (see {@link #update(IntList, int, float)}).
+     *
+     * @param input  {@link IntList} of ids
+     * @param labels {@link IntList}, the labels of the example
+     * @param lr     float
+     */
+    void update(IntList input, IntList labels, float lr) {
+        Validate.isTrue(LossName.OVA == loss, "Multiple targets are supported by the one-vs-all loss only");
+        for (int i = 0; i < labels.size(); i++) {
+            Validate.isTrue(labels.get(i) >= 0 && labels.get(i) < osz_);
+        }
+        if (input.isEmpty() || labels.isEmpty()) {
+            return;
+        }
+        Events.MODEL_COMPUTE_HIDDEN.start();
+        computeHidden(input.data(), input.size(), hidden_);
+        Events.MODEL_COMPUTE_HIDDEN.end();
+
+        Events.MODEL_LOSS_CALC.start();
+        loss_ += oneVsAll(labels, lr);
+        Events.MODEL_LOSS_CALC.end();
+        updateInput(input.data(), input.size());
+    }
 
+    /**
+     * Applies the computed gradient to the input rows.
+     *
+     * @param input array of ints
+     * @param size  int, the number of input ids
+     */
+    private void updateInput(int[] input, int size) {
         nexamples_ += 1;
 
         Events.MODEL_GRAD_MUL.start();
         if (ModelName.SUP == model) {
-            grad_.mul(1.0f / input.size());
+            grad_.mul(1.0f / size);
         }
         Events.MODEL_GRAD_MUL.end();
 
         Events.MODEL_INPUT_ADD_ROW.start();
-        if (inputMap.isEmpty()) {
-            input.forEach(it -> wi_.addRow(grad_, it, 1.0f));
-        } else {
-            inputMap.entrySet().parallelStream().forEach(e -> wi_.addRow(grad_, e.getKey(), e.getValue()));
+        for (int i = 0; i < size; i++) {
+            wi_.addRow(grad_, input[i], 1.0f);
         }
         Events.MODEL_INPUT_ADD_ROW.end();
     }
 
     /**
+     * Builds the output tables for this model.
      * <pre>{@code
      * void Model::setTargetCounts(const std::vector<int64_t>& counts) {
      *  assert(counts.size() == osz_);
@@ -585,62 +817,55 @@ public class Model {
      *  }
      * }
      * }</pre>
+     * The {@link LossName#OVA one-vs-all} loss samples the negatives in the same way as {@code ns}.
      *
      * @param counts List of longs (int64_t)
+     * @see #shareTargets(Targets)
      */
     public void setTargetCounts(List<Long> counts) {
         Validate.isTrue(counts.size() == osz_);
-        if (LossName.NS == loss) {
-            initTableNegatives(counts);
-        }
-        if (LossName.HS == loss) {
-            buildTree(counts);
-        }
+        targets = Targets.create(loss, counts, rng);
+        negpos = 0;
     }
 
     /**
-     * <pre>{@code
-     * void Model::initTableNegatives(const std::vector<int64_t>& counts) {
-     *  real z = 0.0;
-     *  for (size_t i = 0; i < counts.size(); i++) {
-     *      z += pow(counts[i], 0.5);
-     *  }
-     *  for (size_t i = 0; i < counts.size(); i++) {
-     *      real c = pow(counts[i], 0.5);
-     *      for (size_t j = 0; j < c * NEGATIVE_TABLE_SIZE / z; j++) {
-     *          negatives.push_back(i);
-     *      }
-     *  }
-     *  std::shuffle(negatives.begin(), negatives.end(), rng);
-     * }
-     * }</pre>
+     * Sets the output tables built by another model of the same training run, instead of {@link #setTargetCounts(List)}.
+     * The tables are read-only, so they are shared by all training threads.
+     * To keep the threads from sampling the same negatives in the same order,
+     * this model starts from a random position in the table of negatives.
      *
-     * @param counts List of longs (int64_t)
+     * @param targets {@link Targets}, not null
+     * @return this model instance
+     * @throws IllegalArgumentException if the tables are built for another output or loss
      */
-    private void initTableNegatives(List<Long> counts) {
-        negatives = new ArrayList<>(counts.size());
-        if (FastText.USE_PARALLEL_COMPUTATION && counts.size() > PARALLEL_SIZE_THRESHOLD) {
-            List<Integer> sync = Collections.synchronizedList(negatives);
-            double z = counts.parallelStream().mapToDouble(FastMath::sqrt).sum();
-            IntStream.range(0, counts.size()).parallel().forEach(i -> {
-                double c = FastMath.sqrt(counts.get(i)) * NEGATIVE_TABLE_SIZE / z;
-                for (int j = 0; j < c; j++) {
-                    sync.add(i);
-                }
-            });
-        } else {
-            double z = 0.0;
-            for (long count : counts) {
-                z += FastMath.sqrt(count);
-            }
-            for (int i = 0; i < counts.size(); i++) {
-                double c = FastMath.sqrt(counts.get(i)) * NEGATIVE_TABLE_SIZE / z;
-                for (int j = 0; j < c; j++) {
-                    negatives.add(i);
-                }
-            }
-        }
-        Collections.shuffle(negatives, new RandomAdaptor(rng));
+    Model shareTargets(Targets targets) throws IllegalArgumentException {
+        Validate.isTrue(targets.size == osz_ && targets.loss == loss, "Incompatible targets");
+        this.targets = targets;
+        this.negpos = targets.negatives == null ? 0 : rng.nextInt(targets.negatives.length);
+        return this;
+    }
+
+    /**
+     * Sets the locks to guard the output rows in the {@link LossName#SOFTMAX softmax} training.
+     * Each softmax example reads and updates all rows of the output matrix,
+     * so with many threads the lock-free updates overwrite each other a lot.
+     * With the locks the gradient of a row and the row update are done atomically,
+     * the row {@code i} is guarded by the stripe {@code i % locks.size()}.
+     * Other losses update a few rows per example and ignore the locks.
+     *
+     * @param locks {@link Striped} of {@link Lock}s, shared by the models of all threads, null to update lock-free
+     * @return this model instance
+     */
+    Model setOutputLocks(Striped<Lock> locks) {
+        this.outputLocks = locks;
+        return this;
+    }
+
+    /**
+     * @return {@link Targets} of this model, null if they are not set
+     */
+    Targets targets() {
+        return targets;
     }
 
     /**
@@ -657,109 +882,14 @@ public class Model {
      * @return
      */
     private int getNegative(int target) {
+        int[] negatives = targets.negatives;
         int negative;
         do {
-            negative = negatives.get(negpos);
-            negpos = (negpos + 1) % negatives.size();
+            negative = negatives[negpos];
+            negpos = (negpos + 1) % negatives.length;
         } while (target == negative);
         return negative;
     }
-
-    /**
-     * <pre>{@code void Model::buildTree(const std::vector<int64_t>& counts) {
-     *  tree.resize(2 * osz_ - 1);
-     *  for (int32_t i = 0; i < 2 * osz_ - 1; i++) {
-     *      tree[i].parent = -1;
-     *      tree[i].left = -1;
-     *      tree[i].right = -1;
-     *      tree[i].count = 1e15;
-     *      tree[i].binary = false;
-     *  }
-     *  for (int32_t i = 0; i < osz_; i++) {
-     *      tree[i].count = counts[i];
-     *  }
-     *  int32_t leaf = osz_ - 1;
-     *  int32_t node = osz_;
-     *  for (int32_t i = osz_; i < 2 * osz_ - 1; i++) {
-     *      int32_t mini[2];
-     *      for (int32_t j = 0; j < 2; j++) {
-     *          if (leaf >= 0 && tree[leaf].count < tree[node].count) {
-     *              mini[j] = leaf--;
-     *          } else {
-     *              mini[j] = node++;
-     *          }
-     *      }
-     *      tree[i].left = mini[0];
-     *      tree[i].right = mini[1];
-     *      tree[i].count = tree[mini[0]].count + tree[mini[1]].count;
-     *      tree[mini[0]].parent = i;
-     *      tree[mini[1]].parent = i;
-     *      tree[mini[1]].binary = true;
-     *  }
-     *  for (int32_t i = 0; i < osz_; i++) {
-     *      std::vector<int32_t> path;
-     *      std::vector<bool> code;
-     *      int32_t j = i;
-     *      while (tree[j].parent != -1) {
-     *          path.push_back(tree[j].parent - osz_);
-     *          code.push_back(tree[j].binary);
-     *          j = tree[j].parent;
-     *      }
-     *      paths.push_back(path);
-     *      codes.push_back(code);
-     *  }
-     * }}</pre>
-     *
-     * @param counts List of longs (int64_t)
-     */
-    private void buildTree(List<Long> counts) {
-        paths = new ArrayList<>(osz_);
-        codes = new ArrayList<>(osz_);
-        tree = new ArrayList<>(2 * osz_ - 1);
-        for (int i = 0; i < 2 * osz_ - 1; i++) {
-            Node node = new Node();
-            node.parent = -1;
-            node.left = -1;
-            node.right = -1;
-            node.count = 1000_000_000_000_000L;// 1e15;
-            node.binary = false;
-            tree.add(i, node);
-        }
-        for (int i = 0; i < osz_; i++) {
-            tree.get(i).count = counts.get(i);
-        }
-        int leaf = osz_ - 1;
-        int node = osz_;
-        for (int i = osz_; i < 2 * osz_ - 1; i++) {
-            int[] mini = new int[2];
-            for (int j = 0; j < 2; j++) {
-                if (leaf >= 0 && tree.get(leaf).count < tree.get(node).count) {
-                    mini[j] = leaf--;
-                } else {
-                    mini[j] = node++;
-                }
-            }
-            tree.get(i).left = mini[0];
-            tree.get(i).right = mini[1];
-            tree.get(i).count = tree.get(mini[0]).count + tree.get(mini[1]).count;
-            tree.get(mini[0]).parent = i;
-            tree.get(mini[1]).parent = i;
-            tree.get(mini[1]).binary = true;
-        }
-        for (int i = 0; i < osz_; i++) {
-            List<Integer> path = new ArrayList<>();
-            List<Boolean> code = new ArrayList<>();
-            int j = i;
-            while (tree.get(j).parent != -1) {
-                path.add(tree.get(j).parent - osz_);
-                code.add(tree.get(j).binary);
-                j = tree.get(j).parent;
-            }
-            paths.add(path);
-            codes.add(code);
-        }
-    }
-
     /**
      * <pre>{@code real Model::getLoss() const {
      *  return loss_ / nexamples_;
@@ -864,20 +994,212 @@ public class Model {
     }
 
     /**
-     * model.h:
-     * struct Node {
-     * int32_t parent;
-     * int32_t left;
-     * int32_t right;
-     * int64_t count;
-     * bool binary;
-     * };
+     * The output tables built from the target counts:
+     * the shuffled table for negative sampling and the Huffman tree for hierarchical softmax.
+     * They are read-only, so a single instance is shared by the models of all training threads,
+     * see {@link #shareTargets(Targets)}.
+     * <p>
+     * The tree is kept in primitive arrays: the children of the inner nodes
+     * and the paths from leaves to the root in the compressed-row layout,
+     * i.e. the path of the target {@code i} is {@code pathNodes[pathStarts[i]..pathStarts[i + 1])}
+     * with the codes in the same bits of {@code pathCodes}.
+     * The leaves are the nodes {@code [0, size)}, the root is {@code 2 * size - 2}.
      */
-    private class Node {
-        int parent;
-        int left;
-        int right;
-        long count;
-        boolean binary;
+    static final class Targets {
+        private final Args.LossName loss;
+        private final int size;
+        // used for negative sampling:
+        private final int[] negatives;
+        // used for hierarchical softmax:
+        private final int[] children;
+        private final int[] pathStarts;
+        private final int[] pathNodes;
+        private final long[] pathCodes;
+
+        private Targets(Args.LossName loss, int size, int[] negatives, int[] children, int[] pathStarts, int[] pathNodes, long[] pathCodes) {
+            this.loss = loss;
+            this.size = size;
+            this.negatives = negatives;
+            this.children = children;
+            this.pathStarts = pathStarts;
+            this.pathNodes = pathNodes;
+            this.pathCodes = pathCodes;
+        }
+
+        /**
+         * Builds the tables for the specified loss.
+         *
+         * @param loss   {@link Args.LossName}
+         * @param counts List of longs (int64_t), the counts of targets
+         * @param rng    {@link RandomGenerator} to shuffle the negatives
+         * @return {@link Targets}
+         */
+        static Targets create(Args.LossName loss, List<Long> counts, RandomGenerator rng) {
+            if (LossName.NS == loss || LossName.OVA == loss) {
+                return new Targets(loss, counts.size(), initTableNegatives(counts, rng), null, null, null, null);
+            }
+            if (LossName.HS == loss) {
+                return buildTree(counts);
+            }
+            return new Targets(loss, counts.size(), null, null, null, null, null);
+        }
+
+        /**
+         * <pre>{@code
+         * void Model::initTableNegatives(const std::vector<int64_t>& counts) {
+         *  real z = 0.0;
+         *  for (size_t i = 0; i < counts.size(); i++) {
+         *      z += pow(counts[i], 0.5);
+         *  }
+         *  for (size_t i = 0; i < counts.size(); i++) {
+         *      real c = pow(counts[i], 0.5);
+         *      for (size_t j = 0; j < c * NEGATIVE_TABLE_SIZE / z; j++) {
+         *          negatives.push_back(i);
+         *      }
+         *  }
+         *  std::shuffle(negatives.begin(), negatives.end(), rng);
+         * }
+         * }</pre>
+         *
+         * @param counts List of longs (int64_t)
+         * @param rng    {@link RandomGenerator}
+         * @return array of ints
+         */
+        private static int[] initTableNegatives(List<Long> counts, RandomGenerator rng) {
+            double z = 0.0;
+            for (long count : counts) {
+                z += FastMath.sqrt(count);
+            }
+            // the first pass is to calculate the table size: the number of j in [0, c) is ceil(c)
+            long size = 0;
+            for (long count : counts) {
+                size += (long) FastMath.ceil(FastMath.sqrt(count) * NEGATIVE_TABLE_SIZE / z);
+            }
+            int[] negatives = new int[Ints.checkedCast(size)];
+            int pos = 0;
+            for (int i = 0; i < counts.size(); i++) {
+                double c = FastMath.sqrt(counts.get(i)) * NEGATIVE_TABLE_SIZE / z;
+                for (int j = 0; j < c; j++) {
+                    negatives[pos++] = i;
+                }
+            }
+            // the same sequence of random numbers as Collections#shuffle uses:
+            for (int i = negatives.length; i > 1; i--) {
+                int j = rng.nextInt(i);
+                int tmp = negatives[i - 1];
+                negatives[i - 1] = negatives[j];
+                negatives[j] = tmp;
+            }
+            return negatives;
+        }
+
+        /**
+         * <pre>{@code void Model::buildTree(const std::vector<int64_t>& counts) {
+         *  tree.resize(2 * osz_ - 1);
+         *  for (int32_t i = 0; i < 2 * osz_ - 1; i++) {
+         *      tree[i].parent = -1;
+         *      tree[i].left = -1;
+         *      tree[i].right = -1;
+         *      tree[i].count = 1e15;
+         *      tree[i].binary = false;
+         *  }
+         *  for (int32_t i = 0; i < osz_; i++) {
+         *      tree[i].count = counts[i];
+         *  }
+         *  int32_t leaf = osz_ - 1;
+         *  int32_t node = osz_;
+         *  for (int32_t i = osz_; i < 2 * osz_ - 1; i++) {
+         *      int32_t mini[2];
+         *      for (int32_t j = 0; j < 2; j++) {
+         *          if (leaf >= 0 && tree[leaf].count < tree[node].count) {
+         *              mini[j] = leaf--;
+         *          } else {
+         *              mini[j] = node++;
+         *          }
+         *      }
+         *      tree[i].left = mini[0];
+         *      tree[i].right = mini[1];
+         *      tree[i].count = tree[mini[0]].count + tree[mini[1]].count;
+         *      tree[mini[0]].parent = i;
+         *      tree[mini[1]].parent = i;
+         *      tree[mini[1]].binary = true;
+         *  }
+         *  for (int32_t i = 0; i < osz_; i++) {
+         *      std::vector<int32_t> path;
+         *      std::vector<bool> code;
+         *      int32_t j = i;
+         *      while (tree[j].parent != -1) {
+         *          path.push_back(tree[j].parent - osz_);
+         *          code.push_back(tree[j].binary);
+         *          j = tree[j].parent;
+         *      }
+         *      paths.push_back(path);
+         *      codes.push_back(code);
+         *  }
+         * }}</pre>
+         *
+         * @param counts List of longs (int64_t)
+         * @return {@link Targets}
+         */
+        private static Targets buildTree(List<Long> counts) {
+            int osz = counts.size();
+            int nodes = 2 * osz - 1;
+            int[] parent = new int[nodes];
+            long[] count = new long[nodes];
+            boolean[] binary = new boolean[nodes];
+            int[] children = new int[2 * (osz - 1)];
+            Arrays.fill(parent, -1);
+            Arrays.fill(count, 1000_000_000_000_000L);// 1e15;
+            for (int i = 0; i < osz; i++) {
+                count[i] = counts.get(i);
+            }
+            int leaf = osz - 1;
+            int node = osz;
+            for (int i = osz; i < nodes; i++) {
+                int left = leaf >= 0 && count[leaf] < count[node] ? leaf-- : node++;
+                int right = leaf >= 0 && count[leaf] < count[node] ? leaf-- : node++;
+                children[2 * (i - osz)] = left;
+                children[2 * (i - osz) + 1] = right;
+                count[i] = count[left] + count[right];
+                parent[left] = i;
+                parent[right] = i;
+                binary[right] = true;
+            }
+            int[] pathStarts = new int[osz + 1];
+            for (int i = 0; i < osz; i++) {
+                int depth = 0;
+                for (int j = i; parent[j] != -1; j = parent[j]) {
+                    depth++;
+                }
+                pathStarts[i + 1] = pathStarts[i] + depth;
+            }
+            int[] pathNodes = new int[pathStarts[osz]];
+            long[] pathCodes = new long[(pathNodes.length + 63) / 64];
+            for (int i = 0; i < osz; i++) {
+                for (int j = i, k = pathStarts[i]; parent[j] != -1; j = parent[j], k++) {
+                    pathNodes[k] = parent[j] - osz;
+                    if (binary[j]) {
+                        pathCodes[k >>> 6] |= 1L << k;
+                    }
+                }
+            }
+            return new Targets(LossName.HS, osz, null, children, pathStarts, pathNodes, pathCodes);
+        }
+
+        private boolean code(int i) {
+            return (pathCodes[i >>> 6] & 1L << i) != 0;
+        }
+
+        private boolean isLeaf(int node) {
+            return node < size;
+        }
+
+        private int left(int node) {
+            return children[2 * (node - size)];
+        }
+
+        private int right(int node) {
+            return children[2 * (node - size) + 1];
+        }
     }
 }
@@ -0,0 +1,180 @@
+package cc.fasttext;
+
+import cc.fasttext.io.FTOutputStream;
+import org.apache.commons.lang.Validate;
+import org.apache.commons.math3.util.FastMath;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The base for {@link Matrix} implementations that keep the data outside the java heap
+ * in a sequence of {@link FloatBuffer} pages.
+ * A single {@link java.nio.ByteBuffer} can not be larger than 2GB, so big matrices are split into several pages,
+ * each of them contains only whole rows.
+ * This class provides all reading operations, the subclasses decide whether the matrix can be modified.
+ *
+ * @see MappedMatrix
+ * @see DirectMatrix
+ */
+abstract class PagedMatrix extends Matrix {
+
+    final FloatBuffer[] pages;
+    final int rows; // number of rows per page
+
+    PagedMatrix(int m, int n, FloatBuffer[] pages, int rows) {
+        this.m = m;
+        this.n = n;
+        this.pages = pages;
+        this.rows = rows;
+    }
+
+    /**
+     * Calculates the number of rows which fit into one page.
+     *
+     * @param n        int, the row length
+     * @param pageSize int, the max number of floats in a page
+     * @return int
+     */
+    static int rowsPerPage(int n, int pageSize) {
+        Validate.isTrue(n > 0, "Wrong n-size: " + n);
+        Validate.isTrue(n <= pageSize, "Too large n-size: " + n);
+        return pageSize / n;
+    }
+
+    FloatBuffer page(int i) {
+        return pages[i / rows];
+    }
+
+    int offset(int i) {
+        return (i % rows) * n;
+    }
+
+    @Override
+    float at(int i, int j) {
+        return page(i).get(offset(i) + j);
+    }
+
+    @Override
+    public Matrix copy() {
+        return toHeap();
+    }
+
+    /**
+     * Copies the data to a new heap {@link Matrix}.
+     *
+     * @return {@link Matrix}
+     */
+    Matrix toHeap() {
+        Matrix res = new Matrix(m, n);
+        float[] data = res.flatData();
+        for (int i = 0; i < m; i += rows) {
+            FloatBuffer buffer = page(i).duplicate();
+            buffer.clear();
+            buffer.get(data, i * n, buffer.remaining());
+        }
+        return res;
+    }
+
+    /**
+     * Returns a heap copy of the data, which is possible only for a matrix of at most {@link #MAX_ARRAY_SIZE} floats.
+     *
+     * @return float[]
+     * @throws IllegalStateException if the matrix is too large for a single array
+     */
+    @Override
+    float[] flatData() throws IllegalStateException {
+        if ((long) m * n > MAX_ARRAY_SIZE) {
+            throw new IllegalStateException("Too large matrix for a single array: " + m + "x" + n);
+        }
+        return toHeap().flatData();
+    }
+
+    @Override
+    public List<Vector> getData() {
+        return Collections.unmodifiableList(IntStream.range(0, m).mapToObj(i -> {
+            float[] res = new float[n];
+            readRow(i, res);
+            return new Vector(res);
+        }).collect(Collectors.toList()));
+    }
+
+    void readRow(int i, float[] dst) {
+        FloatBuffer buffer = page(i).duplicate();
+        buffer.position(offset(i));
+        buffer.get(dst, 0, n);
+    }
+
+    @Override
+    public float dotRow(Vector vector, int i) {
+        validateMIndex(i);
+        validateNVector(vector);
+        float[] vec = vector.data();
+        FloatBuffer buffer = page(i);
+        int offset = offset(i);
+        float d = 0;
+        for (int j = 0; j < n; j++) {
+            d += buffer.get(offset + j) * vec[j];
+        }
+        if (Float.isNaN(d)) {
+            throw new IllegalStateException("Encountered NaN.");
+        }
+        return d;
+    }
+
+    @Override
+    void dotRows(Matrix batch, float[] out) {
+        dotRowsByVectors(batch, out);
+    }
+
+    @Override
+    void addRowWithGradient(Vector vector, Vector grad, int i, float factor) {
+        addToVector(grad, i, factor);
+        addRow(vector, i, factor);
+    }
+
+    @Override
+    void addToVector(Vector x, int i, float factor) {
+        float[] vec = x.data();
+        FloatBuffer buffer = page(i);
+        int offset = offset(i);
+        for (int j = 0; j < n; j++) {
+            vec[j] += factor * buffer.get(offset + j);
+        }
+    }
+
+    @Override
+    float l2NormRow(int i) {
+        FloatBuffer buffer = page(i);
+        int offset = offset(i);
+        float norm = 0;
+        for (int j = offset; j < offset + n; j++) {
+            float v = buffer.get(j);
+            norm += v * v;
+        }
+        if (Float.isNaN(norm)) {
+            throw new IllegalStateException("Encountered NaN.");
+        }
+        return (float) FastMath.sqrt(norm);
+    }
+
+    @Override
+    void save(FTOutputStream out) throws IOException {
+        out.writeLong(m);
+        out.writeLong(n);
+        float[] row = new float[n];
+        for (int i = 0; i < m; i++) {
+            readRow(i, row);
+            out.writeFloats(row, 0, n);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[m=%d, n=%d, pages=%d]", getClass().getSimpleName(), m, n, pages.length);
+    }
+}
@@ -0,0 +1,155 @@
+package cc.fasttext;
+
+import org.apache.commons.lang.Validate;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * The parallelism model for whole-matrix operations (e.g. {@link Matrix#l2NormRow()}, word vectors precomputing, nearest neighbors search).
+ * Such an operation is split into blocks of rows, each block is processed by a single task in the dedicated {@link ForkJoinPool}.
+ * Per-element operations (dot products, vector updates, softmax etc) are always sequential:
+ * they are called from the training threads and must not compete with them for cpu.
+ * <p>
+ * System properties:
+ * <ul>
+ * <li>{@code parallel} - true to enable parallel computations, the default is true</li>
+ * <li>{@code parallel.threads} - the size of pool, the default is the number of available processors</li>
+ * <li>{@code parallel.block.size} - the min number of rows processed by a single task, the default is 1024</li>
+ * </ul>
+ * The pool is created lazily on first demand; its threads are daemons.
+ */
+final class Parallel {
+    static final int THREADS = Integer.parseInt(System.getProperty("parallel.threads",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+    static final int ROW_BLOCK_SIZE = Integer.parseInt(System.getProperty("parallel.block.size", "1024"));
+
+    private Parallel() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Answers {@code true} if the range of the given size should be split into several tasks.
+     *
+     * @param size int, number of rows
+     * @return boolean
+     */
+    static boolean isParallel(int size) {
+        return FastText.USE_PARALLEL_COMPUTATION && THREADS > 1 && size > ROW_BLOCK_SIZE;
+    }
+
+    /**
+     * Returns the pool for whole-matrix operations.
+     *
+     * @return {@link ForkJoinPool}
+     */
+    static ForkJoinPool pool() {
+        return PoolHolder.POOL;
+    }
+
+    /**
+     * Performs the operation for each row index from the range {@code [from, to)}.
+     * The operation must be safe to be called concurrently for different rows.
+     *
+     * @param from int, inclusive
+     * @param to   int, exclusive
+     * @param op   {@link IntConsumer} to process a single row
+     */
+    static void forEachRow(int from, int to, IntConsumer op) {
+        if (!isParallel(to - from)) {
+            for (int i = from; i < to; i++) {
+                op.accept(i);
+            }
+            return;
+        }
+        pool().invoke(new BlockTask(from, to, ROW_BLOCK_SIZE, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                op.accept(i);
+            }
+        }));
+    }
+
+    /**
+     * Splits the range {@code [from, to)} into blocks of at most {@code blockSize} indexes
+     * and performs the operation for each of them.
+     * Unlike {@link #forEachRow(int, int, IntConsumer)} it is intended for the operations which share some state
+     * (e.g. buffers) between the rows of a block, so the block size is chosen by the caller.
+     * The operation must be safe to be called concurrently for different blocks.
+     *
+     * @param from      int, inclusive
+     * @param to        int, exclusive
+     * @param blockSize int, positive
+     * @param op        {@link RangeConsumer} to process a single block
+     */
+    static void forEachBlock(int from, int to, int blockSize, RangeConsumer op) {
+        Validate.isTrue(blockSize > 0, "Not positive block size: " + blockSize);
+        if (!FastText.USE_PARALLEL_COMPUTATION || THREADS <= 1 || to - from <= blockSize) {
+            for (int start = from; start < to; start += blockSize) {
+                op.accept(start, Math.min(to, start + blockSize));
+            }
+            return;
+        }
+        pool().invoke(new BlockTask(from, to, blockSize, op));
+    }
+
+    /**
+     * Runs the given computation inside the pool.
+     * Can be used to restrict parallel streams with this pool instead of the common one.
+     *
+     * @param task {@link Supplier}
+     * @param <R>  type of result
+     * @return the result
+     */
+    static <R> R invoke(Supplier<R> task) {
+        if (!FastText.USE_PARALLEL_COMPUTATION) {
+            return task.get();
+        }
+        return pool().submit((Callable<R>) task::get).join();
+    }
+
+    /**
+     * An operation over the range of indexes {@code [from, to)}.
+     */
+    @FunctionalInterface
+    interface RangeConsumer {
+        void accept(int from, int to);
+    }
+
+    private static class BlockTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to, blockSize;
+        private final RangeConsumer op;
+
+        private BlockTask(int from, int to, int blockSize, RangeConsumer op) {
+            this.from = from;
+            this.to = to;
+            this.blockSize = blockSize;
+            this.op = op;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= blockSize) {
+                op.accept(from, to);
+                return;
+            }
+            // split on a block boundary, so all blocks except the last one are full:
+            int middle = from + ((to - from) / blockSize + 1) / 2 * blockSize;
+            invokeAll(new BlockTask(from, middle, blockSize, op), new BlockTask(middle, to, blockSize, op));
+        }
+    }
+
+    private static class PoolHolder {
+        private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(THREADS, 1), pool -> {
+            ForkJoinWorkerThread res = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            res.setName("FT-Parallel-" + res.getPoolIndex());
+            res.setDaemon(true);
+            return res;
+        }, null, false);
+    }
+}
@@ -0,0 +1,313 @@
+package cc.fasttext;
+
+import com.google.common.base.Throwables;
+import org.apache.commons.lang.Validate;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link CorpusReader} which reads and tokenizes the lines ahead in a dedicated thread,
+ * so the training thread does not wait for I/O (e.g. a cold page cache or a remote file system).
+ * <p>
+ * The lines are passed in batches of {@link #BATCH_LINES} through a bounded ring of reusable batches:
+ * the reader thread takes a free batch, fills it with the line ids and puts it to the queue of full batches,
+ * the training thread takes full batches and gives them back when they are read, so nothing is allocated in the steady state.
+ * The frequent words of unsupervised lines are discarded in the training thread,
+ * so the random generator is used exactly as without prefetching and the single-thread result is the same.
+ * <p>
+ * The {@link Stats statistics} show whether the ring is large enough:
+ * a non-zero trainer stall time means the reading is slower than the training,
+ * while the reader is always waiting for a free batch if the ring is bigger than needed.
+ * <p>
+ * The {@link #position() position} is tracked per batch: it is the source position before the current batch,
+ * or after it when the whole batch is read.
+ */
+final class PrefetchingCorpusReader implements CorpusReader {
+    static final int BATCH_LINES = 64;
+
+    private final CorpusReader source;
+    private final Dictionary dictionary;
+    private final boolean supervised;
+    private final int capacity;
+    private final BlockingQueue<Batch> full;
+    private final BlockingQueue<Batch> free;
+    private final Thread thread;
+    private final IntList ids = new IntList();
+    private final long initial;
+    private volatile boolean closed;
+    private volatile Throwable error;
+    private volatile long readerWaitNanos;
+
+    private Batch current;
+    private long batches;
+    private long depthSum;
+    private long stalls;
+    private long stallNanos;
+
+    /**
+     * Starts the reader thread.
+     *
+     * @param source     {@link CorpusReader} to read ahead, it is used by the reader thread only and closed with this reader
+     * @param dictionary {@link Dictionary} to discard the frequent words of unsupervised lines
+     * @param supervised boolean, true to read the lines for {@link Args.ModelName#SUP supervised} training
+     * @param capacity   int, the number of batches in the ring, positive
+     * @param name       String, the name of the reader thread
+     * @throws IOException if the source position can not be obtained
+     */
+    PrefetchingCorpusReader(CorpusReader source, Dictionary dictionary, boolean supervised, int capacity, String name) throws IOException {
+        Validate.isTrue(capacity > 0, "Not positive capacity");
+        this.source = Objects.requireNonNull(source, "Null source");
+        this.dictionary = Objects.requireNonNull(dictionary, "Null dictionary");
+        this.supervised = supervised;
+        this.capacity = capacity;
+        this.initial = source.position();
+        this.full = new ArrayBlockingQueue<>(capacity);
+        this.free = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            free.add(new Batch());
+        }
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The reader thread loop, the corpus is endless, so it works until {@link #close()}.
+     */
+    private void run() {
+        IntList words = new IntList(Dictionary.MAX_LINE_SIZE);
+        IntList labels = new IntList();
+        IntList ids = new IntList(Dictionary.MAX_LINE_SIZE);
+        long waitNanos = 0;
+        try {
+            while (!closed) {
+                Batch batch = free.poll();
+                if (batch == null) {
+                    long start = System.nanoTime();
+                    batch = free.take();
+                    readerWaitNanos = waitNanos += System.nanoTime() - start;
+                }
+                batch.clear();
+                batch.start = source.position();
+                for (int i = 0; i < BATCH_LINES; i++) {
+                    if (supervised) {
+                        int ntokens = source.getLine(words, labels);
+                        batch.data.add(ntokens);
+                        batch.data.add(words.size());
+                        batch.data.add(labels.size());
+                        batch.data.addAll(words);
+                        batch.data.addAll(labels);
+                    } else {
+                        source.getLineIds(ids);
+                        batch.data.add(ids.size());
+                        batch.data.addAll(ids);
+                    }
+                }
+                batch.end = source.position();
+                full.put(batch);
+            }
+        } catch (InterruptedException e) {
+            // closed
+        } catch (Throwable t) {
+            error = t;
+            // wakes up the training thread, the capacity is enough for all batches:
+            full.offer(Batch.FAILED);
+        }
+    }
+
+    /**
+     * Returns the current batch with at least one unread line, waits if there is no one.
+     *
+     * @return {@link Batch}
+     * @throws IOException if the reader thread failed or the waiting has been interrupted
+     */
+    private Batch batch() throws IOException {
+        if (current != null && current.cursor < current.data.size()) {
+            return current;
+        }
+        if (current != null) {
+            free.add(current);
+            current = null;
+        }
+        batches++;
+        depthSum += full.size();
+        Batch res = full.poll();
+        if (res == null) {
+            long start = System.nanoTime();
+            try {
+                res = full.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for lines");
+            }
+            stalls++;
+            stallNanos += System.nanoTime() - start;
+        }
+        if (res == Batch.FAILED) {
+            Throwables.throwIfInstanceOf(error, IOException.class);
+            Throwables.throwIfUnchecked(error);
+            throw new IOException("Can't read lines", error);
+        }
+        return current = res;
+    }
+
+    @Override
+    public int getLine(IntList words, IntList labels) throws IOException {
+        checkMode(true);
+        Batch batch = batch();
+        int ntokens = batch.next();
+        int nwords = batch.next();
+        int nlabels = batch.next();
+        batch.copy(words, nwords);
+        batch.copy(labels, nlabels);
+        return ntokens;
+    }
+
+    @Override
+    public int getLine(IntList words, RandomGenerator rng) throws IOException {
+        getLineIds(ids);
+        return dictionary.getLine(ids, words, rng);
+    }
+
+    @Override
+    public void getLineIds(IntList ids) throws IOException {
+        checkMode(false);
+        Batch batch = batch();
+        batch.copy(ids, batch.next());
+    }
+
+    @Override
+    public long position() {
+        if (current == null) {
+            return initial;
+        }
+        return current.cursor < current.data.size() ? current.start : current.end;
+    }
+
+    private void checkMode(boolean supervised) {
+        if (this.supervised != supervised) {
+            throw new IllegalStateException("The reader is created for " + (supervised ? "unsupervised" : "supervised") + " training");
+        }
+    }
+
+    /**
+     * Returns the current statistics, to be called from the training thread.
+     *
+     * @return {@link Stats}
+     */
+    Stats stats() {
+        return new Stats(capacity, batches, depthSum, stalls, stallNanos, readerWaitNanos);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        thread.interrupt();
+        try {
+            // the source must not be closed while it is being read:
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        source.close();
+    }
+
+    /**
+     * A bunch of lines, the format is the same as in the {@link CorpusCache}, but without compression:
+     * {@code ntokens, nwords, nlabels, word ids..., label ids...} for supervised lines and {@code n, ids...} for unsupervised.
+     */
+    private static class Batch {
+        private static final Batch FAILED = new Batch();
+
+        private final IntList data = new IntList(BATCH_LINES * 32);
+        private int cursor;
+        // the source positions before and after the lines:
+        private long start;
+        private long end;
+
+        private void clear() {
+            data.clear();
+            cursor = 0;
+        }
+
+        private int next() {
+            return data.get(cursor++);
+        }
+
+        private void copy(IntList to, int length) {
+            to.clear();
+            to.addAll(data.data(), cursor, length);
+            cursor += length;
+        }
+    }
+
+    /**
+     * The prefetching statistics of a single training thread.
+     */
+    static class Stats {
+        private final int capacity;
+        private final long batches;
+        private final long depthSum;
+        private final long stalls;
+        private final long stallNanos;
+        private final long readerWaitNanos;
+
+        private Stats(int capacity, long batches, long depthSum, long stalls, long stallNanos, long readerWaitNanos) {
+            this.capacity = capacity;
+            this.batches = batches;
+            this.depthSum = depthSum;
+            this.stalls = stalls;
+            this.stallNanos = stallNanos;
+            this.readerWaitNanos = readerWaitNanos;
+        }
+
+        /**
+         * Returns the average number of ready batches seen by the training thread when it needs the next one.
+         *
+         * @return double, from 0 to the capacity
+         */
+        double averageDepth() {
+            return batches == 0 ? 0 : (double) depthSum / batches;
+        }
+
+        /**
+         * Returns the number of times the training thread waited for lines.
+         *
+         * @return long
+         */
+        long stalls() {
+            return stalls;
+        }
+
+        /**
+         * Returns the total time the training thread waited for lines.
+         *
+         * @return long, milliseconds
+         */
+        long stallMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(stallNanos);
+        }
+
+        /**
+         * Returns the total time the reader thread waited for a free batch.
+         *
+         * @return long, milliseconds
+         */
+        long readerWaitMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(readerWaitNanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH, "queue depth %.1f of %d, %d batches, trainer stalls %d (%d ms), reader waits %d ms",
+                    averageDepth(), capacity, batches, stalls, stallMillis(), readerWaitMillis());
+        }
+    }
+}
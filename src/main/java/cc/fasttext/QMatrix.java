@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.function.IntFunction;
 
+import org.apache.commons.lang.Validate;
 import org.apache.commons.math3.random.RandomGenerator;
 
 import cc.fasttext.io.FTInputStream;
@@ -50,6 +51,9 @@ public class QMatrix extends Matrix {
      * @param qnorm
      */
     public QMatrix(Matrix matrix, IntFunction<RandomGenerator> randomProvider, int dsub, boolean qnorm) {
+        // the product quantizer works with the whole matrix as a single array:
+        Validate.isTrue((long) matrix.m * matrix.n <= Matrix.MAX_ARRAY_SIZE,
+                "Too large matrix to quantize: " + matrix.m + "x" + matrix.n + ", reduce the number of rows with cutoff");
         this.qnorm_ = qnorm;
         this.m = matrix.m;
         this.n = matrix.n;
@@ -191,11 +195,26 @@ public class QMatrix extends Matrix {
         return pq_.mulCode(vector, codes_, i, norm);
     }
 
+    @Override
+    void dotRows(Matrix batch, float[] out) {
+        dotRowsByVectors(batch, out);
+    }
+
     @Override
     public void addRow(Vector vector, int index, float factor) {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    void addToVector(Vector x, int i, float factor) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    void addRowWithGradient(Vector vector, Vector grad, int i, float factor) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void multiplyRow(Vector vector) {
         throw new UnsupportedOperationException();
@@ -0,0 +1,266 @@
+package cc.fasttext;
+
+import org.apache.commons.lang.Validate;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A bounded min-heap of primitive {@code (float score, int id)} pairs, used to select the k best results
+ * (e.g. the most probable labels in {@link Model#predict(IntList, int, Vector, Vector, ScoreHeap)}).
+ * It is the analogue of c++ {@code std::vector<std::pair<real, int32_t>>} with {@code std::push_heap}/{@code std::pop_heap} calls,
+ * but without boxing and allocations: the instance can be reused through the {@link #reset(int)} method.
+ * <p>
+ * The pair with the lowest score is on the top; if the scores are equal the pair with the lower id is considered as lower.
+ * When the heap is full a new pair replaces the top only if it is greater.
+ * The heap can also have a threshold: the pairs with a lower score are never accepted (see {@link #reset(int, float)}).
+ * After {@link #sort()} the pairs are ordered from the best (the highest score) to the worst
+ * and are available through {@link #score(int)} and {@link #id(int)}.
+ * Not thread-safe.
+ */
+public final class ScoreHeap {
+    private float[] scores;
+    private int[] ids;
+    private int capacity;
+    private int size;
+    private boolean sorted;
+    private float threshold = Float.NEGATIVE_INFINITY;
+
+    public ScoreHeap(int capacity) {
+        Validate.isTrue(capacity > 0, "Not positive capacity: " + capacity);
+        this.capacity = capacity;
+        this.scores = new float[capacity];
+        this.ids = new int[capacity];
+    }
+
+    /**
+     * Clears the heap and sets a new capacity.
+     * The internal arrays are reallocated only if they are too small.
+     *
+     * @param capacity int, positive
+     * @return this instance
+     */
+    public ScoreHeap reset(int capacity) {
+        return reset(capacity, Float.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Clears the heap and sets a new capacity and a new threshold.
+     *
+     * @param capacity  int, positive
+     * @param threshold float, the min score to accept, {@link Float#NEGATIVE_INFINITY} to accept any
+     * @return this instance
+     */
+    public ScoreHeap reset(int capacity, float threshold) {
+        Validate.isTrue(capacity > 0, "Not positive capacity: " + capacity);
+        Validate.isTrue(!Float.isNaN(threshold), "NaN threshold");
+        if (capacity > scores.length) {
+            scores = new float[capacity];
+            ids = new int[capacity];
+        }
+        this.capacity = capacity;
+        this.threshold = threshold;
+        clear();
+        return this;
+    }
+
+    /**
+     * @return float, the min score to accept
+     */
+    public float threshold() {
+        return threshold;
+    }
+
+    public void clear() {
+        size = 0;
+        sorted = false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Returns the lowest score in the heap.
+     *
+     * @return float
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public float minScore() throws NoSuchElementException {
+        checkNotSorted();
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return scores[0];
+    }
+
+    /**
+     * Answers {@code true} if the given score would be rejected: it is below the threshold or the heap is full.
+     * Equivalent to the c++ {@code heap.size() == k && score < heap.front().first}, if there is no threshold.
+     *
+     * @param score float
+     * @return boolean
+     */
+    public boolean rejects(float score) {
+        return score < threshold || (size == capacity && score < minScore());
+    }
+
+    /**
+     * Adds a pair to the heap.
+     * If the heap is full the lowest pair is removed (it may be the given one).
+     * A pair with the score below the threshold is not added.
+     *
+     * @param score float
+     * @param id    int
+     * @return true if the pair has been added
+     */
+    public boolean offer(float score, int id) {
+        checkNotSorted();
+        if (score < threshold) {
+            return false;
+        }
+        if (size < capacity) {
+            int i = size++;
+            // sift up:
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!less(score, id, scores[parent], ids[parent])) {
+                    break;
+                }
+                scores[i] = scores[parent];
+                ids[i] = ids[parent];
+                i = parent;
+            }
+            scores[i] = score;
+            ids[i] = id;
+            return true;
+        }
+        if (!less(scores[0], ids[0], score, id)) {
+            return false;
+        }
+        siftDown(0, score, id, size);
+        return true;
+    }
+
+    private void siftDown(int i, float score, int id, int size) {
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && less(scores[right], ids[right], scores[child], ids[child])) {
+                child = right;
+            }
+            if (!less(scores[child], ids[child], score, id)) {
+                break;
+            }
+            scores[i] = scores[child];
+            ids[i] = ids[child];
+            i = child;
+        }
+        scores[i] = score;
+        ids[i] = id;
+    }
+
+    private static boolean less(float leftScore, int leftId, float rightScore, int rightId) {
+        return leftScore < rightScore || (leftScore == rightScore && leftId < rightId);
+    }
+
+    /**
+     * Sorts the pairs in place, from the best to the worst (see c++ {@code std::sort_heap}).
+     * After this the heap can't accept new pairs until {@link #clear()} or {@link #reset(int)} is called.
+     *
+     * @return this instance
+     */
+    public ScoreHeap sort() {
+        if (sorted) {
+            return this;
+        }
+        for (int last = size - 1; last > 0; last--) {
+            float score = scores[last];
+            int id = ids[last];
+            scores[last] = scores[0];
+            ids[last] = ids[0];
+            siftDown(0, score, id, last);
+        }
+        sorted = true;
+        return this;
+    }
+
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Returns the score at the position.
+     * The order is defined by the {@link #sort()} method, for an unsorted heap it is the heap order.
+     *
+     * @param i int, the position
+     * @return float
+     */
+    public float score(int i) {
+        checkIndex(i);
+        return scores[i];
+    }
+
+    /**
+     * Returns the id at the position.
+     *
+     * @param i int, the position
+     * @return int
+     * @see #score(int)
+     */
+    public int id(int i) {
+        checkIndex(i);
+        return ids[i];
+    }
+
+    /**
+     * Answers {@code true} if the heap contains the id.
+     *
+     * @param id int
+     * @return boolean
+     */
+    public boolean containsId(int id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size);
+        }
+    }
+
+    private void checkNotSorted() {
+        if (sorted) {
+            throw new IllegalStateException("The heap is sorted");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder res = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i != 0) {
+                res.append(", ");
+            }
+            res.append(ids[i]).append('=').append(scores[i]);
+        }
+        return res.append(']').toString();
+    }
+}
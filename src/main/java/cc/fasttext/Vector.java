@@ -10,7 +10,6 @@ import java.util.List;
 import java.util.Objects;
 import java.util.function.DoubleUnaryOperator;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * See <a href='https://github.com/facebookresearch/fastText/blob/master/src/vector.cc'>vector.cc</a> &
@@ -18,9 +17,6 @@ import java.util.stream.IntStream;
  */
 public class Vector {
 
-    private static final int PARALLEL_SIZE_THRESHOLD = Integer.parseInt(System.getProperty("parallel.vector.threshold",
-            String.valueOf(FastText.PARALLEL_THRESHOLD_FACTOR * 100)));
-
     private float[] data;
 
     public Vector(int size) {
@@ -62,7 +58,7 @@ public class Vector {
     }
 
     public void clear() {
-        data = new float[data.length];
+        Arrays.fill(data, 0);
     }
 
     /**
@@ -78,14 +74,9 @@ public class Vector {
      * @return float
      */
     public float norm() {
-        double sum;
-        if (FastText.USE_PARALLEL_COMPUTATION && size() > PARALLEL_SIZE_THRESHOLD) {
-            sum = IntStream.range(0, size()).parallel().mapToDouble(i -> data[i] * data[i]).sum();
-        } else {
-            sum = 0;
-            for (int i = 0; i < size(); i++) {
-                sum += data[i] * data[i];
-            }
+        double sum = 0;
+        for (int i = 0; i < data.length; i++) {
+            sum += data[i] * data[i];
         }
         return (float) FastMath.sqrt(sum);
     }
@@ -118,12 +109,9 @@ public class Vector {
      */
     public void addVector(Vector source, float s) {
         Validate.isTrue(size() == Objects.requireNonNull(source, "Null source vector").size(), "Wrong size of vector: " + size() + "!=" + source.size());
-        if (FastText.USE_PARALLEL_COMPUTATION && size() > PARALLEL_SIZE_THRESHOLD) {
-            IntStream.range(0, size()).parallel().forEach(i -> data[i] += s * source.data[i]);
-            return;
-        }
-        for (int i = 0; i < size(); i++) {
-            data[i] += s * source.data[i];
+        float[] src = source.data;
+        for (int i = 0; i < data.length; i++) {
+            data[i] += s * src[i];
         }
     }
 
@@ -138,11 +126,7 @@ public class Vector {
      * @param a float
      */
     public void mul(float a) {
-        if (FastText.USE_PARALLEL_COMPUTATION && size() > PARALLEL_SIZE_THRESHOLD) {
-            IntStream.range(0, size()).parallel().forEach(i -> data[i] *= a);
-            return;
-        }
-        for (int i = 0; i < size(); i++) {
+        for (int i = 0; i < data.length; i++) {
             data[i] *= a;
         }
     }
@@ -169,13 +153,7 @@ public class Vector {
             addQRow((QMatrix) matrix, index);
             return;
         }
-        if (FastText.USE_PARALLEL_COMPUTATION && matrix.getN() > PARALLEL_SIZE_THRESHOLD) {
-            IntStream.range(0, matrix.getN()).parallel().forEach(j -> data[j] += matrix.at(index, j));
-            return;
-        }
-        for (int j = 0; j < matrix.getN(); j++) {
-            data[j] += matrix.at(index, j);
-        }
+        matrix.addToVector(this, index, 1);
     }
 
     /**
@@ -213,13 +191,7 @@ public class Vector {
     public void addRow(Matrix matrix, int index, float factor) {
         Validate.isTrue(index >= 0 && index < matrix.getM(), "Incompatible index (" + index + ") and matrix m-size (" + matrix.getM() + ")");
         Validate.isTrue(size() == matrix.getN(), "Wrong matrix n-size: " + size() + " != " + matrix.getN());
-        if (FastText.USE_PARALLEL_COMPUTATION && matrix.getN() > PARALLEL_SIZE_THRESHOLD) {
-            IntStream.range(0, matrix.getN()).parallel().forEach(j -> data[j] += factor * matrix.at(index, j));
-            return;
-        }
-        for (int j = 0; j < matrix.getN(); j++) {
-            data[j] += factor * matrix.at(index, j);
-        }
+        matrix.addToVector(this, index, factor);
     }
 
     /**
@@ -238,11 +210,7 @@ public class Vector {
     public void mul(Matrix matrix, Vector vector) {
         Validate.isTrue(matrix.getM() == size(), "Wrong matrix m-size: " + size() + " != " + matrix.getM());
         Validate.isTrue(matrix.getN() == vector.size(), "Matrix n-size (" + matrix.getN() + ") and vector size (" + vector.size() + ")  are not equal.");
-        if (FastText.USE_PARALLEL_COMPUTATION && size() > PARALLEL_SIZE_THRESHOLD) {
-            IntStream.range(0, size()).parallel().forEach(i -> data[i] = matrix.dotRow(vector, i));
-            return;
-        }
-        for (int i = 0; i < size(); i++) {
+        for (int i = 0; i < data.length; i++) {
             data[i] = matrix.dotRow(vector, i);
         }
     }
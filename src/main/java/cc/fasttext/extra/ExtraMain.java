@@ -4,7 +4,9 @@ import cc.fasttext.Main;
 import cc.fasttext.extra.io.HadoopIOStreams;
 import cc.fasttext.io.IOStreams;
 import cc.fasttext.io.ScrollableInputStream;
+import cc.fasttext.io.impl.GzipIOStreams;
 import cc.fasttext.io.impl.LocalIOStreams;
+import com.google.common.io.ByteStreams;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.slf4j.Logger;
@@ -14,9 +16,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Paths;
 import java.util.AbstractMap;
@@ -36,7 +40,7 @@ import java.util.stream.Stream;
 public class ExtraMain {
     private static final Logger LOGGER = LoggerFactory.getLogger(ExtraMain.class);
 
-    private static final IOStreams DEFAULT_FS = new CombinedIOStreams(ExtraMain::createFS);
+    private static final IOStreams DEFAULT_FS = new CombinedIOStreams(uri -> new GzipIOStreams(createFS(uri)));
 
     public static final Map<String, String> DEBUG_HADOOP_SETTINGS = Stream.of(
             pair("io.file.buffer.size", 50 * 1024),
@@ -192,6 +196,16 @@ public class ExtraMain {
             return chooseFS(uri).size(uri);
         }
 
+        @Override
+        public boolean canReadRange(String uri) {
+            return chooseFS(uri).canReadRange(uri);
+        }
+
+        @Override
+        public InputStream openRange(String uri, long offset) throws IOException, UnsupportedOperationException {
+            return chooseFS(uri).openRange(uri, offset);
+        }
+
         private IOStreams chooseFS(String uri) {
             return map.computeIfAbsent(getRoot(uri), provider);
         }
@@ -223,5 +237,43 @@ public class ExtraMain {
             return false;
         }
 
+        @Override
+        public boolean canReadRange(String uri) {
+            String scheme = IOStreams.toURI(uri).getScheme();
+            return "http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme);
+        }
+
+        @Override
+        public InputStream openRange(String uri, long offset) throws IOException {
+            URLConnection conn = IOStreams.toURI(uri).toURL().openConnection();
+            if (offset > 0) {
+                conn.setRequestProperty("Range", "bytes=" + offset + "-");
+            }
+            InputStream res = conn.getInputStream();
+            if (offset > 0 && !(conn instanceof HttpURLConnection && ((HttpURLConnection) conn).getResponseCode() == HttpURLConnection.HTTP_PARTIAL)) {
+                // the server ignores the range and sends the whole file:
+                ByteStreams.skipFully(res, offset);
+            }
+            return res;
+        }
+
+        @Override
+        public long size(String uri) throws IOException {
+            URLConnection conn = IOStreams.toURI(uri).toURL().openConnection();
+            if (conn instanceof HttpURLConnection) {
+                ((HttpURLConnection) conn).setRequestMethod("HEAD");
+            }
+            long res = conn.getContentLengthLong();
+            if (conn instanceof HttpURLConnection) {
+                ((HttpURLConnection) conn).disconnect();
+            }
+            if (res >= 0) {
+                return res;
+            }
+            // no Content-Length header, count the bytes:
+            try (InputStream in = openInput(uri)) {
+                return ByteStreams.exhaust(in);
+            }
+        }
     }
 }
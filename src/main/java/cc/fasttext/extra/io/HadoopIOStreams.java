@@ -2,6 +2,7 @@ package cc.fasttext.extra.io;
 
 import cc.fasttext.io.IOStreams;
 import cc.fasttext.io.ScrollableInputStream;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 
@@ -35,6 +36,23 @@ public class HadoopIOStreams implements IOStreams {
         return new HadoopInputStream(fs, toPath(uri));
     }
 
+    @Override
+    public boolean canReadRange(String uri) {
+        return true;
+    }
+
+    @Override
+    public InputStream openRange(String uri, long offset) throws IOException {
+        FSDataInputStream res = fs.open(toPath(uri));
+        try {
+            res.seek(offset);
+        } catch (IOException | RuntimeException e) {
+            res.close();
+            throw e;
+        }
+        return res;
+    }
+
     @Override
     public long size(String uri) throws IOException {
         return fs.getFileStatus(toPath(uri)).getLen();
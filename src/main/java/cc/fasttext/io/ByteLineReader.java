@@ -0,0 +1,103 @@
+package cc.fasttext.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The buffered reader which splits any binary {@link InputStream input stream} into lines of raw bytes,
+ * without decoding them, so the lines can be parsed later by other threads.
+ * The line separator is kept at the end of the line (if present), so a line is parsed exactly as a part of the whole stream
+ * (e.g. {@link cc.fasttext.Dictionary} reads it as the EOS token).
+ * Not thread-safe.
+ */
+public class ByteLineReader implements Closeable {
+    private final InputStream in;
+    private final byte newLine;
+    private final byte[] buffer;
+    private int index;
+    private int res;
+    private byte[] line = new byte[128];
+
+    /**
+     * The main constructor.
+     *
+     * @param in         {@link InputStream} the input stream to wrap
+     * @param bufferSize the size of buffer
+     * @param newLine    byte, the line separator (e.g. '\n')
+     */
+    public ByteLineReader(InputStream in, int bufferSize, byte newLine) {
+        this.in = Objects.requireNonNull(in, "Null input stream");
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive number");
+        }
+        this.buffer = new byte[bufferSize];
+        this.newLine = newLine;
+    }
+
+    /**
+     * Reads the next line.
+     * The last line is returned even if it is not terminated by the separator,
+     * but the empty tail after the last separator is not considered as a line.
+     *
+     * @return array of bytes or null in case of stream end
+     * @throws IOException if some I/O error occurs
+     */
+    public byte[] nextLine() throws IOException {
+        int len = 0;
+        boolean found = false;
+        while (true) {
+            if (index == res) {
+                res = in.read(buffer, 0, buffer.length);
+                index = 0;
+                if (res == -1) {
+                    res = 0;
+                    return found ? Arrays.copyOf(line, len) : null;
+                }
+            }
+            found = true;
+            int start = index;
+            while (index < res && buffer[index] != newLine) {
+                index++;
+            }
+            boolean eol = index < res;
+            if (eol) {
+                index++;
+            }
+            int size = index - start;
+            if (len + size > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, len + size));
+            }
+            System.arraycopy(buffer, start, line, len, size);
+            len += size;
+            if (eol) {
+                return Arrays.copyOf(line, len);
+            }
+        }
+    }
+
+    /**
+     * Reads the next lines.
+     *
+     * @param max int, the max number of lines to read
+     * @return List of lines, empty in case of stream end
+     * @throws IOException if some I/O error occurs
+     */
+    public List<byte[]> nextLines(int max) throws IOException {
+        List<byte[]> res = new ArrayList<>(max);
+        byte[] line;
+        while (res.size() < max && (line = nextLine()) != null) {
+            res.add(line);
+        }
+        return res;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
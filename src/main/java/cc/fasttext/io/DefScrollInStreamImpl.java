@@ -2,51 +2,150 @@ package cc.fasttext.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 
 /**
  * Internal, the part of {@link IOStreams}.
  * Default implementation of {@link ScrollableInputStream}.
  * <p>
+ * The data is read by blocks of {@link #BLOCK_SIZE} bytes, the last {@link #CACHE_BLOCKS} blocks are kept in memory,
+ * so the seeks near the current position do not touch the file system at all.
+ * If the file system {@link IOStreams#canReadRange(String) supports} range reading, a seek to a remote block
+ * just reopens the stream from that block and the length is taken from {@link IOStreams#size(String)}.
+ * Otherwise a backward seek reopens the stream from the start and skips the bytes,
+ * and the length is calculated by reading the whole file (once).
+ * <p>
  * Created by @szuev on 27.12.2017.
  */
 class DefScrollInStreamImpl extends ScrollableInputStream {
-    private static final int BUFF_SIZE = 8 * 1024;
+    static final int BLOCK_SIZE = 64 * 1024;
+    static final int CACHE_BLOCKS = 16;
+    private static final byte[] EMPTY = new byte[0];
 
     private final IOStreams fs;
     private final String uri;
+    private final boolean ranged;
+    private final Map<Long, byte[]> cache = new LinkedHashMap<Long, byte[]>(CACHE_BLOCKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > CACHE_BLOCKS;
+        }
+    };
 
     private long size = -1;
     private long position;
+    // the underlying stream and its own position, it is always at a block boundary or at the end of file:
     private InputStream in;
+    private long inPosition;
 
     DefScrollInStreamImpl(String uri, IOStreams fs) {
         this.fs = Objects.requireNonNull(fs, "Null fs");
         this.uri = Objects.requireNonNull(uri, "Null uri");
+        this.ranged = fs.canReadRange(uri);
     }
 
-    private InputStream open() throws IOException {
-        return fs.openInput(uri);
+    /**
+     * Returns the block with the given index, reads it if it is not cached.
+     *
+     * @param index long, the block number
+     * @return array of bytes, its length is less than {@link #BLOCK_SIZE} only for the last block and empty past the end
+     * @throws IOException if an I/O error occurs
+     */
+    private byte[] block(long index) throws IOException {
+        byte[] res = cache.get(index);
+        if (res != null) {
+            return res;
+        }
+        long start = index * BLOCK_SIZE;
+        if (ranged) { // the range past the end of file can't be requested
+            getLen();
+        }
+        if (size != -1 && start >= size) {
+            return EMPTY;
+        }
+        moveTo(start);
+        if (inPosition < start) { // the end of file has been reached while skipping
+            size = inPosition;
+            return EMPTY;
+        }
+        byte[] buff = new byte[BLOCK_SIZE];
+        int length = 0;
+        int n;
+        while (length < BLOCK_SIZE && (n = in.read(buff, length, BLOCK_SIZE - length)) != -1) {
+            length += n;
+        }
+        inPosition += length;
+        if (length < BLOCK_SIZE) {
+            size = start + length;
+        }
+        res = length == BLOCK_SIZE ? buff : length == 0 ? EMPTY : Arrays.copyOf(buff, length);
+        cache.put(index, res);
+        return res;
     }
 
-    private InputStream fetch() throws IOException {
-        return in == null ? in = open() : in;
+    /**
+     * Positions the underlying stream.
+     * A short forward move is done by skipping, otherwise the stream is reopened.
+     *
+     * @param start long, the position to read from, the result position is less only if the file is shorter
+     * @throws IOException if an I/O error occurs
+     */
+    private void moveTo(long start) throws IOException {
+        if (in != null && start >= inPosition && (!ranged || start - inPosition <= (long) CACHE_BLOCKS * BLOCK_SIZE)) {
+            inPosition += skip(in, start - inPosition);
+            return;
+        }
+        closeInput();
+        if (ranged) {
+            in = fs.openRange(uri, start);
+            inPosition = start;
+            return;
+        }
+        in = fs.openInput(uri);
+        inPosition = skip(in, start);
     }
 
-    private synchronized void clear() {
-        in = null;
-        position = 0;
+    private static long skip(InputStream in, long bytes) throws IOException {
+        long res = 0;
+        while (res < bytes) {
+            long n = in.skip(bytes - res);
+            if (n <= 0) {
+                // skip may return 0 before the end of stream, the read is decisive:
+                if (in.read() == -1) {
+                    break;
+                }
+                n = 1;
+            }
+            res += n;
+        }
+        return res;
+    }
+
+    private void closeInput() throws IOException {
+        if (in == null) return;
+        try {
+            in.close();
+        } finally {
+            in = null;
+        }
     }
 
     @Override
     public synchronized void seek(long bytes) throws IOException {
-        if (in != null && bytes >= position) {
-            long x = bytes - position;
-            position += in.skip(x);
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Negative position: " + bytes);
+        }
+        position = bytes;
+        if (bytes == 0) {
             return;
         }
-        clear();
-        position = fetch().skip(bytes);
+        // can't seek past the end of the file, the size is always known after reading an incomplete block:
+        long index = bytes / BLOCK_SIZE;
+        byte[] block = block(index);
+        position = Math.min(bytes, block.length == 0 ? size : index * BLOCK_SIZE + block.length);
     }
 
     @Override
@@ -59,8 +158,11 @@ class DefScrollInStreamImpl extends ScrollableInputStream {
         if (size != -1) return size;
         synchronized (this) {
             if (size != -1) return size;
-            byte[] tmp = new byte[BUFF_SIZE];
-            try (InputStream in = open()) {
+            if (ranged) {
+                return size = fs.size(uri);
+            }
+            byte[] tmp = new byte[BLOCK_SIZE];
+            try (InputStream in = fs.openInput(uri)) {
                 long size = 0;
                 int res;
                 while ((res = in.read(tmp)) != -1) {
@@ -73,18 +175,46 @@ class DefScrollInStreamImpl extends ScrollableInputStream {
 
     @Override
     public synchronized int read() throws IOException {
-        int res = fetch().read();
-        if (res == -1) {
+        byte[] block = block(position / BLOCK_SIZE);
+        int offset = (int) (position % BLOCK_SIZE);
+        if (offset >= block.length) {
             return -1;
         }
         position++;
-        return res;
+        return block[offset] & 0xFF;
     }
 
+    @SuppressWarnings("NullableProblems")
     @Override
-    public void close() throws IOException {
-        if (in != null) in.close();
-        clear();
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+        Objects.requireNonNull(b, "Null buff");
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        // fills the whole array if possible: a short read is taken for the end of stream by WordReader
+        int res = 0;
+        while (res < len) {
+            byte[] block = block(position / BLOCK_SIZE);
+            int offset = (int) (position % BLOCK_SIZE);
+            if (offset >= block.length) {
+                break;
+            }
+            int n = Math.min(len - res, block.length - offset);
+            System.arraycopy(block, offset, b, off + res, n);
+            position += n;
+            res += n;
+        }
+        return res == 0 ? -1 : res;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        cache.clear();
+        position = 0;
+        closeInput();
     }
 
 }
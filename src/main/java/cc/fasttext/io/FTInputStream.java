@@ -3,6 +3,9 @@ package cc.fasttext.io;
 import com.google.common.io.LittleEndianDataInputStream;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
@@ -79,6 +82,28 @@ public class FTInputStream extends FilterInputStream {
         return in().readDouble();
     }
 
+    /**
+     * Reads the specified number of floats into the array.
+     * The data is read in big chunks, which is much faster than calling {@link #readFloat()} for each element.
+     *
+     * @param array  float[] to fill
+     * @param offset int, the start offset in the array
+     * @param length int, the number of floats to read
+     * @throws IOException if an I/O error occurs
+     */
+    public void readFloats(float[] array, int offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(length, FTOutputStream.FLOATS_CHUNK_SIZE) * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        FloatBuffer floats = buffer.asFloatBuffer();
+        for (int i = offset, end = offset + length; i < end; ) {
+            int count = Math.min(floats.capacity(), end - i);
+            in().readFully(buffer.array(), 0, count * Float.BYTES);
+            floats.clear();
+            floats.get(array, i, count);
+            i += count;
+        }
+    }
+
     /**
      * Reads an array of bytes from input stream till specified end character
      *
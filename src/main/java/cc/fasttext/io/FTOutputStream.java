@@ -6,6 +6,9 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.charset.Charset;
 import java.util.Objects;
 
@@ -19,6 +22,7 @@ import java.util.Objects;
  * Created by @szuev on 26.10.2017.
  */
 public class FTOutputStream extends FilterOutputStream {
+    static final int FLOATS_CHUNK_SIZE = 8 * 1024;
 
     public FTOutputStream(OutputStream out) {
         super(wrap(out));
@@ -66,6 +70,28 @@ public class FTOutputStream extends FilterOutputStream {
         out().writeShort(v);
     }
 
+    /**
+     * Writes the specified part of the float array.
+     * The data is written in big chunks, which is much faster than calling {@link #writeFloat(float)} for each element.
+     *
+     * @param array  float[] to write
+     * @param offset int, the start offset in the array
+     * @param length int, the number of floats to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeFloats(float[] array, int offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(length, FLOATS_CHUNK_SIZE) * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        FloatBuffer floats = buffer.asFloatBuffer();
+        for (int i = offset, end = offset + length; i < end; ) {
+            int count = Math.min(floats.capacity(), end - i);
+            floats.clear();
+            floats.put(array, i, count);
+            out.write(buffer.array(), 0, count * Float.BYTES);
+            i += count;
+        }
+    }
+
     @Override
     public void close() throws IOException {
         out.close();
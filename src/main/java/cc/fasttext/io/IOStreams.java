@@ -62,8 +62,38 @@ public interface IOStreams {
         return true;
     }
 
+    /**
+     * Checks that the file can be read starting from an arbitrary offset, see {@link #openRange(String, long)}.
+     * The file system which returns true must also retrieve the {@link #size(String) size} without reading the file.
+     * May access the file system.
+     *
+     * @param uri, the file URI
+     * @return true if {@link #openRange(String, long)} is supported for the file.
+     */
+    default boolean canReadRange(String uri) {
+        return false;
+    }
+
+    /**
+     * Opens a file, returning an input stream to read from the given offset up to the end of the file,
+     * e.g. using HTTP {@code Range} request or positioned read.
+     * This is an optional operation, see {@link #canReadRange(String)}.
+     * The stream will not be buffered.
+     *
+     * @param uri,   the file URI
+     * @param offset long, the start position in bytes, non-negative
+     * @return {@link InputStream} dependent on encapsulated file system.
+     * @throws IOException                   if something wrong, e.g. no file found.
+     * @throws UnsupportedOperationException if the file system can not read the file from the middle
+     */
+    default InputStream openRange(String uri, long offset) throws IOException, UnsupportedOperationException {
+        throw new UnsupportedOperationException("Range reading is not supported: " + uri);
+    }
+
     /**
      * Opens a file to read with seek supporting.
+     * The default implementation is a block-cached stream over {@link #openRange(String, long)}
+     * if it is {@link #canReadRange(String) supported}, otherwise over {@link #openInput(String)} with skipping.
      *
      * @param uri, the file URI
      * @return {@link ScrollableInputStream}
@@ -73,6 +103,30 @@ public interface IOStreams {
         return new DefScrollInStreamImpl(uri, this);
     }
 
+    /**
+     * Checks that the file can be renamed, see {@link #move(String, String)}.
+     *
+     * @param uri, the file URI
+     * @return true if {@link #move(String, String)} is supported for the file
+     */
+    default boolean canMove(String uri) {
+        return false;
+    }
+
+    /**
+     * Renames a file, replacing the target if it exists, atomically if the file system can do it.
+     * This is an optional operation (see {@link #canMove(String)}),
+     * it allows to write a file completely before it becomes visible under its name.
+     *
+     * @param from, the URI of existing file
+     * @param to,   the target URI
+     * @throws IOException                   if I/O error occurs
+     * @throws UnsupportedOperationException if the file system can not rename files
+     */
+    default void move(String from, String to) throws IOException, UnsupportedOperationException {
+        throw new UnsupportedOperationException("Renaming is not supported: " + from);
+    }
+
     /**
      * Retrieves the file size.
      * @param uri, the file URI
@@ -80,7 +134,9 @@ public interface IOStreams {
      * @throws IOException if I/O error occurs
      */
     default long size(String uri) throws IOException {
-        return openScrollable(uri).getLen();
+        try (ScrollableInputStream in = openScrollable(uri)) {
+            return in.getLen();
+        }
     }
 
     /**
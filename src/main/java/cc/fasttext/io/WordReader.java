@@ -23,13 +23,17 @@ public class WordReader implements Closeable {
     private final Charset charset;
     protected final InputStream in;
     private final String newLine;
+    private final byte[] newLineBytes;
     private final byte[] delimiters;
+    private final boolean[] delimiterTable = new boolean[256];
     private final byte[] buffer;
 
     private int index;
     private int res;
     private int start;
     private byte[] tmp;
+    private byte[] token = new byte[64];
+    private boolean lineEnd;
 
     /**
      * The main constructor.
@@ -52,6 +56,10 @@ public class WordReader implements Closeable {
             throw new IllegalArgumentException("No delimiters specified.");
         }
         this.delimiters = delimiters;
+        for (byte b : delimiters) {
+            delimiterTable[b & 0xFF] = true;
+        }
+        this.newLineBytes = newLine.getBytes(charset);
     }
 
     public WordReader(InputStream in, Charset charset, int bufferSize, String newLineSymbol, String delimiters) {
@@ -130,6 +138,66 @@ public class WordReader implements Closeable {
         return len == 0 ? null : makeString(len);
     }
 
+    /**
+     * Reads next word token from the underling input stream into the internal byte buffer, without decoding it.
+     * Unlike {@link #nextWord()} it does not create any objects, the token bytes are available through {@link #token()}
+     * until the next call.
+     * The line separator is returned as the encoded new line symbol, the same as {@link #nextWord()} does.
+     *
+     * @return int, the length of token in bytes or -1 in case of end of stream
+     * @throws IOException if some I/O error occurs
+     */
+    public int nextToken() throws IOException {
+        this.start = 0;
+        this.lineEnd = false;
+        int len = 0;
+        int b;
+        while ((b = nextByte()) != END) {
+            if (!isDelimiter(b)) {
+                if (len == token.length) {
+                    token = Arrays.copyOf(token, len * 2);
+                }
+                token[len++] = (byte) b;
+                continue;
+            }
+            if (len == 0) {
+                if (isNewLine(b)) {
+                    lineEnd = true;
+                    if (token.length < newLineBytes.length) {
+                        token = new byte[newLineBytes.length];
+                    }
+                    System.arraycopy(newLineBytes, 0, token, 0, newLineBytes.length);
+                    return newLineBytes.length;
+                }
+            } else {
+                if (isNewLine(b)) {
+                    --index;
+                }
+                return len;
+            }
+        }
+        return len == 0 ? -1 : len;
+    }
+
+    /**
+     * Returns the buffer with the bytes of the last token read by {@link #nextToken()}.
+     * The array is reused, its content is valid only until the next call.
+     *
+     * @return byte array, the token is in the range {@code [0, length)}
+     */
+    public byte[] token() {
+        return token;
+    }
+
+    /**
+     * Answers {@code true} if the last token read by {@link #nextToken()} is the line separator.
+     *
+     * @return boolean
+     */
+    public boolean isLineEnd() {
+        return lineEnd;
+    }
+
     /**
      * Resets the state variables.
      */
@@ -138,6 +206,15 @@ public class WordReader implements Closeable {
         tmp = null;
     }
 
+    /**
+     * Returns the number of bytes which have been read from the underlying stream into the buffer, but not consumed yet.
+     *
+     * @return int, not negative
+     */
+    protected int buffered() {
+        return res > 0 ? Math.max(0, res - index) : 0;
+    }
+
     /**
      * Answers if the end of stream is reached.
      *
@@ -148,10 +225,7 @@ public class WordReader implements Closeable {
     }
 
     protected boolean isDelimiter(int b) {
-        for (byte i : delimiters) {
-            if (b == i) return true;
-        }
-        return false;
+        return delimiterTable[b & 0xFF];
     }
 
     protected boolean isNewLine(int b) {
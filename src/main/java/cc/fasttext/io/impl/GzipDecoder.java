@@ -0,0 +1,283 @@
+package cc.fasttext.io.impl;
+
+import cc.fasttext.io.ScrollableInputStream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Internal, the decompressing stream for a sequence of gzip members (RFC 1952).
+ * Unlike {@link java.util.zip.GZIPInputStream} it does not depend on {@link InputStream#available()}
+ * to find the next member, and the {@link #read(byte[], int, int)} fills the whole array while there is data,
+ * since a short read is taken for the end of stream by {@link cc.fasttext.io.WordReader}.
+ * If the source stream is a {@link ScrollableInputStream}, the decoder can be moved to another member,
+ * see {@link #moveTo(long)}.
+ * Not thread-safe.
+ */
+class GzipDecoder extends InputStream {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private final InputStream raw;
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] single = new byte[1];
+    private int bufferPos;
+    private int bufferLimit;
+    // the position of the buffer start in the compressed stream:
+    private long bufferStart;
+    private boolean inMember;
+    private long memberOut;
+
+    /**
+     * @param raw {@link InputStream} of the compressed data, positioned at the start of a member
+     */
+    GzipDecoder(InputStream raw) {
+        this.raw = Objects.requireNonNull(raw, "Null raw stream");
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @SuppressWarnings("NullableProblems")
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.requireNonNull(b, "Null buff");
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        int res = 0;
+        while (res < len) {
+            if (!inMember && !startMember()) {
+                break;
+            }
+            int n = inflate(b, off + res, len - res);
+            if (n != -1) {
+                res += n;
+            }
+        }
+        return res == 0 ? -1 : res;
+    }
+
+    @Override
+    public void close() throws IOException {
+        release();
+        raw.close();
+    }
+
+    /**
+     * Releases the native resources, the source stream stays open.
+     */
+    void release() {
+        inflater.end();
+    }
+
+    /**
+     * Moves to the start of the member at the given compressed position.
+     *
+     * @param pos long
+     * @throws IOException                   if an I/O error occurs
+     * @throws UnsupportedOperationException if the source stream is not seekable
+     */
+    void moveTo(long pos) throws IOException, UnsupportedOperationException {
+        if (pos >= bufferStart && pos <= bufferStart + bufferLimit) {
+            bufferPos = (int) (pos - bufferStart);
+        } else {
+            if (!(raw instanceof ScrollableInputStream)) {
+                throw new UnsupportedOperationException("Encapsulated stream is not seekable.");
+            }
+            ((ScrollableInputStream) raw).seek(pos);
+            bufferStart = pos;
+            bufferPos = bufferLimit = 0;
+        }
+        inMember = false;
+    }
+
+    /**
+     * Returns the position in the compressed stream.
+     *
+     * @return long
+     */
+    long rawPos() {
+        return bufferStart + bufferPos;
+    }
+
+    /**
+     * Skips the whole next member.
+     * The BGZF block is skipped without decompression, its size is taken from the trailer.
+     *
+     * @param scratch array of bytes to decompress other members into
+     * @return long, the uncompressed size of member or -1 if there are no more members
+     * @throws IOException if an I/O error occurs or the format is wrong
+     */
+    long skipMember(byte[] scratch) throws IOException {
+        long start = rawPos();
+        int blockSize = readHeader();
+        if (blockSize == -1) {
+            return -1;
+        }
+        if (blockSize > 0) {
+            moveTo(start + blockSize + 1 - 4);
+            return readInt();
+        }
+        startInflater();
+        while (inflate(scratch, 0, scratch.length) != -1) ;
+        return memberOut;
+    }
+
+    private boolean fill() throws IOException {
+        bufferStart += bufferLimit;
+        bufferPos = bufferLimit = 0;
+        int n = raw.read(buffer, 0, buffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        bufferLimit = n;
+        return true;
+    }
+
+    private int readByte() throws IOException {
+        if (bufferPos == bufferLimit && !fill()) {
+            throw new EOFException("Unexpected end of gzip stream");
+        }
+        return buffer[bufferPos++] & 0xFF;
+    }
+
+    private int readShort() throws IOException {
+        return readByte() | readByte() << 8;
+    }
+
+    private long readInt() throws IOException {
+        return (readShort() | (long) readShort() << 16) & 0xffff_ffffL;
+    }
+
+    private void skipBytes(int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            readByte();
+        }
+    }
+
+    /**
+     * Reads the member header.
+     *
+     * @return int, -1 if there are no more members,
+     * the BGZF block size minus 1 if present (see SAM/BAM specification), otherwise 0
+     * @throws IOException if an I/O error occurs or the format is wrong
+     */
+    private int readHeader() throws IOException {
+        if (bufferPos == bufferLimit && !fill()) {
+            return -1;
+        }
+        if (readByte() != 0x1f || readByte() != 0x8b) {
+            throw new ZipException("Not in GZIP format");
+        }
+        if (readByte() != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+        int flags = readByte();
+        skipBytes(6); // MTIME, XFL, OS
+        int res = 0;
+        if ((flags & FEXTRA) != 0) {
+            int length = readShort();
+            while (length >= 4) {
+                int id1 = readByte();
+                int id2 = readByte();
+                int size = readShort();
+                length -= 4 + size;
+                if (id1 == 'B' && id2 == 'C' && size == 2) {
+                    res = readShort();
+                } else {
+                    skipBytes(size);
+                }
+            }
+            skipBytes(Math.max(0, length));
+        }
+        if ((flags & FNAME) != 0) {
+            while (readByte() != 0) ;
+        }
+        if ((flags & FCOMMENT) != 0) {
+            while (readByte() != 0) ;
+        }
+        if ((flags & FHCRC) != 0) {
+            skipBytes(2);
+        }
+        return res;
+    }
+
+    private boolean startMember() throws IOException {
+        if (readHeader() == -1) {
+            return false;
+        }
+        startInflater();
+        return true;
+    }
+
+    private void startInflater() {
+        inflater.reset();
+        crc.reset();
+        memberOut = 0;
+        inMember = true;
+    }
+
+    /**
+     * Decompresses the current member.
+     *
+     * @param b   array of bytes
+     * @param off int
+     * @param len int, positive
+     * @return int, the number of bytes, positive, or -1 if the member is over (the trailer is read and checked)
+     * @throws IOException if an I/O error occurs or the data is corrupted
+     */
+    private int inflate(byte[] b, int off, int len) throws IOException {
+        while (true) {
+            if (inflater.needsInput()) {
+                if (bufferPos == bufferLimit && !fill()) {
+                    throw new EOFException("Unexpected end of gzip stream");
+                }
+                inflater.setInput(buffer, bufferPos, bufferLimit - bufferPos);
+                bufferPos = bufferLimit;
+            }
+            int res;
+            try {
+                res = inflater.inflate(b, off, len);
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+            if (res > 0) {
+                crc.update(b, off, res);
+                memberOut += res;
+                return res;
+            }
+            if (inflater.finished()) {
+                bufferPos -= inflater.getRemaining();
+                readTrailer();
+                return -1;
+            }
+            if (inflater.needsDictionary()) {
+                throw new ZipException("Unexpected preset dictionary");
+            }
+        }
+    }
+
+    private void readTrailer() throws IOException {
+        inMember = false;
+        if (readInt() != crc.getValue() || readInt() != (memberOut & 0xffff_ffffL)) {
+            throw new ZipException("Corrupt GZIP trailer");
+        }
+    }
+}
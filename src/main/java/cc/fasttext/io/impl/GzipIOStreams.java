@@ -0,0 +1,119 @@
+package cc.fasttext.io.impl;
+
+import cc.fasttext.io.IOStreams;
+import cc.fasttext.io.ScrollableInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link IOStreams} decorator to read gzip-compressed files ({@code *.gz}, {@code *.bgz}) as plain ones.
+ * The {@link #size(String) size} is the uncompressed one, and the {@link #openScrollable(String) scrollable stream}
+ * is {@link GzipInputStream} over the {@link GzipInputStream.Index index} of the file members,
+ * so the training threads and the dictionary shards decompress their own parts of the file in parallel.
+ * The index is built once per file on the first request and then kept in memory, the file should not be changed.
+ * Any other files and all operations of writing go directly to the encapsulated file system.
+ * <p>
+ * Use bgzip (or concatenate the separately compressed chunks) to get a file which can be split between threads.
+ */
+public class GzipIOStreams implements IOStreams {
+    private final IOStreams fs;
+    private final Map<String, GzipInputStream.Index> indexes = new ConcurrentHashMap<>();
+
+    public GzipIOStreams(IOStreams fs) {
+        this.fs = Objects.requireNonNull(fs, "Null fs");
+    }
+
+    /**
+     * Answers true if the file is considered as gzip-compressed.
+     *
+     * @param uri, the file URI
+     * @return boolean
+     */
+    public boolean isCompressed(String uri) {
+        String name = uri.toLowerCase(Locale.ROOT);
+        return name.endsWith(".gz") || name.endsWith(".bgz");
+    }
+
+    @Override
+    public OutputStream createOutput(String uri) throws IOException {
+        return fs.createOutput(uri);
+    }
+
+    @Override
+    public InputStream openInput(String uri) throws IOException {
+        InputStream res = fs.openInput(uri);
+        return isCompressed(uri) ? new GzipDecoder(res) : res;
+    }
+
+    @Override
+    public boolean canRead(String uri) {
+        return fs.canRead(uri);
+    }
+
+    @Override
+    public boolean canWrite(String uri) {
+        return fs.canWrite(uri);
+    }
+
+    @Override
+    public boolean canMove(String uri) {
+        return fs.canMove(uri);
+    }
+
+    @Override
+    public void move(String from, String to) throws IOException, UnsupportedOperationException {
+        fs.move(from, to);
+        indexes.remove(to);
+    }
+
+    @Override
+    public boolean canReadRange(String uri) {
+        return !isCompressed(uri) && fs.canReadRange(uri);
+    }
+
+    @Override
+    public InputStream openRange(String uri, long offset) throws IOException, UnsupportedOperationException {
+        if (isCompressed(uri)) {
+            throw new UnsupportedOperationException("Range reading is not supported for compressed file: " + uri);
+        }
+        return fs.openRange(uri, offset);
+    }
+
+    @Override
+    public ScrollableInputStream openScrollable(String uri) throws IOException {
+        if (!isCompressed(uri)) {
+            return fs.openScrollable(uri);
+        }
+        GzipInputStream.Index index = index(uri);
+        return new GzipInputStream(fs.openScrollable(uri), index);
+    }
+
+    @Override
+    public long size(String uri) throws IOException {
+        return isCompressed(uri) ? index(uri).size() : fs.size(uri);
+    }
+
+    private GzipInputStream.Index index(String uri) throws IOException {
+        GzipInputStream.Index res = indexes.get(uri);
+        if (res != null) {
+            return res;
+        }
+        synchronized (indexes) {
+            res = indexes.get(uri);
+            if (res != null) {
+                return res;
+            }
+            try (ScrollableInputStream in = fs.openScrollable(uri)) {
+                res = GzipInputStream.Index.build(in);
+            }
+            indexes.put(uri, res);
+            return res;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package cc.fasttext.io.impl;
+
+import cc.fasttext.io.ScrollableInputStream;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The uncompressed view of a gzip file with seek supporting.
+ * The positions and the length are in uncompressed bytes, so the file can be split between threads
+ * exactly as the plain text.
+ * <p>
+ * A gzip file is a sequence of independently compressed members (RFC 1952).
+ * A seek goes to the nearest preceding member from the {@link Index} and decompresses from there,
+ * so the file is seekable as far as it consists of many members: e.g. the bgzip (BGZF) output with 64KB blocks
+ * or simply concatenated gzip files.
+ * A single-member gzip file is valid too, but any seek means decompressing from the start.
+ * Not thread-safe.
+ */
+public class GzipInputStream extends ScrollableInputStream {
+    private static final int SCRATCH_SIZE = 64 * 1024;
+
+    private final GzipDecoder decoder;
+    private final Index index;
+    private byte[] scratch;
+    private long position;
+
+    /**
+     * @param raw   {@link ScrollableInputStream} of the compressed file, positioned at the start
+     * @param index {@link Index} of the file, see {@link Index#build(ScrollableInputStream)}
+     */
+    public GzipInputStream(ScrollableInputStream raw, Index index) {
+        this.decoder = new GzipDecoder(raw);
+        this.index = Objects.requireNonNull(index, "Null index");
+    }
+
+    @Override
+    public void seek(long bytes) throws IOException {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Negative position: " + bytes);
+        }
+        bytes = Math.min(bytes, index.size);
+        int i = index.find(bytes);
+        // a short forward move just decompresses the rest:
+        if (i < 0 || bytes < position || position < index.uncompressed[i]) {
+            decoder.moveTo(i < 0 ? 0 : index.compressed[i]);
+            position = i < 0 ? 0 : index.uncompressed[i];
+        }
+        skipFully(bytes - position);
+    }
+
+    @Override
+    public long getPos() {
+        return position;
+    }
+
+    @Override
+    public long getLen() {
+        return index.size;
+    }
+
+    @Override
+    public int available() {
+        long res = Math.max(0L, index.size - position);
+        return res > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) res;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int res = decoder.read();
+        if (res != -1) {
+            position++;
+        }
+        return res;
+    }
+
+    @SuppressWarnings("NullableProblems")
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int res = decoder.read(b, off, len);
+        if (res > 0) {
+            position += res;
+        }
+        return res;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long start = position;
+        skipFully(Math.max(0, Math.min(n, index.size - position)));
+        return position - start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        decoder.close();
+    }
+
+    private void skipFully(long n) throws IOException {
+        if (scratch == null && n > 0) {
+            scratch = new byte[SCRATCH_SIZE];
+        }
+        while (n > 0) {
+            int res = read(scratch, 0, (int) Math.min(n, scratch.length));
+            if (res == -1) {
+                return;
+            }
+            n -= res;
+        }
+    }
+
+    /**
+     * The sparse index of gzip members: the compressed and the uncompressed positions of members,
+     * one per {@link #SPAN} uncompressed bytes at most.
+     */
+    public static final class Index {
+        static final long SPAN = 1024 * 1024;
+
+        private final long size;
+        private final long[] compressed;
+        private final long[] uncompressed;
+
+        private Index(long size, long[] compressed, long[] uncompressed) {
+            this.size = size;
+            this.compressed = compressed;
+            this.uncompressed = uncompressed;
+        }
+
+        /**
+         * Scans the whole gzip file.
+         * Only headers and trailers are read for BGZF blocks, other members are decompressed.
+         *
+         * @param raw {@link ScrollableInputStream} of the compressed file, positioned at the start, it is not closed
+         * @return {@link Index}
+         * @throws IOException if an I/O error occurs or the format is wrong
+         */
+        public static Index build(ScrollableInputStream raw) throws IOException {
+            GzipDecoder in = new GzipDecoder(raw);
+            try {
+                byte[] scratch = new byte[SCRATCH_SIZE];
+                long[] compressed = new long[16];
+                long[] uncompressed = new long[16];
+                int count = 0;
+                long size = 0;
+                while (true) {
+                    long start = in.rawPos();
+                    long length = in.skipMember(scratch);
+                    if (length == -1) {
+                        break;
+                    }
+                    if (count == 0 || size - uncompressed[count - 1] >= SPAN) {
+                        if (count == compressed.length) {
+                            compressed = Arrays.copyOf(compressed, 2 * count);
+                            uncompressed = Arrays.copyOf(uncompressed, 2 * count);
+                        }
+                        compressed[count] = start;
+                        uncompressed[count++] = size;
+                    }
+                    size += length;
+                }
+                return new Index(size, Arrays.copyOf(compressed, count), Arrays.copyOf(uncompressed, count));
+            } finally {
+                in.release();
+            }
+        }
+
+        /**
+         * Returns the uncompressed size of the file.
+         *
+         * @return long
+         */
+        public long size() {
+            return size;
+        }
+
+        /**
+         * Finds the last member which starts not after the given position.
+         *
+         * @param pos long, uncompressed position
+         * @return int, the entry number or -1 if the index is empty
+         */
+        private int find(long pos) {
+            int res = Arrays.binarySearch(uncompressed, pos);
+            return res >= 0 ? res : -res - 2;
+        }
+    }
+}
@@ -7,14 +7,34 @@ import org.apache.commons.lang.StringUtils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 /**
+ * The {@link IOStreams} for the local file system.
+ * The scrollable streams are memory-mapped (see {@link MappedInputStream}) unless the system property
+ * {@code local.mapped} is {@code false}, in that case they are {@link LocalInputStream}s.
+ * <p>
  * Created by @szuev on 30.10.2017.
  */
 public class LocalIOStreams implements IOStreams {
+    private static final boolean MAPPED = Boolean.parseBoolean(System.getProperty("local.mapped", "true"));
+
+    private final boolean mapped;
+
+    public LocalIOStreams() {
+        this(MAPPED);
+    }
+
+    /**
+     * @param mapped boolean, true to map the files opened by {@link #openScrollable(String)} into memory
+     */
+    public LocalIOStreams(boolean mapped) {
+        this.mapped = mapped;
+    }
 
     @Override
     public OutputStream createOutput(String uri) throws IOException {
@@ -67,7 +87,8 @@ public class LocalIOStreams implements IOStreams {
 
     @Override
     public ScrollableInputStream openScrollable(String uri) throws IOException {
-        return new LocalInputStream(Paths.get(uri));
+        Path file = Paths.get(uri);
+        return mapped ? new MappedInputStream(file) : new LocalInputStream(file);
     }
 
     @Override
@@ -75,4 +96,20 @@ public class LocalIOStreams implements IOStreams {
         return Files.size(Paths.get(uri));
     }
 
+    @Override
+    public boolean canMove(String uri) {
+        return canWrite(uri);
+    }
+
+    @Override
+    public void move(String from, String to) throws IOException {
+        Path source = Paths.get(from);
+        Path target = Paths.get(to);
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
 }
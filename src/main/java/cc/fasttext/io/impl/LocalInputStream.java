@@ -5,6 +5,7 @@ import org.apache.commons.math3.util.FastMath;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.util.Objects;
 
@@ -71,8 +72,21 @@ public class LocalInputStream extends ScrollableInputStream {
 
     @Override
     public long skip(long n) throws IOException {
-        if (n >= Integer.MAX_VALUE) throw new IllegalArgumentException("Out of range");
-        return rfa.skipBytes((int) n);
+        if (n <= 0) return 0;
+        long pos = getPos();
+        long res = FastMath.min(n, FastMath.max(0L, getLen() - pos));
+        rfa.seek(pos + res);
+        return res;
+    }
+
+    /**
+     * Returns the unique {@link FileChannel} associated with this stream.
+     * Closing the stream will close the channel.
+     *
+     * @return {@link FileChannel}
+     */
+    public FileChannel getChannel() {
+        return rfa.getChannel();
     }
 
 }
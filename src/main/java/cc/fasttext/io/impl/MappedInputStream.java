@@ -0,0 +1,148 @@
+package cc.fasttext.io.impl;
+
+import cc.fasttext.io.ScrollableInputStream;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * The local file stream which is served directly from the memory-mapped file.
+ * Unlike {@link LocalInputStream} the reading does not require any system call and kernel copying:
+ * the data is taken right from the OS page cache, and the {@link #seek(long)} just moves the pointer.
+ * Since a single mapped region can not exceed 2GB, the file is mapped as several segments.
+ * The file is expected to be unchanged while it is read.
+ * Not thread-safe, but any number of instances can be opened for the same file (e.g. one per training thread):
+ * they share the same physical memory.
+ */
+public class MappedInputStream extends ScrollableInputStream {
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final int segmentSize;
+    private final long size;
+    private long pos;
+
+    public MappedInputStream(Path file) throws IOException {
+        this(file, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * The main constructor.
+     *
+     * @param file        {@link Path} to read
+     * @param segmentSize int, the max size of a single mapped region in bytes, positive
+     * @throws IOException if an I/O error occurs
+     */
+    public MappedInputStream(Path file, int segmentSize) throws IOException {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive number");
+        }
+        this.segmentSize = segmentSize;
+        this.channel = FileChannel.open(Objects.requireNonNull(file, "Null file"), StandardOpenOption.READ);
+        try {
+            this.size = channel.size();
+            this.segments = new MappedByteBuffer[(int) ((size + segmentSize - 1) / segmentSize)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = (long) i * segmentSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(segmentSize, size - position));
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void seek(long pos) {
+        if (pos < 0) {
+            throw new IllegalArgumentException("Negative position: " + pos);
+        }
+        this.pos = pos;
+    }
+
+    @Override
+    public long getPos() {
+        return pos;
+    }
+
+    @Override
+    public long getLen() {
+        return size;
+    }
+
+    @Override
+    public int available() {
+        long res = Math.max(0L, size - pos);
+        return res > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) res;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public int read() {
+        if (pos >= size) {
+            return -1;
+        }
+        int res = segments[(int) (pos / segmentSize)].get((int) (pos % segmentSize)) & 0xFF;
+        pos++;
+        return res;
+    }
+
+    @SuppressWarnings("NullableProblems")
+    @Override
+    public int read(byte[] b, int off, int len) {
+        Objects.requireNonNull(b, "Null buff");
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (pos >= size) {
+            return -1;
+        }
+        int res = (int) Math.min(len, size - pos);
+        for (int done = 0; done < res; ) {
+            MappedByteBuffer segment = segments[(int) (pos / segmentSize)];
+            int start = (int) (pos % segmentSize);
+            int n = Math.min(res - done, segment.limit() - start);
+            // the buffers belong to this stream only, so the relative bulk get is safe:
+            segment.position(start);
+            segment.get(b, off + done, n);
+            done += n;
+            pos += n;
+        }
+        return res;
+    }
+
+    @Override
+    public long skip(long n) {
+        if (n <= 0) return 0;
+        long res = Math.min(n, Math.max(0L, size - pos));
+        pos += res;
+        return res;
+    }
+
+    /**
+     * Returns the {@link FileChannel} of the mapped file.
+     * Closing the stream will close the channel, but the mappings created from it remain valid.
+     *
+     * @return {@link FileChannel}
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,134 @@
+package cc.fasttext;
+
+import cc.fasttext.io.IOStreams;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Checks the {@link Checkpoint checkpoints} and the resumed training.
+ */
+public class CheckpointTest {
+
+    @Test
+    public void testPositions() throws Exception {
+        String file = resource("/dbpedia.cut.train");
+        IOStreams fs = FastText.DEFAULT_FACTORY.getFileSystem();
+        Args args = new Args.Builder().setModel(Args.ModelName.SUP).build();
+        Dictionary dictionary = Dictionary.read(fs.openInput(file), args, StandardCharsets.UTF_8, FastText.DEFAULT_FACTORY.getLogs());
+        IntList expectedWords = new IntList(), expectedLabels = new IntList();
+        IntList actualWords = new IntList(), actualLabels = new IntList();
+        try (CorpusReader text = CorpusReader.text(dictionary, dictionary.createReader(fs.openScrollable(file)))) {
+            for (int i = 0; i < 7; i++) {
+                text.getLine(expectedWords, expectedLabels);
+            }
+            long position = text.position();
+            Assert.assertTrue(position > 0 && position < fs.size(file));
+            text.getLine(expectedWords, expectedLabels);
+            // the position is the start of the next line:
+            Dictionary.SeekableReader in = dictionary.createReader(fs.openScrollable(file));
+            in.seek(position);
+            try (CorpusReader resumed = CorpusReader.text(dictionary, in)) {
+                resumed.getLine(actualWords, actualLabels);
+            }
+        }
+        Assert.assertEquals(expectedWords, actualWords);
+        Assert.assertEquals(expectedLabels, actualLabels);
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        String data = resource("/dbpedia.cut.train");
+        Path checkpoint = Files.createTempFile("ft-", ".checkpoint");
+        try {
+            Args args = new Args.Builder().setModel(Args.ModelName.SUP).setLR(0.3).setEpoch(4).setThread(1).build();
+            FastText model = FastText.DEFAULT_FACTORY.train(args, data, null);
+            long size = Files.size(Paths.get(data));
+            Checkpoint state = new Checkpoint(size, args.lr(), 2 * model.getDictionary().ntokens(), false, new long[]{size / 2});
+            model.saveCheckpoint(checkpoint.toString(), state);
+
+            // the checkpoint is a valid model file:
+            String line = "the film is directed by him";
+            Assert.assertEquals(model.predictLine(line, 3), FastText.DEFAULT_FACTORY.load(checkpoint.toString()).predictLine(line, 3));
+
+            FastText resumed = FastText.DEFAULT_FACTORY.resume(checkpoint.toString(), data);
+            Assert.assertEquals(0.3, resumed.getArgs().lr(), 0);
+            Assert.assertEquals(4, resumed.getArgs().epoch());
+            Assert.assertEquals(model.getDictionary().nwords(), resumed.getDictionary().nwords());
+            // the training has been continued:
+            Assert.assertTrue(model.getModel().output().get(0, 0) != resumed.getModel().output().get(0, 0));
+            Assert.assertTrue(resumed.test(resource("/dbpedia.cut.test"), 1).getPrecision() > 0);
+        } finally {
+            Files.deleteIfExists(checkpoint);
+        }
+    }
+
+    @Test
+    public void testTrainWithCheckpoints() throws Exception {
+        String data = resource("/dbpedia.cut.train");
+        Path checkpoint = Files.createTempFile("ft-", ".checkpoint");
+        Files.delete(checkpoint);
+        try {
+            // the scheduled checkpoints do not fire during this short training, the test writes one itself:
+            FastText.Factory factory = FastText.DEFAULT_FACTORY.setCheckpoint(checkpoint.toString(), 3600);
+            Args args = new Args.Builder().setModel(Args.ModelName.SUP).setEpoch(3).setThread(2).build();
+            FastText.Factory.Trainer trainer = factory.newTrainer(args, data, null);
+            Model model = trainer.train();
+            Assert.assertFalse(Files.exists(checkpoint));
+            trainer.writeCheckpoint();
+            Assert.assertTrue("No checkpoint written", Files.exists(checkpoint));
+
+            // the checkpoint is a valid model file with the same settings:
+            FastText saved = FastText.DEFAULT_FACTORY.load(checkpoint.toString());
+            Assert.assertEquals(3, saved.getArgs().epoch());
+            String line = "the film is directed by him";
+            Assert.assertFalse(saved.predictLine(line, 1).isEmpty());
+            Assert.assertEquals(model.output().get(0, 0), saved.getModel().output().get(0, 0), 0);
+
+            // the training can be continued from it with the same number of threads,
+            // here there is nothing left to do, so the model stays the same:
+            FastText resumed = FastText.DEFAULT_FACTORY.resume(checkpoint.toString(), data);
+            Assert.assertEquals(2, resumed.getArgs().thread());
+            Assert.assertEquals(3, resumed.getArgs().epoch());
+            Assert.assertEquals(saved.predictLine(line, 3), resumed.predictLine(line, 3));
+        } finally {
+            Files.deleteIfExists(checkpoint);
+        }
+    }
+
+    @Test
+    public void testWrongFiles() throws Exception {
+        String data = resource("/dbpedia.cut.train");
+        Path checkpoint = Files.createTempFile("ft-", ".checkpoint");
+        Path bin = Files.createTempFile("ft-", ".bin");
+        try {
+            Args args = new Args.Builder().setModel(Args.ModelName.SUP).setEpoch(1).setThread(1).build();
+            FastText model = FastText.DEFAULT_FACTORY.train(args, data, null);
+            model.saveModel(bin.toString());
+            model.saveCheckpoint(checkpoint.toString(), new Checkpoint(Files.size(Paths.get(data)), args.lr(), 0, false, new long[]{0}));
+            try {
+                FastText.DEFAULT_FACTORY.resume(bin.toString(), data);
+                Assert.fail("Resumed from a model without training state");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            try {
+                FastText.DEFAULT_FACTORY.resume(checkpoint.toString(), resource("/text-data.txt"));
+                Assert.fail("Resumed on another file");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        } finally {
+            Files.deleteIfExists(checkpoint);
+            Files.deleteIfExists(bin);
+        }
+    }
+
+    private static String resource(String name) throws Exception {
+        return Paths.get(CheckpointTest.class.getResource(name).toURI()).toString();
+    }
+}
@@ -0,0 +1,57 @@
+package cc.fasttext;
+
+import cc.fasttext.io.IOStreams;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the {@link CorpusCache} gives exactly the same lines as the text.
+ */
+public class CorpusCacheTest {
+
+    @Test
+    public void testSupervised() throws Exception {
+        testCache(new Args.Builder().setModel(Args.ModelName.SUP).setWordNgrams(2).build(), "/dbpedia.cut.train");
+    }
+
+    @Test
+    public void testUnsupervised() throws Exception {
+        testCache(new Args.Builder().setModel(Args.ModelName.CBOW).setMinCount(2).build(), "/text-data.txt");
+    }
+
+    private static void testCache(Args args, String resource) throws Exception {
+        String file = CorpusReaderAsserts.resource(resource);
+        IOStreams fs = FastText.DEFAULT_FACTORY.getFileSystem();
+        Dictionary dictionary = CorpusReaderAsserts.readDictionary(args, file);
+        boolean supervised = args.model() == Args.ModelName.SUP;
+        try (Dictionary.SeekableReader in = dictionary.createReader(fs.openScrollable(file));
+             CorpusCache cache = CorpusCache.compile(dictionary, supervised, in)) {
+            Assert.assertTrue(cache.lines() > 0);
+            try (CorpusReader reader = cache.reader(0, 1)) {
+                // twice, to check the rewinding:
+                CorpusReaderAsserts.assertSameLines(dictionary, file, supervised, reader, 2 * cache.lines());
+            }
+            // the last thread starts from its line and reads the same line as the sequential reader:
+            long start = cache.lines() * 2 / 3;
+            IntList expectedWords = new IntList(), expectedLabels = new IntList();
+            IntList actualWords = new IntList(), actualLabels = new IntList();
+            try (CorpusReader text = CorpusReaderAsserts.text(dictionary, file, 0);
+                 CorpusReader reader = cache.reader(2, 3)) {
+                Assert.assertEquals(start, reader.position());
+                for (long i = 0; i < start; i++) {
+                    text.getLineIds(expectedWords);
+                }
+                if (supervised) {
+                    Assert.assertEquals(text.getLine(expectedWords, expectedLabels), reader.getLine(actualWords, actualLabels));
+                    Assert.assertEquals(expectedLabels, actualLabels);
+                } else {
+                    text.getLineIds(expectedWords);
+                    reader.getLineIds(actualWords);
+                }
+                Assert.assertFalse(expectedWords.isEmpty());
+                Assert.assertEquals("Line #" + start, expectedWords, actualWords);
+                Assert.assertEquals(start + 1, reader.position());
+            }
+        }
+    }
+}
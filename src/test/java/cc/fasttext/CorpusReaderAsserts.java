@@ -0,0 +1,73 @@
+package cc.fasttext;
+
+import cc.fasttext.io.IOStreams;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Assert;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * Helpers to check the {@link CorpusReader} implementations against the plain text reader.
+ */
+final class CorpusReaderAsserts {
+
+    private CorpusReaderAsserts() {
+    }
+
+    static String resource(String name) throws URISyntaxException {
+        return Paths.get(CorpusReaderAsserts.class.getResource(name).toURI()).toString();
+    }
+
+    static Dictionary readDictionary(Args args, String file) throws IOException {
+        IOStreams fs = FastText.DEFAULT_FACTORY.getFileSystem();
+        return Dictionary.read(fs.openInput(file), args, StandardCharsets.UTF_8, FastText.DEFAULT_FACTORY.getLogs());
+    }
+
+    /**
+     * Opens the plain text reader of the file from the given position.
+     *
+     * @param dictionary {@link Dictionary}
+     * @param file       String, the file uri
+     * @param position   long, the offset in bytes, a line start
+     * @return {@link CorpusReader}
+     * @throws IOException if an I/O error occurs
+     */
+    static CorpusReader text(Dictionary dictionary, String file, long position) throws IOException {
+        Dictionary.SeekableReader in = dictionary.createReader(FastText.DEFAULT_FACTORY.getFileSystem().openScrollable(file));
+        in.seek(position);
+        return CorpusReader.text(dictionary, in);
+    }
+
+    /**
+     * Asserts that the reader yields exactly the same lines as the text reader of the file from its start,
+     * the unsupervised lines are compared with the frequent words discarded by the same random sequence.
+     *
+     * @param dictionary {@link Dictionary}
+     * @param file       String, the file uri
+     * @param supervised boolean, true to compare the lines with labels
+     * @param actual     {@link CorpusReader} to test, positioned at the first line
+     * @param lines      long, the number of lines to compare, may exceed the file to check the rewinding
+     * @throws IOException if an I/O error occurs
+     */
+    static void assertSameLines(Dictionary dictionary, String file, boolean supervised, CorpusReader actual, long lines) throws IOException {
+        RandomGenerator textRandom = new Well19937c(42);
+        RandomGenerator actualRandom = new Well19937c(42);
+        IntList expectedWords = new IntList(), expectedLabels = new IntList();
+        IntList actualWords = new IntList(), actualLabels = new IntList();
+        try (CorpusReader text = text(dictionary, file, 0)) {
+            for (long i = 0; i < lines; i++) {
+                if (supervised) {
+                    Assert.assertEquals(text.getLine(expectedWords, expectedLabels), actual.getLine(actualWords, actualLabels));
+                    Assert.assertEquals(expectedLabels, actualLabels);
+                } else {
+                    Assert.assertEquals(text.getLine(expectedWords, textRandom), actual.getLine(actualWords, actualRandom));
+                }
+                Assert.assertEquals("Line #" + i, expectedWords, actualWords);
+            }
+        }
+    }
+}
@@ -1,22 +1,25 @@
 package cc.fasttext;
 
 import cc.fasttext.io.WordReader;
+import com.google.common.primitives.UnsignedLong;
 import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.assertEquals;
 
@@ -32,11 +35,146 @@ public class DictionaryTest {
         assertEquals(dictionary.hash("</s>"), 3617362777L);
     }
 
+    @Test
+    public void testHashBytes() {
+        for (String w : Arrays.asList("", ",", "</s>", "这是一些测试句子。", "Тестовое", "\uD83D\uDE00")) {
+            byte[] bytes = w.getBytes(StandardCharsets.UTF_8);
+            assertEquals(w, Dictionary.hash(w, StandardCharsets.UTF_8), Dictionary.hash(bytes, 0, bytes.length));
+        }
+    }
+
+    @Test
+    public void testHashParity() {
+        Random r = new Random(42);
+        Charset cp1251 = Charset.forName("windows-1251");
+        for (int i = 0; i < 10_000; i++) {
+            String w = randomString(r, r.nextInt(20));
+            assertEquals(w, referenceHash(w, StandardCharsets.UTF_8), Dictionary.hash(w, StandardCharsets.UTF_8));
+            assertEquals(w, referenceHash(w, cp1251), Dictionary.hash(w, cp1251));
+            int from = r.nextInt(w.length() + 1);
+            int to = from + r.nextInt(w.length() - from + 1);
+            assertEquals(w, referenceHash(w.substring(from, to), StandardCharsets.UTF_8), Dictionary.hash(w, from, to, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testWordNgramsParity() {
+        Dictionary dictionary = new Dictionary(new Args.Builder().setModel(Args.ModelName.SUP).setWordNgrams(3).build(), StandardCharsets.UTF_8);
+        Random r = new Random(42);
+        // a line is read as UTF-8 bytes, so the unpaired surrogates are not allowed:
+        List<String> tokens = IntStream.range(0, 100).mapToObj(i -> randomString(r, 1 + r.nextInt(10)))
+                .filter(t -> t.equals(new String(t.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)))
+                .collect(Collectors.toList());
+        tokens.forEach(dictionary::add);
+        dictionary.threshold(1, 1);
+        // the original uint64_t arithmetic through UnsignedLong:
+        UnsignedLong bucket = UnsignedLong.valueOf(new Args.Builder().setWordNgrams(3).build().bucket());
+        List<Integer> expected = new ArrayList<>();
+        tokens.forEach(t -> expected.add(dictionary.getId(t)));
+        for (int i = 0; i < tokens.size(); i++) {
+            UnsignedLong h = UnsignedLong.fromLongBits((int) referenceHash(tokens.get(i), StandardCharsets.UTF_8));
+            for (int j = i + 1; j < tokens.size() && j < i + 3; j++) {
+                h = h.times(UnsignedLong.valueOf(116_049_371L))
+                        .plus(UnsignedLong.fromLongBits((int) referenceHash(tokens.get(j), StandardCharsets.UTF_8)));
+                expected.add(dictionary.nwords() + h.mod(bucket).intValue());
+            }
+        }
+        assertEquals(expected, dictionary.getLine(String.join(" ", tokens)));
+    }
+
+    /**
+     * The original allocating implementation of FNV-1a.
+     */
+    private static long referenceHash(String str, Charset charset) {
+        long h = 2_166_136_261L;
+        for (long b : str.getBytes(charset)) {
+            h = (h ^ b) * 16_777_619;
+        }
+        return h & 0xffff_ffffL;
+    }
+
+    /**
+     * Generates a string of ascii, cyrillic, cjk chars, surrogate pairs and unpaired surrogates.
+     */
+    private static String randomString(Random r, int length) {
+        StringBuilder res = new StringBuilder();
+        while (res.length() < length) {
+            switch (r.nextInt(6)) {
+                case 0:
+                    res.append((char) ('a' + r.nextInt(26)));
+                    break;
+                case 1:
+                    res.append((char) (0x80 + r.nextInt(0x780)));
+                    break;
+                case 2:
+                    res.append((char) (0x800 + r.nextInt(0xD000)));
+                    break;
+                case 3:
+                    res.appendCodePoint(0x10000 + r.nextInt(0x100000));
+                    break;
+                case 4:
+                    res.append((char) (Character.MIN_SURROGATE + r.nextInt(0x800)));
+                    break;
+                default:
+                    res.append((char) (0xE000 + r.nextInt(0x2000)));
+            }
+        }
+        return res.toString();
+    }
+
+    @Test
+    public void testGetLineBytes() {
+        Dictionary dictionary = new Dictionary(new Args.Builder().setModel(Args.ModelName.SUP).build(), StandardCharsets.UTF_8);
+        for (String w : Arrays.asList("is", "Тестовое", "\uD83D\uDE00", "a\uFFFDb", "__label__x")) {
+            dictionary.add(w);
+        }
+        dictionary.threshold(1, 1);
+        IntList words = new IntList();
+        IntList labels = new IntList();
+        // the well-formed tokens are looked up as bytes, the malformed one is decoded to "a\uFFFDb":
+        byte[] line = new byte[]{'i', 's', ' ', (byte) 0xF0, (byte) 0x9F, (byte) 0x98, (byte) 0x80, ' ', 'a', (byte) 0xFF, 'b', ' ', 'x', 'x', ' ',
+                '_', '_', 'l', 'a', 'b', 'e', 'l', '_', '_', 'x'};
+        assertEquals(5, dictionary.getLine(dictionary.createLineReader(), line, words, labels));
+        assertEquals(Arrays.asList(dictionary.getId("is"), dictionary.getId("\uD83D\uDE00"), dictionary.getId("a\uFFFDb")), words.asList());
+        assertEquals(Collections.singletonList(dictionary.getId("__label__x") - dictionary.nwords()), labels.asList());
+        assertEquals(words.asList(), dictionary.getLine("is \uD83D\uDE00 a\uFFFDb xx __label__x"));
+    }
+
+    @Test
+    public void testOovSubwordsCache() {
+        dictionary.add("is");
+        dictionary.threshold(1, 1);
+        List<Integer> expected = new ArrayList<>(dictionary.getSubwordsMap("misspeling").values());
+        expected.remove(Integer.valueOf(-1)); // no word id
+        List<Integer> actual = new ArrayList<>(dictionary.getSubwords("misspeling"));
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals(expected, actual);
+        Assert.assertSame(dictionary.getSubwordIds("misspeling"), dictionary.getSubwordIds("misspeling"));
+        assertEquals(dictionary.getSubwords(0), dictionary.getSubwords("is"));
+        assertEquals(1, dictionary.subwordsCacheStats().missCount());
+        assertEquals(2, dictionary.subwordsCacheStats().hitCount());
+    }
+
     @Test
     public void testFind() {
-        assertEquals(dictionary.find(","), 28690635L);
-        assertEquals(dictionary.find("is"), 22329493L);
-        assertEquals(dictionary.find("</s>"), 17362777L);
+        List<String> words = IntStream.range(0, 100_000).mapToObj(i -> "w" + i).collect(Collectors.toList());
+        words.forEach(dictionary::add);
+        Set<Integer> slots = new HashSet<>();
+        for (int i = 0; i < words.size(); i++) {
+            assertEquals(i, dictionary.getId(words.get(i)));
+            Assert.assertTrue(slots.add(dictionary.find(words.get(i))));
+        }
+        assertEquals(-1, dictionary.getId("is"));
+        Assert.assertFalse(slots.contains(dictionary.find("is")));
+        Dictionary copy = dictionary.copy();
+        copy.add("is");
+        assertEquals(words.size(), copy.getId("is"));
+        assertEquals(-1, dictionary.getId("is"));
+        // the entries are not shared:
+        copy.add(words.get(0));
+        assertEquals(2, copy.getWords().get(0).count());
+        assertEquals(1, dictionary.getWords().get(0).count());
     }
 
     @Test
@@ -48,10 +186,9 @@ public class DictionaryTest {
         dictionary.add(w);
         dictionary.add(w);
         dictionary.add(w);
-        Map<Long, Integer> word2int = dictionary.getWord2int();
-        assertEquals(3, dictionary.getWords().get(word2int.get(dictionary.find(w))).count());
-        assertEquals(2, dictionary.getWords().get(word2int.get(dictionary.find("is"))).count());
-        assertEquals(1, dictionary.getWords().get(word2int.get(dictionary.find(","))).count());
+        assertEquals(3, dictionary.getWords().get(dictionary.getId(w)).count());
+        assertEquals(2, dictionary.getWords().get(dictionary.getId("is")).count());
+        assertEquals(1, dictionary.getWords().get(dictionary.getId(",")).count());
     }
 
     @Test
@@ -63,6 +200,32 @@ public class DictionaryTest {
         testReadWords(data, words);
     }
 
+    @Test
+    public void testParallelReadLongLine() throws Exception {
+        Path file = Files.createTempFile("dict-", ".txt");
+        try {
+            // a line of several shards among a few short lines, fewer lines than threads:
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                out.write("__label__a short line\n__label__b another short line\n__label__a");
+                for (int i = 0; i < 1_500_000; i++) {
+                    out.write(" w" + (i % 1000));
+                }
+                out.write("\n__label__c tail line\n__label__b tail line again\n");
+            }
+            Args args = new Args.Builder().setModel(Args.ModelName.SUP).build();
+            Dictionary expected;
+            try (InputStream in = Files.newInputStream(file)) {
+                expected = Dictionary.read(in, args, StandardCharsets.UTF_8, FastText.DEFAULT_FACTORY.getLogs());
+            }
+            Dictionary actual = Dictionary.read(FastText.DEFAULT_FACTORY.getFileSystem(), file.toString(), args,
+                    StandardCharsets.UTF_8, FastText.DEFAULT_FACTORY.getLogs(), 16);
+            Assert.assertEquals(expected.ntokens(), actual.ntokens());
+            Assert.assertEquals(expected.getWords().toString(), actual.getWords().toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
     public static void testReadWords(Path dataFile, Path wordsFile) throws Exception {
         List<String> expected = Files.lines(wordsFile).collect(Collectors.toList());
         try (WordReader r = Dictionary.createWordReader(Files.newInputStream(dataFile), StandardCharsets.UTF_8, 8 * 1024)) {
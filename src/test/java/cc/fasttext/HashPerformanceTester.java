@@ -0,0 +1,95 @@
+package cc.fasttext;
+
+import com.google.common.primitives.UnsignedLong;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+
+/**
+ * Not a test.
+ * A microbenchmark to compare the allocating FNV-1a and word n-grams hashing (through {@code String#getBytes} and {@link UnsignedLong})
+ * with the primitive one from {@link Dictionary}.
+ * Usage: {@code HashPerformanceTester [text-file]}, the default file is {@code /dbpedia.cut.train} from the test resources.
+ */
+public class HashPerformanceTester {
+    private static final int ROUNDS = 20;
+    private static final long BUCKET = 2_000_000;
+
+    public static void main(String... args) throws Exception {
+        Path file = args.length > 0 ? Paths.get(args[0]) :
+                Paths.get(HashPerformanceTester.class.getResource("/dbpedia.cut.train").toURI());
+        String[] words = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).split("[\\s\\u0000]+");
+        System.out.println(file + ": " + words.length + " words");
+        int[] hashes = Arrays.stream(words).mapToInt(w -> (int) Dictionary.hash(w, StandardCharsets.UTF_8)).toArray();
+
+        run("hash, String#getBytes", words, HashPerformanceTester::referenceHash);
+        run("hash, primitive", words, w -> Dictionary.hash(w, StandardCharsets.UTF_8));
+        run("word n-grams, UnsignedLong", hashes, HashPerformanceTester::referenceWordNgrams);
+        run("word n-grams, primitive", hashes, HashPerformanceTester::wordNgrams);
+    }
+
+    private static void run(String name, String[] words, ToLongFunction<String> hash) {
+        long res = 0;
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < ROUNDS; r++) {
+            long start = System.nanoTime();
+            for (String w : words) {
+                res += hash.applyAsLong(w);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        print(name, best, words.length, res);
+    }
+
+    private static void run(String name, int[] hashes, ToLongFunction<int[]> ngrams) {
+        long res = 0;
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < ROUNDS; r++) {
+            long start = System.nanoTime();
+            res += ngrams.applyAsLong(hashes);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        print(name, best, hashes.length, res);
+    }
+
+    private static void print(String name, long nanos, int count, long checksum) {
+        System.out.printf("%-30s %8.2f ms, %6.2f ns/op (checksum %d)%n", name, nanos / 1e6, (double) nanos / count, checksum);
+    }
+
+    private static long referenceHash(String str) {
+        long h = 2_166_136_261L;
+        for (long b : str.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ b) * 16_777_619;
+        }
+        return h & 0xffff_ffffL;
+    }
+
+    private static long referenceWordNgrams(int[] hashes) {
+        UnsignedLong bucket = UnsignedLong.valueOf(BUCKET);
+        long res = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            UnsignedLong h = UnsignedLong.fromLongBits(hashes[i]);
+            for (int j = i + 1; j < hashes.length && j < i + 2; j++) {
+                h = h.times(UnsignedLong.valueOf(116_049_371L)).plus(UnsignedLong.fromLongBits(hashes[j]));
+                res += h.mod(bucket).intValue();
+            }
+        }
+        return res;
+    }
+
+    private static long wordNgrams(int[] hashes) {
+        long res = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            long h = hashes[i];
+            for (int j = i + 1; j < hashes.length && j < i + 2; j++) {
+                h = h * 116_049_371L + hashes[j];
+                res += (int) Long.remainderUnsigned(h, BUCKET);
+            }
+        }
+        return res;
+    }
+}
@@ -53,4 +53,35 @@ public class MatrixTest {
             Assert.assertEquals("Wrong #" + i, expected.get(i), actual.get(i), 0.2);
         }
     }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQuantizeTooLarge() {
+        // only the sizes, as a huge paged matrix has, the data is never touched:
+        Matrix m = new Matrix() {
+            {
+                this.m = Integer.MAX_VALUE / 2;
+                this.n = 100;
+            }
+        };
+        new QMatrix(m, Well19937c::new, 2, false);
+    }
+
+    @Test
+    public void testDotRows() {
+        int mSize = 1000;
+        int nSize = 30;
+        Matrix batch = new Matrix(7, nSize);
+        batch.uniform(new Well19937c(1), 1);
+        for (Matrix m : Arrays.asList(new Matrix(mSize, nSize), new DirectMatrix(mSize, nSize))) {
+            m.uniform(new Well19937c(2), 1);
+            float[] actual = new float[batch.getM() * mSize];
+            m.dotRows(batch, actual);
+            for (int r = 0; r < batch.getM(); r++) {
+                Vector v = batch.getData().get(r);
+                for (int i = 0; i < mSize; i++) {
+                    Assert.assertEquals(m + ": wrong (" + r + ", " + i + ")", m.dotRow(v, i), actual[r * mSize + i], 0);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,63 @@
+package cc.fasttext;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks the multi-label training with the {@link Args.LossName#OVA one-vs-all} loss and the prediction threshold.
+ */
+public class OneVsAllTest {
+
+    @Test
+    public void testTrainAndPredict() throws Exception {
+        Path file = Files.createTempFile("ova-", ".txt");
+        try {
+            // each line has two independent tags: a color and a shape, given by the words
+            String[] colors = {"red", "green", "blue"};
+            String[] shapes = {"circle", "square"};
+            Random r = new Random(42);
+            try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (int i = 0; i < 3000; i++) {
+                    String color = colors[r.nextInt(colors.length)];
+                    String shape = shapes[r.nextInt(shapes.length)];
+                    out.write(String.format("__label__%s __label__%s %s%d %s%d noise%d%n",
+                            color, shape, color, r.nextInt(3), shape, r.nextInt(3), r.nextInt(50)));
+                }
+            }
+            Args args = new Args.Builder().setModel(Args.ModelName.SUP).setLossName(Args.LossName.OVA)
+                    .setNeg(2).setEpoch(5).setLR(0.5).setDim(10).setThread(1).build();
+            FastText model = FastText.DEFAULT_FACTORY.train(args, file.toString(), null);
+
+            Map<String, Float> res = model.predictLine("blue1 square2", 5, 0.5f);
+            Assert.assertEquals(res.toString(), 2, res.size());
+            Assert.assertTrue(res.toString(), res.containsKey("__label__blue") && res.containsKey("__label__square"));
+            // the probabilities are independent:
+            float sum = (float) model.predictLine("blue1 square2", 5).values().stream().mapToDouble(Float::doubleValue).sum();
+            Assert.assertTrue("Sum: " + sum, sum > 1.5);
+            Assert.assertEquals(res, model.predictBatch(Collections.singletonList("blue1 square2"), 5, 0.5f).get(0));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testHeapThreshold() {
+        ScoreHeap heap = new ScoreHeap(3).reset(3, -1f);
+        Assert.assertFalse(heap.offer(-2f, 0));
+        Assert.assertTrue(heap.rejects(-1.5f));
+        Assert.assertTrue(heap.offer(-0.5f, 1));
+        Assert.assertTrue(heap.offer(-1f, 2));
+        heap.sort();
+        Assert.assertEquals(2, heap.size());
+        Assert.assertEquals(1, heap.id(0));
+        Assert.assertEquals(Float.NEGATIVE_INFINITY, heap.reset(3).threshold(), 0);
+    }
+}
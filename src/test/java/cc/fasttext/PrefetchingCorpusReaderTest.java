@@ -0,0 +1,122 @@
+package cc.fasttext;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks that the {@link PrefetchingCorpusReader} gives exactly the same lines as the text
+ * and tracks the source position of the batches.
+ */
+public class PrefetchingCorpusReaderTest {
+
+    @Test
+    public void testSupervised() throws Exception {
+        testPrefetch(new Args.Builder().setModel(Args.ModelName.SUP).setWordNgrams(2).build(), "/dbpedia.cut.train");
+    }
+
+    @Test
+    public void testUnsupervised() throws Exception {
+        testPrefetch(new Args.Builder().setModel(Args.ModelName.CBOW).setMinCount(2).build(), "/text-data.txt");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFailure() throws Exception {
+        CorpusReader broken = new CorpusReader() {
+            @Override
+            public int getLine(IntList words, IntList labels) {
+                throw new IllegalStateException("Broken");
+            }
+
+            @Override
+            public int getLine(IntList words, RandomGenerator rng) {
+                throw new IllegalStateException("Broken");
+            }
+
+            @Override
+            public void getLineIds(IntList ids) {
+                throw new IllegalStateException("Broken");
+            }
+
+            @Override
+            public long position() {
+                return 0;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Dictionary dictionary = new Dictionary(new Args.Builder().build(), StandardCharsets.UTF_8);
+        try (CorpusReader reader = new PrefetchingCorpusReader(broken, dictionary, true, 2, "test")) {
+            reader.getLine(new IntList(), new IntList());
+        }
+    }
+
+    /**
+     * The position is the source position before the current batch, or after it once the batch is read,
+     * so the position of a prefetching reader is always a line start of the source.
+     */
+    @Test
+    public void testPosition() throws Exception {
+        String file = CorpusReaderAsserts.resource("/dbpedia.cut.train");
+        Dictionary dictionary = CorpusReaderAsserts.readDictionary(new Args.Builder().setModel(Args.ModelName.SUP).build(), file);
+        int lines = 2 * PrefetchingCorpusReader.BATCH_LINES;
+        long[] expected = new long[lines + 1];
+        IntList words = new IntList(), labels = new IntList();
+        try (CorpusReader text = CorpusReaderAsserts.text(dictionary, file, 0);
+             CorpusReader reader = new PrefetchingCorpusReader(CorpusReaderAsserts.text(dictionary, file, 0), dictionary, true, 3, "test")) {
+            Assert.assertEquals(0, reader.position());
+            for (int i = 1; i <= lines; i++) {
+                text.getLine(words, labels);
+                expected[i] = text.position();
+                reader.getLine(words, labels);
+                int batchStart = (i - 1) / PrefetchingCorpusReader.BATCH_LINES * PrefetchingCorpusReader.BATCH_LINES;
+                long position = i % PrefetchingCorpusReader.BATCH_LINES == 0 ? expected[i] : expected[batchStart];
+                Assert.assertEquals("After line #" + i, position, reader.position());
+            }
+        }
+    }
+
+    /**
+     * The training resumed from the position (see {@link FastText.Factory#resume(String, String)})
+     * may repeat a part of the current batch, but never skips a line.
+     */
+    @Test
+    public void testResumeFromPosition() throws Exception {
+        String file = CorpusReaderAsserts.resource("/text-data.txt");
+        Dictionary dictionary = CorpusReaderAsserts.readDictionary(new Args.Builder().setModel(Args.ModelName.CBOW).setMinCount(2).build(), file);
+        int read = PrefetchingCorpusReader.BATCH_LINES + PrefetchingCorpusReader.BATCH_LINES / 2;
+        IntList[] lines = new IntList[read];
+        IntList ids = new IntList();
+        try (CorpusReader reader = new PrefetchingCorpusReader(CorpusReaderAsserts.text(dictionary, file, 0), dictionary, false, 3, "test")) {
+            for (int i = 0; i < read; i++) {
+                reader.getLineIds(lines[i] = new IntList());
+            }
+            try (CorpusReader resumed = CorpusReaderAsserts.text(dictionary, file, reader.position())) {
+                // the current batch is read again:
+                for (int i = PrefetchingCorpusReader.BATCH_LINES; i < read; i++) {
+                    resumed.getLineIds(ids);
+                    Assert.assertEquals("Line #" + i, lines[i], ids);
+                }
+                // and then the lines go on without a gap:
+                IntList next = new IntList();
+                reader.getLineIds(next);
+                resumed.getLineIds(ids);
+                Assert.assertEquals(next, ids);
+            }
+        }
+    }
+
+    private static void testPrefetch(Args args, String resource) throws Exception {
+        String file = CorpusReaderAsserts.resource(resource);
+        Dictionary dictionary = CorpusReaderAsserts.readDictionary(args, file);
+        boolean supervised = args.model() == Args.ModelName.SUP;
+        try (CorpusReader reader = new PrefetchingCorpusReader(CorpusReaderAsserts.text(dictionary, file, 0), dictionary, supervised, 3, "test")) {
+            // several batches and rewinds:
+            CorpusReaderAsserts.assertSameLines(dictionary, file, supervised, reader, 5000);
+        }
+    }
+}
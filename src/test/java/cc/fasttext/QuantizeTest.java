@@ -0,0 +1,39 @@
+package cc.fasttext;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Checks the quantization of a {@link FastText.Factory#setMemoryMapped(boolean) memory-mapped} model,
+ * whose matrices are read-only.
+ */
+public class QuantizeTest {
+
+    @Test
+    public void testRetrainMapped() throws Exception {
+        String data = Paths.get(QuantizeTest.class.getResource("/dbpedia.cut.train").toURI()).toString();
+        Path bin = Files.createTempFile("ft-", ".bin");
+        try {
+            Args args = new Args.Builder().setModel(Args.ModelName.SUP).setEpoch(2).setThread(1).build();
+            FastText.DEFAULT_FACTORY.train(args, data, null).saveModel(bin.toString());
+            FastText.Factory factory = FastText.DEFAULT_FACTORY.setMemoryMapped(true);
+            FastText model = factory.load(bin.toString());
+            Assert.assertTrue(model.getModel().input() instanceof MappedMatrix);
+
+            Args qargs = new Args.Builder().setModel(Args.ModelName.SUP).setCutOff(500)
+                    .setEpoch(1).setThread(1).build();
+            FastText retrained = model.quantize(qargs, data);
+            Assert.assertTrue(retrained.getModel().isQuant());
+            Assert.assertEquals(500, retrained.getModel().input().getM());
+            Assert.assertFalse(retrained.predictLine("the film is directed by him", 1).isEmpty());
+            // the mapped source is not touched:
+            Assert.assertEquals(model.predictLine("the film is directed by him", 1), factory.load(bin.toString()).predictLine("the film is directed by him", 1));
+        } finally {
+            Files.deleteIfExists(bin);
+        }
+    }
+}
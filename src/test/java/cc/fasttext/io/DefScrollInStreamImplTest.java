@@ -0,0 +1,141 @@
+package cc.fasttext.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+public class DefScrollInStreamImplTest {
+    private static final int SIZE = 40 * DefScrollInStreamImpl.BLOCK_SIZE + 123;
+
+    @Test
+    public void testRanged() throws IOException {
+        byte[] data = data();
+        TestIOStreams fs = new TestIOStreams(data, true);
+        try (ScrollableInputStream in = fs.openScrollable("test")) {
+            Assert.assertEquals(data.length, in.getLen());
+            checkSeeks(data, in);
+        }
+        Assert.assertEquals(0, fs.opened);
+        // the stream is reopened only for the far forward seek, the skipped bytes are not read:
+        Assert.assertEquals(2, fs.ranges);
+        Assert.assertTrue("Too many bytes read: " + fs.read, fs.read < data.length / 2);
+    }
+
+    @Test
+    public void testNotRanged() throws IOException {
+        byte[] data = data();
+        TestIOStreams fs = new TestIOStreams(data, false);
+        try (ScrollableInputStream in = fs.openScrollable("test")) {
+            checkSeeks(data, in);
+            Assert.assertEquals(data.length, in.getLen());
+        }
+        Assert.assertEquals(0, fs.ranges);
+    }
+
+    @Test
+    public void testCachedBlocks() throws IOException {
+        byte[] data = data();
+        TestIOStreams fs = new TestIOStreams(data, false);
+        try (ScrollableInputStream in = fs.openScrollable("test")) {
+            byte[] buff = new byte[1000];
+            Assert.assertEquals(1000, in.read(buff));
+            in.seek(3 * DefScrollInStreamImpl.BLOCK_SIZE);
+            Assert.assertEquals(1000, in.read(buff));
+            Assert.assertEquals(1, fs.opened);
+            // the backward seek within the cached blocks does not reopen the stream:
+            in.seek(10);
+            Assert.assertEquals(1000, in.read(buff));
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, 10, 1010), buff);
+            Assert.assertEquals(1, fs.opened);
+        }
+    }
+
+    private static void checkSeeks(byte[] data, ScrollableInputStream in) throws IOException {
+        byte[] buff = new byte[5000];
+        long[] positions = {0, 7, 2 * DefScrollInStreamImpl.BLOCK_SIZE - 3, 30 * DefScrollInStreamImpl.BLOCK_SIZE + 50, SIZE - 100, SIZE};
+        for (long pos : positions) {
+            in.seek(pos);
+            Assert.assertEquals(pos, in.getPos());
+            int n = 0;
+            int r;
+            while (n < buff.length && (r = in.read(buff, n, buff.length - n)) > 0) {
+                n += r;
+            }
+            int expected = (int) Math.min(buff.length, data.length - pos);
+            Assert.assertEquals(expected, n);
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, (int) pos, (int) pos + n), Arrays.copyOf(buff, n));
+        }
+        Assert.assertEquals(-1, in.read());
+        Assert.assertTrue(in.isEnd());
+        // can't seek past the end:
+        in.seek(SIZE + 100);
+        Assert.assertEquals(SIZE, in.getPos());
+    }
+
+    private static byte[] data() {
+        byte[] res = new byte[SIZE];
+        new Random(42).nextBytes(res);
+        return res;
+    }
+
+    /**
+     * In-memory file system which counts the opened streams and the bytes read.
+     */
+    private static class TestIOStreams implements IOStreams {
+        private final byte[] data;
+        private final boolean ranged;
+        private int opened;
+        private int ranges;
+        private long read;
+
+        private TestIOStreams(byte[] data, boolean ranged) {
+            this.data = data;
+            this.ranged = ranged;
+        }
+
+        @Override
+        public OutputStream createOutput(String uri) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InputStream openInput(String uri) {
+            opened++;
+            return stream(0);
+        }
+
+        @Override
+        public boolean canReadRange(String uri) {
+            return ranged;
+        }
+
+        @Override
+        public InputStream openRange(String uri, long offset) {
+            if (!ranged) throw new UnsupportedOperationException();
+            ranges++;
+            return stream((int) offset);
+        }
+
+        @Override
+        public long size(String uri) throws IOException {
+            return ranged ? data.length : IOStreams.super.size(uri);
+        }
+
+        private InputStream stream(int offset) {
+            return new ByteArrayInputStream(data, offset, data.length - offset) {
+                @Override
+                public synchronized int read(byte[] b, int off, int len) {
+                    int res = super.read(b, off, len);
+                    if (res > 0) read += res;
+                    return res;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package cc.fasttext.io.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+public class GzipInputStreamTest {
+    private static final int CHUNK = 100_000;
+
+    @Test
+    public void testMultiMember() throws IOException {
+        byte[] data = text(3_000_000);
+        ByteArrayOutputStream res = new ByteArrayOutputStream();
+        for (int i = 0; i < data.length; i += CHUNK) {
+            try (GZIPOutputStream out = new GZIPOutputStream(res) {
+                @Override
+                public void close() throws IOException {
+                    finish(); // do not close the target
+                }
+            }) {
+                out.write(data, i, Math.min(CHUNK, data.length - i));
+            }
+        }
+        testFile(data, res.toByteArray());
+    }
+
+    @Test
+    public void testBgzf() throws IOException {
+        byte[] data = text(1_000_000);
+        ByteArrayOutputStream res = new ByteArrayOutputStream();
+        for (int i = 0; i < data.length; i += 60_000) {
+            res.write(bgzfBlock(Arrays.copyOfRange(data, i, Math.min(i + 60_000, data.length))));
+        }
+        res.write(bgzfBlock(new byte[0])); // the EOF marker
+        testFile(data, res.toByteArray());
+    }
+
+    @Test
+    public void testSingleMember() throws IOException {
+        byte[] data = text(300_000);
+        ByteArrayOutputStream res = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(res)) {
+            out.write(data);
+        }
+        testFile(data, res.toByteArray());
+    }
+
+    private static void testFile(byte[] data, byte[] gzip) throws IOException {
+        Path file = Files.createTempFile("gzip-", ".gz");
+        try {
+            Files.write(file, gzip);
+            GzipIOStreams fs = new GzipIOStreams(new LocalIOStreams());
+            Assert.assertEquals(data.length, fs.size(file.toString()));
+            try (GzipInputStream in = (GzipInputStream) fs.openScrollable(file.toString())) {
+                Assert.assertEquals(data.length, in.getLen());
+                Assert.assertArrayEquals(data, readAll(in, data.length));
+                Assert.assertTrue(in.isEnd());
+                Assert.assertEquals(-1, in.read());
+                Random r = new Random(42);
+                for (int i = 0; i < 20; i++) {
+                    int pos = r.nextInt(data.length);
+                    in.seek(pos);
+                    Assert.assertEquals(pos, in.getPos());
+                    int n = Math.min(5000, data.length - pos);
+                    Assert.assertArrayEquals("Position " + pos, Arrays.copyOfRange(data, pos, pos + n), readAll(in, n));
+                }
+                in.seek(data.length + 10);
+                Assert.assertEquals(data.length, in.getPos());
+                Assert.assertEquals(-1, in.read());
+            }
+            try (InputStream in = fs.openInput(file.toString())) {
+                Assert.assertArrayEquals(data, readAll(in, data.length));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static byte[] readAll(InputStream in, int length) throws IOException {
+        byte[] res = new byte[length];
+        int n = 0;
+        int r;
+        while (n < length && (r = in.read(res, n, length - n)) > 0) {
+            n += r;
+        }
+        Assert.assertEquals(length, n);
+        return res;
+    }
+
+    private static byte[] text(int size) {
+        Random r = new Random(size);
+        StringBuilder res = new StringBuilder(size);
+        while (res.length() < size) {
+            res.append("w").append(r.nextInt(1000)).append(r.nextInt(10) == 0 ? '\n' : ' ');
+        }
+        return res.substring(0, size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Makes a BGZF block: a gzip member with the 'BC' extra field containing the total block size minus 1.
+     */
+    private static byte[] bgzfBlock(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] deflated = new byte[data.length + 1024];
+        int length = 0;
+        while (!deflater.finished()) {
+            length += deflater.deflate(deflated, length, deflated.length - length);
+        }
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        int blockSize = 18 + length + 8;
+        ByteArrayOutputStream res = new ByteArrayOutputStream();
+        res.write(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0}, 0, 16);
+        writeShort(res, blockSize - 1);
+        res.write(deflated, 0, length);
+        writeInt(res, crc.getValue());
+        writeInt(res, data.length);
+        return res.toByteArray();
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int v) {
+        out.write(v & 0xFF);
+        out.write(v >>> 8 & 0xFF);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, long v) {
+        writeShort(out, (int) (v & 0xFFFF));
+        writeShort(out, (int) (v >>> 16 & 0xFFFF));
+    }
+}
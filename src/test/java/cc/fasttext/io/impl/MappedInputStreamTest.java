@@ -0,0 +1,64 @@
+package cc.fasttext.io.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+public class MappedInputStreamTest {
+
+    @Test
+    public void testReadAndSeek() throws IOException {
+        byte[] data = new byte[1000];
+        new Random(42).nextBytes(data);
+        Path file = Files.createTempFile("mapped-", ".bin");
+        try {
+            Files.write(file, data);
+            // the small segments to check the reading across the boundaries:
+            try (MappedInputStream in = new MappedInputStream(file, 64)) {
+                Assert.assertEquals(data.length, in.getLen());
+                byte[] res = new byte[data.length];
+                int n = 0;
+                int r;
+                while ((r = in.read(res, n, Math.min(100, res.length - n))) > 0) {
+                    n += r;
+                }
+                Assert.assertEquals(data.length, n);
+                Assert.assertArrayEquals(data, res);
+                Assert.assertTrue(in.isEnd());
+                Assert.assertEquals(-1, in.read());
+
+                in.seek(127);
+                Assert.assertEquals(data[127] & 0xFF, in.read());
+                Assert.assertEquals(data[128] & 0xFF, in.read());
+                Assert.assertEquals(10, in.skip(10));
+                Assert.assertEquals(139, in.getPos());
+                byte[] part = new byte[300];
+                Assert.assertEquals(300, in.read(part));
+                Assert.assertArrayEquals(Arrays.copyOfRange(data, 139, 439), part);
+
+                in.seek(990);
+                Assert.assertEquals(10, in.read(part));
+                Assert.assertEquals(-1, in.read(part));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        Path file = Files.createTempFile("mapped-", ".bin");
+        try (MappedInputStream in = new MappedInputStream(file)) {
+            Assert.assertEquals(0, in.getLen());
+            Assert.assertEquals(-1, in.read());
+            Assert.assertEquals(-1, in.read(new byte[10]));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}